@@ -23,11 +23,11 @@ import org.eclipse.lsp4j.jsonrpc.Endpoint;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.RequestScheduler;
 import org.eclipse.lsp4j.jsonrpc.debug.json.DebugMessageJsonHandler;
 import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
 import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
 import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
-import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
 import org.eclipse.lsp4j.jsonrpc.validation.ReflectiveMessageValidator;
 
 import com.google.gson.GsonBuilder;
@@ -211,12 +211,16 @@ public final class DebugLauncher {
 		protected RemoteEndpoint createRemoteEndpoint(MessageJsonHandler jsonHandler) {
 			MessageConsumer outgoingMessageStream = new StreamMessageConsumer(output, jsonHandler);
 			outgoingMessageStream = wrapMessageConsumer(outgoingMessageStream);
-			Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+			Endpoint localEndpoint = createLocalEndpoint();
 			RemoteEndpoint remoteEndpoint;
-			if (exceptionHandler == null)
+			RequestScheduler scheduler = createRequestScheduler();
+			if (exceptionHandler == null && scheduler == null)
 				remoteEndpoint = new DebugRemoteEndpoint(outgoingMessageStream, localEndpoint);
-			else
+			else if (scheduler == null)
 				remoteEndpoint = new DebugRemoteEndpoint(outgoingMessageStream, localEndpoint, exceptionHandler);
+			else
+				remoteEndpoint = new DebugRemoteEndpoint(outgoingMessageStream, localEndpoint,
+						exceptionHandler != null ? exceptionHandler : RemoteEndpoint.DEFAULT_EXCEPTION_HANDLER, scheduler);
 			jsonHandler.setMethodProvider(remoteEndpoint);
 			return remoteEndpoint;
 		}
@@ -17,6 +17,7 @@ import java.util.function.Function;
 import org.eclipse.lsp4j.jsonrpc.Endpoint;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.RequestScheduler;
 import org.eclipse.lsp4j.jsonrpc.debug.messages.DebugNotificationMessage;
 import org.eclipse.lsp4j.jsonrpc.debug.messages.DebugRequestMessage;
 import org.eclipse.lsp4j.jsonrpc.debug.messages.DebugResponseMessage;
@@ -35,6 +36,11 @@ public class DebugRemoteEndpoint extends RemoteEndpoint {
 		super(out, localEndpoint, exceptionHandler);
 	}
 
+	public DebugRemoteEndpoint(MessageConsumer out, Endpoint localEndpoint,
+			Function<Throwable, ResponseError> exceptionHandler, RequestScheduler requestScheduler) {
+		super(out, localEndpoint, exceptionHandler, requestScheduler);
+	}
+
 	@Override
 	protected DebugRequestMessage createRequestMessage(String method, Object parameter) {
 		DebugRequestMessage requestMessage = new DebugRequestMessage();
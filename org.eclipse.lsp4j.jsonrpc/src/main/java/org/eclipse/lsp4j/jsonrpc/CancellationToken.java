@@ -0,0 +1,155 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A node of a tree of cancellation signals. Cancelling a token cancels all its descendants and notifies their
+ * listeners. A token can be put in scope for the current thread with {@link #enter()}; the
+ * {@link RemoteEndpoint} does so while the local endpoint handles an incoming request, and cancels the token when
+ * the request is cancelled. Requests sent with {@link RemoteEndpoint#request(String, Object)} while a token is
+ * in scope are cancelled together with it, and code run with
+ * {@link CompletableFutures#computeAsync(java.util.function.Function)} gets a child token in scope.
+ */
+public class CancellationToken implements CancelChecker {
+
+	private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * Returns the token in scope for the current thread, or {@code null} if there is none.
+	 */
+	public static CancellationToken current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Puts a token in scope until it is closed.
+	 */
+	public static class Scope implements AutoCloseable {
+
+		private final CancellationToken previous;
+
+		private Scope(CancellationToken previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (previous == null)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+
+	}
+
+	private final CancellationToken parent;
+	private final Runnable cancelFromParent;
+	private volatile boolean cancelled;
+	private List<Runnable> listeners;
+
+	/**
+	 * Create a root token.
+	 */
+	public CancellationToken() {
+		this(null);
+	}
+
+	/**
+	 * Create a token that is cancelled together with the given parent.
+	 */
+	public CancellationToken(CancellationToken parent) {
+		this.parent = parent;
+		if (parent != null) {
+			this.cancelFromParent = this::cancel;
+			parent.addCancelListener(cancelFromParent);
+		} else {
+			this.cancelFromParent = null;
+		}
+	}
+
+	/**
+	 * Cancel this token and all its descendants.
+	 */
+	public void cancel() {
+		List<Runnable> listeners;
+		synchronized (this) {
+			if (cancelled)
+				return;
+			cancelled = true;
+			listeners = this.listeners;
+			this.listeners = null;
+		}
+		if (listeners != null) {
+			for (Runnable listener : listeners) {
+				listener.run();
+			}
+		}
+	}
+
+	@Override
+	public void checkCanceled() {
+		if (cancelled)
+			throw new CancellationException();
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return cancelled;
+	}
+
+	/**
+	 * Run the given listener when this token is cancelled. If it is already cancelled, the listener is run
+	 * immediately.
+	 */
+	public void addCancelListener(Runnable listener) {
+		synchronized (this) {
+			if (!cancelled) {
+				if (listeners == null)
+					listeners = new ArrayList<>(2);
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Remove a listener that has been added with {@link #addCancelListener(Runnable)}.
+	 */
+	public synchronized void removeCancelListener(Runnable listener) {
+		if (listeners != null)
+			listeners.remove(listener);
+	}
+
+	/**
+	 * Unlink this token from its parent once it is not needed anymore, so the parent does not keep it alive.
+	 */
+	public void detach() {
+		if (parent != null)
+			parent.removeCancelListener(cancelFromParent);
+	}
+
+	/**
+	 * Put this token in scope for the current thread. The returned scope must be closed by the same thread,
+	 * which restores the previous token.
+	 */
+	public Scope enter() {
+		Scope scope = new Scope(CURRENT.get());
+		CURRENT.set(this);
+		return scope;
+	}
+
+}
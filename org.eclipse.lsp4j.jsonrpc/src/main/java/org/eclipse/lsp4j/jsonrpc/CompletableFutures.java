@@ -19,32 +19,101 @@ import java.util.function.Function;
 public final class CompletableFutures {
 	private CompletableFutures() {}
 	
+	private static final ThreadLocal<Executor> DEFAULT_EXECUTOR = new ThreadLocal<>();
+	
+	/**
+	 * Set the executor that is used by {@link #computeAsync(Function)} when it is called by the current thread,
+	 * e.g. by a request handler that runs on a thread of a launcher. If no executor is set, the code is run in
+	 * the common fork-join pool.
+	 * 
+	 * @param executor the executor, or {@code null} to restore the default
+	 */
+	public static void setDefaultExecutor(Executor executor) {
+		if (executor == null)
+			DEFAULT_EXECUTOR.remove();
+		else
+			DEFAULT_EXECUTOR.set(executor);
+	}
+	
+	/**
+	 * Returns the executor that is used by {@link #computeAsync(Function)} when it is called by the current
+	 * thread, or {@code null} if the common fork-join pool is used.
+	 */
+	public static Executor getDefaultExecutor() {
+		return DEFAULT_EXECUTOR.get();
+	}
+	
 	/**
-	 * A utility method to create a {@link CompletableFuture} with cancellation support.
+	 * A utility method to create a {@link CompletableFuture} with cancellation support. The code is run with the
+	 * {@linkplain #setDefaultExecutor(Executor) default executor} of the current thread, or in the common
+	 * fork-join pool if there is none. If a {@link CancellationToken} is in scope, the future is cancelled
+	 * together with it.
 	 * 
 	 * @param code a function that accepts a {@link CancelChecker} and returns the to be computed value
 	 * @return a future
 	 */
 	public static <R> CompletableFuture<R> computeAsync(Function<CancelChecker, R> code) {
+		Executor executor = DEFAULT_EXECUTOR.get();
+		if (executor != null)
+			return computeAsync(executor, code);
+		CancellationToken token = createChildToken();
 		CompletableFuture<CancelChecker> start = new CompletableFuture<>();
-		CompletableFuture<R> result = start.thenApplyAsync(code);
+		CompletableFuture<R> result = start.thenApplyAsync(inScope(token, code));
+		link(token, result);
 		start.complete(new FutureCancelChecker(result));
 		return result;
 	}
 	
 	/**
-	 * A utility method to create a {@link CompletableFuture} with cancellation support.
+	 * A utility method to create a {@link CompletableFuture} with cancellation support. If a
+	 * {@link CancellationToken} is in scope, the future is cancelled together with it.
 	 * 
 	 * @param code a function that accepts a {@link CancelChecker} and returns the to be computed value
 	 * @return a future
 	 */
 	public static <R> CompletableFuture<R> computeAsync(Executor executor, Function<CancelChecker, R> code) {
+		CancellationToken token = createChildToken();
 		CompletableFuture<CancelChecker> start = new CompletableFuture<>();
-		CompletableFuture<R> result = start.thenApplyAsync(code, executor);
+		CompletableFuture<R> result = start.thenApplyAsync(inScope(token, code), executor);
+		link(token, result);
 		start.complete(new FutureCancelChecker(result));
 		return result;
 	}
 	
+	/**
+	 * Create a child of the {@link CancellationToken} in scope, or return {@code null} if there is none. Requests
+	 * sent by code run with the child token in scope are cancelled together with the current request.
+	 */
+	private static CancellationToken createChildToken() {
+		CancellationToken parent = CancellationToken.current();
+		return parent != null ? new CancellationToken(parent) : null;
+	}
+	
+	@SuppressWarnings("try")
+	private static <R> Function<CancelChecker, R> inScope(CancellationToken token, Function<CancelChecker, R> code) {
+		if (token == null)
+			return code;
+		return cancelChecker -> {
+			try (CancellationToken.Scope scope = token.enter()) {
+				return code.apply(cancelChecker);
+			}
+		};
+	}
+	
+	/**
+	 * Cancel the future when the token is cancelled, and vice versa.
+	 */
+	private static void link(CancellationToken token, CompletableFuture<?> result) {
+		if (token == null)
+			return;
+		token.addCancelListener(() -> result.cancel(true));
+		result.whenComplete((value, throwable) -> {
+			if (result.isCancelled())
+				token.cancel();
+			token.detach();
+		});
+	}
+	
 	public static class FutureCancelChecker implements CancelChecker {
 		
 		private final CompletableFuture<?> future;
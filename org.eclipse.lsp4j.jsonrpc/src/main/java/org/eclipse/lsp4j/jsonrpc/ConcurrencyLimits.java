@@ -0,0 +1,430 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+
+/**
+ * Bounds the number of incoming requests that are in progress at the same time, both for all requests of a
+ * connection and per request method. A request is in progress from the invocation of the local endpoint until
+ * the future for its result is completed. A request that exceeds a limit waits until a running request is
+ * done, as long as the queue of the limit is not full; otherwise it is rejected right away with a
+ * {@link ResponseErrorCode#RequestFailed RequestFailed} error. Each limit counts how often requests had to wait
+ * and how often they were rejected.
+ *
+ * <p>
+ * The limits are applied to a local endpoint with {@link #wrap(Endpoint)}, or with
+ * {@link Launcher.Builder#setConcurrencyLimits(ConcurrencyLimits)}. Notifications are not limited. A request
+ * that has waited is started by the thread that completes the request it waited for, with the
+ * {@link CancellationToken} and the {@linkplain CompletableFutures#getDefaultExecutor() default executor} that
+ * were current when it arrived.
+ */
+public class ConcurrencyLimits {
+
+	/**
+	 * A limit for the number of concurrent requests, together with its counters.
+	 */
+	public static class Limit {
+
+		private final String method;
+		private final int maxConcurrent;
+		private final int maxQueued;
+		private int running;
+		private int waiting;
+		private long queuedCount;
+		private long rejectedCount;
+
+		Limit(String method, int maxConcurrent, int maxQueued) {
+			if (maxConcurrent < 1)
+				throw new IllegalArgumentException("maxConcurrent must be positive.");
+			if (maxQueued < 0)
+				throw new IllegalArgumentException("maxQueued must not be negative.");
+			this.method = method;
+			this.maxConcurrent = maxConcurrent;
+			this.maxQueued = maxQueued;
+		}
+
+		/**
+		 * Returns the method the limit applies to, or {@code null} for the global limit.
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		public int getMaxConcurrent() {
+			return maxConcurrent;
+		}
+
+		public int getMaxQueued() {
+			return maxQueued;
+		}
+
+		/**
+		 * Returns the number of requests that are currently in progress.
+		 */
+		public synchronized int getRunning() {
+			return running;
+		}
+
+		/**
+		 * Returns the number of requests that currently wait because of this limit.
+		 */
+		public synchronized int getWaiting() {
+			return waiting;
+		}
+
+		/**
+		 * Returns how often a request had to wait because of this limit.
+		 */
+		public synchronized long getQueuedCount() {
+			return queuedCount;
+		}
+
+		/**
+		 * Returns how often a request was rejected because of this limit.
+		 */
+		public synchronized long getRejectedCount() {
+			return rejectedCount;
+		}
+
+		boolean isFull() {
+			return running >= maxConcurrent;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return "Limit [method=" + method + ", maxConcurrent=" + maxConcurrent + ", maxQueued=" + maxQueued
+					+ ", running=" + running + ", waiting=" + waiting + ", queuedCount=" + queuedCount
+					+ ", rejectedCount=" + rejectedCount + "]";
+		}
+
+	}
+
+	private final Map<String, Limit> methodLimits = new ConcurrentHashMap<>();
+	private volatile Limit globalLimit;
+	private final LinkedList<PendingRequest> waitingRequests = new LinkedList<>();
+
+	/**
+	 * The requests to be started by an outer call of {@link #start(List)} on the current thread, so requests
+	 * that complete while they are started do not start the next ones recursively.
+	 */
+	private static final ThreadLocal<Deque<PendingRequest>> STARTING_REQUESTS = new ThreadLocal<>();
+
+	/**
+	 * Limit the number of requests in progress for all methods.
+	 *
+	 * @param maxConcurrent - the maximal number of requests in progress
+	 * @param maxQueued - the maximal number of requests that wait for one of the requests in progress
+	 */
+	public ConcurrencyLimits setGlobalLimit(int maxConcurrent, int maxQueued) {
+		globalLimit = new Limit(null, maxConcurrent, maxQueued);
+		return this;
+	}
+
+	/**
+	 * Limit the number of requests in progress for the given method. This limit applies in addition to the
+	 * global limit.
+	 *
+	 * @param maxConcurrent - the maximal number of requests of the method in progress
+	 * @param maxQueued - the maximal number of requests of the method that wait for one of them
+	 */
+	public ConcurrencyLimits setMethodLimit(String method, int maxConcurrent, int maxQueued) {
+		if (method == null)
+			throw new NullPointerException("method");
+		methodLimits.put(method, new Limit(method, maxConcurrent, maxQueued));
+		return this;
+	}
+
+	/**
+	 * Returns the global limit, or {@code null} if none is configured.
+	 */
+	public Limit getGlobalLimit() {
+		return globalLimit;
+	}
+
+	/**
+	 * Returns the limit for the given method, or {@code null} if none is configured.
+	 */
+	public Limit getMethodLimit(String method) {
+		return methodLimits.get(method);
+	}
+
+	/**
+	 * Returns all configured limits.
+	 */
+	public List<Limit> getLimits() {
+		List<Limit> limits = new ArrayList<>();
+		Limit global = globalLimit;
+		if (global != null)
+			limits.add(global);
+		limits.addAll(methodLimits.values());
+		return limits;
+	}
+
+	/**
+	 * Wrap the given endpoint so that its requests are subject to these limits.
+	 */
+	public Endpoint wrap(Endpoint endpoint) {
+		if (endpoint == null)
+			throw new NullPointerException("endpoint");
+		return new Endpoint() {
+
+			@Override
+			public CompletableFuture<?> request(String method, Object parameter) {
+				return invoke(method, () -> endpoint.request(method, parameter));
+			}
+
+			@Override
+			public void notify(String method, Object parameter) {
+				endpoint.notify(method, parameter);
+			}
+
+		};
+	}
+
+	private CompletableFuture<Object> invoke(String method, Supplier<? extends CompletableFuture<?>> invocation) {
+		PendingRequest request = new PendingRequest(method, invocation, methodLimits.get(method), globalLimit);
+		Limit exceededLimit;
+		synchronized (waitingRequests) {
+			exceededLimit = request.getExceededLimit();
+			if (exceededLimit == null) {
+				request.acquire();
+			} else {
+				synchronized (exceededLimit) {
+					if (exceededLimit.waiting < exceededLimit.maxQueued) {
+						exceededLimit.waiting++;
+						exceededLimit.queuedCount++;
+						request.waitingFor = exceededLimit;
+						waitingRequests.add(request);
+						return request;
+					}
+					exceededLimit.rejectedCount++;
+				}
+			}
+		}
+		if (exceededLimit != null) {
+			request.completeExceptionally(new ResponseErrorException(createRejectionError(method, exceededLimit)));
+			return request;
+		}
+		request.start();
+		return request;
+	}
+
+	/**
+	 * Create the error for a request that is rejected because the given limit is exceeded.
+	 */
+	protected ResponseError createRejectionError(String method, Limit limit) {
+		String message;
+		if (limit.getMethod() == null)
+			message = "The request '" + method + "' has been rejected because too many requests are in progress";
+		else
+			message = "The request '" + method + "' has been rejected because too many requests of this method are in progress";
+		return new ResponseError(ResponseErrorCode.RequestFailed, message, null);
+	}
+
+	private void release(PendingRequest request) {
+		List<PendingRequest> startable = Collections.emptyList();
+		synchronized (waitingRequests) {
+			if (request.waitingFor != null) {
+				// The request has been cancelled while waiting
+				if (waitingRequests.remove(request)) {
+					synchronized (request.waitingFor) {
+						request.waitingFor.waiting--;
+					}
+				}
+				request.waitingFor = null;
+			} else {
+				request.releaseLimits();
+			}
+			Iterator<PendingRequest> iterator = waitingRequests.iterator();
+			while (iterator.hasNext()) {
+				PendingRequest next = iterator.next();
+				if (next.getExceededLimit() == null) {
+					iterator.remove();
+					synchronized (next.waitingFor) {
+						next.waitingFor.waiting--;
+					}
+					next.waitingFor = null;
+					next.acquire();
+					if (startable.isEmpty())
+						startable = new ArrayList<>();
+					startable.add(next);
+				}
+			}
+		}
+		if (!startable.isEmpty())
+			start(startable);
+	}
+
+	private static void start(List<PendingRequest> requests) {
+		Deque<PendingRequest> queue = STARTING_REQUESTS.get();
+		if (queue != null) {
+			queue.addAll(requests);
+			return;
+		}
+		queue = new ArrayDeque<>(requests);
+		STARTING_REQUESTS.set(queue);
+		Error error = null;
+		try {
+			PendingRequest next;
+			while ((next = queue.poll()) != null) {
+				try {
+					next.start();
+				} catch (Error e) {
+					// Start the remaining requests anyway, since they already hold a slot of their limits
+					if (error == null)
+						error = e;
+				}
+			}
+		} finally {
+			STARTING_REQUESTS.remove();
+		}
+		if (error != null)
+			throw error;
+	}
+
+	private class PendingRequest extends CompletableFuture<Object> {
+
+		private final String method;
+		private final Supplier<? extends CompletableFuture<?>> invocation;
+		private final Limit methodLimit;
+		private final Limit globalLimit;
+		/** The limit the request waits for, or {@code null} if it is not waiting; guarded by the waiting queue */
+		Limit waitingFor;
+		/** Whether the request holds a slot of its limits; guarded by the waiting queue */
+		private boolean acquired;
+		private volatile CompletableFuture<?> result;
+		/** The context of the thread that received the request, restored when the request is started */
+		private final CancellationToken cancellationToken = CancellationToken.current();
+		private final Executor defaultExecutor = CompletableFutures.getDefaultExecutor();
+
+		PendingRequest(String method, Supplier<? extends CompletableFuture<?>> invocation,
+				Limit methodLimit, Limit globalLimit) {
+			this.method = method;
+			this.invocation = invocation;
+			this.methodLimit = methodLimit;
+			this.globalLimit = globalLimit;
+			whenComplete((value, throwable) -> release(this));
+		}
+
+		Limit getExceededLimit() {
+			if (methodLimit != null) {
+				synchronized (methodLimit) {
+					if (methodLimit.isFull())
+						return methodLimit;
+				}
+			}
+			if (globalLimit != null) {
+				synchronized (globalLimit) {
+					if (globalLimit.isFull())
+						return globalLimit;
+				}
+			}
+			return null;
+		}
+
+		void acquire() {
+			acquired = true;
+			if (methodLimit != null) {
+				synchronized (methodLimit) {
+					methodLimit.running++;
+				}
+			}
+			if (globalLimit != null) {
+				synchronized (globalLimit) {
+					globalLimit.running++;
+				}
+			}
+		}
+
+		void releaseLimits() {
+			if (!acquired)
+				return;
+			acquired = false;
+			if (methodLimit != null) {
+				synchronized (methodLimit) {
+					methodLimit.running--;
+				}
+			}
+			if (globalLimit != null) {
+				synchronized (globalLimit) {
+					globalLimit.running--;
+				}
+			}
+		}
+
+		@SuppressWarnings("try")
+		void start() {
+			if (isDone())
+				return;
+			CompletableFuture<?> result;
+			Executor previousExecutor = CompletableFutures.getDefaultExecutor();
+			CompletableFutures.setDefaultExecutor(defaultExecutor);
+			CancellationToken token = cancellationToken != null ? cancellationToken : new CancellationToken();
+			try (CancellationToken.Scope scope = token.enter()) {
+				result = invocation.get();
+			} catch (Throwable throwable) {
+				completeExceptionally(throwable);
+				if (throwable instanceof Error)
+					throw (Error) throwable;
+				return;
+			} finally {
+				CompletableFutures.setDefaultExecutor(previousExecutor);
+			}
+			if (result == null) {
+				complete(null);
+				return;
+			}
+			this.result = result;
+			if (isDone()) {
+				result.cancel(true);
+				return;
+			}
+			result.whenComplete((value, throwable) -> {
+				if (throwable != null)
+					completeExceptionally(throwable);
+				else
+					complete(value);
+			});
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			CompletableFuture<?> result = this.result;
+			if (result != null)
+				result.cancel(mayInterruptIfRunning);
+			return cancelled;
+		}
+
+		@Override
+		public String toString() {
+			return "PendingRequest [method=" + method + "]";
+		}
+
+	}
+
+}
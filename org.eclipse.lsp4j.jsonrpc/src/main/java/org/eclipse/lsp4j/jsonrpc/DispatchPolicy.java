@@ -0,0 +1,67 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+
+/**
+ * Determines which incoming requests and notifications an {@link InboundMessageQueue} may pass to the local
+ * endpoint at the same time. Every message is assigned a key: messages with the same key are handled one after
+ * the other in the order they were received, while messages with different keys may be handled in parallel by
+ * the executor of the queue. A message with a {@code null} key acts as a barrier: it is handled after all
+ * previous messages are done, and no later message is handled before it is done.
+ *
+ * <p>
+ * Note that a request is done as soon as the local endpoint has returned the future for its result, so the
+ * order only applies to the invocation of the request methods, not to the computation of their results.
+ */
+public final class DispatchPolicy {
+
+	/**
+	 * Handle all messages one after the other. If no queue is needed for other reasons, the launcher handles the
+	 * messages on the thread that reads the input stream.
+	 */
+	public static final DispatchPolicy SEQUENTIAL = new DispatchPolicy(null);
+
+	/**
+	 * Handle all messages in parallel, without any guarantees on their order.
+	 */
+	public static final DispatchPolicy CONCURRENT = new DispatchPolicy(message -> new Object());
+
+	/**
+	 * Handle messages with the same key in order and messages with different keys in parallel. A message for
+	 * which the function returns {@code null} acts as a barrier.
+	 */
+	public static DispatchPolicy keyed(Function<? super Message, ?> keyFunction) {
+		if (keyFunction == null)
+			throw new NullPointerException("keyFunction");
+		return new DispatchPolicy(keyFunction);
+	}
+
+	private final Function<? super Message, ?> keyFunction;
+
+	private DispatchPolicy(Function<? super Message, ?> keyFunction) {
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * Returns the key of the given message, or {@code null} if the message must be handled exclusively.
+	 */
+	public Object getKey(Message message) {
+		if (keyFunction == null)
+			return this;
+		return keyFunction.apply(message);
+	}
+
+}
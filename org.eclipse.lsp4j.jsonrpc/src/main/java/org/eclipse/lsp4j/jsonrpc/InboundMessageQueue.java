@@ -0,0 +1,296 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+
+/**
+ * A message consumer that puts incoming requests and notifications into a queue and forwards them to another
+ * consumer, usually the {@link RemoteEndpoint}, in tasks started with the given executor. The thread that reads
+ * the input stream can therefore continue reading while a handler is busy. Which messages may be handled at the
+ * same time is determined by a {@link DispatchPolicy}; by default they are handled one at a time in the order
+ * they were received. Responses are forwarded immediately, which ensures that a handler that waits for the
+ * response to one of its own requests does not block the connection.
+ *
+ * <p>
+ * Cancel notifications are not queued either. If the cancelled request is still waiting in the queue, it is
+ * removed and passed to the consumer right after the cancel notification, so the {@link RemoteEndpoint} answers
+ * it with a {@link org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode#RequestCancelled RequestCancelled}
+ * error without invoking the local endpoint.
+ *
+ * <p>
+ * If a {@link MessageCoalescer} is given, each new message is offered to it together with the pending message
+ * that refers to the same resource, so e.g. the changes of consecutive {@code textDocument/didChange}
+ * notifications can be handled at once.
+ */
+public class InboundMessageQueue implements MessageConsumer {
+
+	private static final Logger LOG = Logger.getLogger(InboundMessageQueue.class.getName());
+
+	/**
+	 * A message waiting in the queue together with its dispatch key.
+	 */
+	private static class PendingMessage {
+		PendingMessage(Message message, Object key) {
+			this.message = message;
+			this.key = key;
+		}
+		Message message;
+		final Object key;
+	}
+
+	private final MessageConsumer delegate;
+	private final Executor executor;
+	private final MessageCoalescer coalescer;
+	private final DispatchPolicy dispatchPolicy;
+
+	private final LinkedList<PendingMessage> pending = new LinkedList<>();
+	private final Map<String, RequestMessage> pendingRequests = new HashMap<>();
+	private final Map<Object, Integer> runningKeys = new HashMap<>();
+	private int runningCount;
+	private boolean barrierRunning;
+
+	/**
+	 * @param delegate - the consumer that handles the messages
+	 * @param executor - the executor used to start the tasks that handle the messages
+	 */
+	public InboundMessageQueue(MessageConsumer delegate, Executor executor) {
+		this(delegate, executor, null);
+	}
+
+	/**
+	 * @param delegate - the consumer that handles the messages
+	 * @param executor - the executor used to start the tasks that handle the messages
+	 * @param coalescer - merges pending messages with new ones, or {@code null} to disable merging
+	 */
+	public InboundMessageQueue(MessageConsumer delegate, Executor executor, MessageCoalescer coalescer) {
+		this(delegate, executor, coalescer, DispatchPolicy.SEQUENTIAL);
+	}
+
+	/**
+	 * @param delegate - the consumer that handles the messages
+	 * @param executor - the executor used to start the tasks that handle the messages
+	 * @param coalescer - merges pending messages with new ones, or {@code null} to disable merging
+	 * @param dispatchPolicy - determines which messages may be handled in parallel
+	 */
+	public InboundMessageQueue(MessageConsumer delegate, Executor executor, MessageCoalescer coalescer,
+			DispatchPolicy dispatchPolicy) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		if (executor == null)
+			throw new NullPointerException("executor");
+		if (dispatchPolicy == null)
+			throw new NullPointerException("dispatchPolicy");
+		this.delegate = delegate;
+		this.executor = executor;
+		this.coalescer = coalescer;
+		this.dispatchPolicy = dispatchPolicy;
+	}
+
+	@Override
+	public void consume(Message message) throws MessageIssueException, JsonRpcException {
+		if (message instanceof ResponseMessage) {
+			delegate.consume(message);
+			return;
+		}
+		if (isCancellation(message)) {
+			handleCancellation((NotificationMessage) message);
+			return;
+		}
+		List<PendingMessage> startable;
+		synchronized (pending) {
+			if (!coalesce(message)) {
+				pending.add(new PendingMessage(message, dispatchPolicy.getKey(message)));
+				if (message instanceof RequestMessage)
+					pendingRequests.put(((RequestMessage) message).getId(), (RequestMessage) message);
+			}
+			startable = dispatch();
+		}
+		start(startable);
+	}
+
+	/**
+	 * Try to merge the given message into a pending message. Must be called while holding the lock of the queue.
+	 *
+	 * @return {@code true} if the message has been merged and must not be added to the queue
+	 */
+	protected boolean coalesce(Message message) {
+		if (coalescer == null || pending.isEmpty())
+			return false;
+		Object key = coalescer.getKey(message);
+		if (key == null)
+			return false;
+		ListIterator<PendingMessage> iterator = pending.listIterator(pending.size());
+		while (iterator.hasPrevious()) {
+			PendingMessage queued = iterator.previous();
+			Object queuedKey = coalescer.getKey(queued.message);
+			if (queuedKey == null)
+				return false;
+			if (key.equals(queuedKey)) {
+				Message merged = coalescer.coalesce(queued.message, message);
+				if (merged == null)
+					return false;
+				if (queued.message instanceof RequestMessage)
+					pendingRequests.remove(((RequestMessage) queued.message).getId());
+				if (merged instanceof RequestMessage)
+					pendingRequests.put(((RequestMessage) merged).getId(), (RequestMessage) merged);
+				queued.message = merged;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remove the pending messages that are allowed to run by the dispatch policy from the queue and mark them as
+	 * running. Must be called while holding the lock of the queue.
+	 *
+	 * @return the messages for which a task must be started
+	 */
+	private List<PendingMessage> dispatch() {
+		if (barrierRunning || pending.isEmpty())
+			return Collections.emptyList();
+		List<PendingMessage> startable = new ArrayList<>();
+		Set<Object> skippedKeys = null;
+		Iterator<PendingMessage> iterator = pending.iterator();
+		while (iterator.hasNext()) {
+			PendingMessage next = iterator.next();
+			if (next.key == null) {
+				// A barrier waits for all previous messages, and all later messages wait for the barrier
+				if (runningCount == 0 && startable.isEmpty() && skippedKeys == null) {
+					iterator.remove();
+					barrierRunning = true;
+					running(next);
+					startable.add(next);
+				}
+				break;
+			}
+			if (!runningKeys.containsKey(next.key) && (skippedKeys == null || !skippedKeys.contains(next.key))) {
+				iterator.remove();
+				runningKeys.merge(next.key, 1, Integer::sum);
+				running(next);
+				startable.add(next);
+			} else {
+				if (skippedKeys == null)
+					skippedKeys = new HashSet<>();
+				skippedKeys.add(next.key);
+			}
+		}
+		return startable;
+	}
+
+	private void running(PendingMessage message) {
+		runningCount++;
+		if (message.message instanceof RequestMessage)
+			pendingRequests.remove(((RequestMessage) message.message).getId());
+	}
+
+	private void finished(PendingMessage message) {
+		runningCount--;
+		if (message.key == null)
+			barrierRunning = false;
+		else
+			runningKeys.computeIfPresent(message.key, (key, count) -> count > 1 ? count - 1 : null);
+	}
+
+	private void start(List<PendingMessage> startable) {
+		for (PendingMessage next : startable) {
+			try {
+				executor.execute(() -> handle(next));
+			} catch (RejectedExecutionException exception) {
+				LOG.log(Level.WARNING, "Failed to handle message: " + next.message, exception);
+				synchronized (pending) {
+					finished(next);
+				}
+			}
+		}
+	}
+
+	private void handle(PendingMessage next) {
+		try {
+			delegate.consume(next.message);
+		} catch (Exception exception) {
+			Level logLevel = JsonRpcException.indicatesStreamClosed(exception) ? Level.INFO : Level.WARNING;
+			LOG.log(logLevel, "Failed to handle message: " + next.message, exception);
+		} finally {
+			List<PendingMessage> startable;
+			synchronized (pending) {
+				finished(next);
+				startable = dispatch();
+			}
+			start(startable);
+		}
+	}
+
+	protected boolean isCancellation(Message message) {
+		return message instanceof NotificationMessage
+				&& MessageJsonHandler.CANCEL_METHOD.getMethodName().equals(((NotificationMessage) message).getMethod())
+				&& ((NotificationMessage) message).getParams() instanceof CancelParams;
+	}
+
+	/**
+	 * Forward a cancel notification and, if the cancelled request is still waiting in the queue, the request.
+	 */
+	protected void handleCancellation(NotificationMessage cancelNotification) {
+		String id = ((CancelParams) cancelNotification.getParams()).getId();
+		RequestMessage cancelledRequest;
+		List<PendingMessage> startable = Collections.emptyList();
+		synchronized (pending) {
+			cancelledRequest = pendingRequests.remove(id);
+			if (cancelledRequest != null) {
+				Iterator<PendingMessage> iterator = pending.iterator();
+				while (iterator.hasNext()) {
+					if (iterator.next().message == cancelledRequest) {
+						iterator.remove();
+						break;
+					}
+				}
+				// Messages that waited for the cancelled request may be started now
+				startable = dispatch();
+			}
+		}
+		start(startable);
+		delegate.consume(cancelNotification);
+		if (cancelledRequest != null)
+			delegate.consume(cancelledRequest);
+	}
+
+	/**
+	 * Returns the number of messages waiting in the queue, not including the messages that are being handled.
+	 */
+	public int size() {
+		synchronized (pending) {
+			return pending.size();
+		}
+	}
+
+}
@@ -11,6 +11,8 @@
  ******************************************************************************/
 package org.eclipse.lsp4j.jsonrpc;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -18,11 +20,17 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.logging.Logger;
 
 import org.eclipse.lsp4j.jsonrpc.json.ConcurrentMessageProcessor;
 import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
@@ -236,6 +244,15 @@ public interface Launcher<T> {
 		protected Consumer<GsonBuilder> configureGson;
 		protected ClassLoader classLoader;
 		protected MessageTracer messageTracer;
+		protected MessageCoalescer messageCoalescer;
+		protected DispatchPolicy dispatchPolicy;
+		protected boolean useVirtualThreads;
+		protected RequestScheduler requestScheduler;
+		protected Map<String, RequestPriority> requestPriorities;
+		protected ConcurrencyLimits concurrencyLimits;
+		protected RequestTimeouts requestTimeouts;
+		protected Collection<String> singleFlightMethods;
+		private RequestScheduler ownedRequestScheduler;
 		
 		public Builder<T> setLocalService(Object localService) {
 			this.localServices = Collections.singletonList(localService);
@@ -304,6 +321,93 @@ public interface Launcher<T> {
 			return this;
 		}
 
+		/**
+		 * Queue incoming requests and notifications and merge pending messages with the given coalescer.
+		 * The messages are handled in a task started with the executor service of the launcher.
+		 */
+		public Builder<T> setMessageCoalescer(MessageCoalescer messageCoalescer) {
+			this.messageCoalescer = messageCoalescer;
+			return this;
+		}
+
+		/**
+		 * Determine which incoming messages may be handled in parallel. With any other policy than
+		 * {@link DispatchPolicy#SEQUENTIAL}, the messages are queued and handled in tasks started with the executor
+		 * service of the launcher.
+		 */
+		public Builder<T> setDispatchPolicy(DispatchPolicy dispatchPolicy) {
+			this.dispatchPolicy = dispatchPolicy;
+			return this;
+		}
+
+		/**
+		 * Run the message processing of the launcher on virtual threads if the runtime supports them (Java 21 or
+		 * later); otherwise a cached thread pool is used as usual. This includes the thread that reads the input
+		 * stream, the tasks that handle queued messages (see {@link #setDispatchPolicy(DispatchPolicy)}), and the
+		 * code run with {@link CompletableFutures#computeAsync(Function)} by the request handlers.
+		 * This option has no effect if an executor service is configured explicitly.
+		 */
+		public Builder<T> useVirtualThreads(boolean useVirtualThreads) {
+			this.useVirtualThreads = useVirtualThreads;
+			return this;
+		}
+
+		/**
+		 * Run incoming requests with the given scheduler, which keeps separate queues and threads for interactive
+		 * and background requests. The priorities declared with
+		 * {@link org.eclipse.lsp4j.jsonrpc.services.JsonRequestPriority JsonRequestPriority} on the local services
+		 * are added to the scheduler for all methods it has no priority for.
+		 * <p>
+		 * Only requests are scheduled; notifications are still handled in order on the thread that reads the
+		 * input stream. Hence a request may be invoked after a notification that was received later, e.g. a
+		 * {@code textDocument/didChange} notification. The given scheduler is not shut down by the launcher.
+		 */
+		public Builder<T> setRequestScheduler(RequestScheduler requestScheduler) {
+			this.requestScheduler = requestScheduler;
+			return this;
+		}
+
+		/**
+		 * Set the class of incoming requests with the given method name, overriding the priority declared on the
+		 * local services. If no {@linkplain #setRequestScheduler(RequestScheduler) request scheduler} is
+		 * configured, a scheduler with default thread budgets is created. That scheduler is shut down when the
+		 * launcher stops listening to the input stream.
+		 */
+		public Builder<T> setRequestPriority(String method, RequestPriority priority) {
+			if (requestPriorities == null)
+				requestPriorities = new LinkedHashMap<>();
+			requestPriorities.put(method, priority);
+			return this;
+		}
+
+		/**
+		 * Bound the number of incoming requests that are in progress at the same time. Requests that exceed a
+		 * limit wait or are rejected, depending on the queue sizes of the limits.
+		 */
+		public Builder<T> setConcurrencyLimits(ConcurrencyLimits concurrencyLimits) {
+			this.concurrencyLimits = concurrencyLimits;
+			return this;
+		}
+
+		/**
+		 * Cancel outgoing requests that are not answered within the given timeouts.
+		 */
+		public Builder<T> setRequestTimeouts(RequestTimeouts requestTimeouts) {
+			this.requestTimeouts = requestTimeouts;
+			return this;
+		}
+
+		/**
+		 * Forward identical requests of the given methods that are in progress at the same time only once, both
+		 * for requests sent through the remote proxy and for incoming requests.
+		 *
+		 * @see SingleFlightEndpoint
+		 */
+		public Builder<T> setSingleFlightMethods(Collection<String> singleFlightMethods) {
+			this.singleFlightMethods = singleFlightMethods;
+			return this;
+		}
+
 		public Launcher<T> create() {
 			// Validate input
 			if (input == null)
@@ -317,17 +421,36 @@ public interface Launcher<T> {
 			
 			// Create the JSON handler, remote endpoint and remote proxy
 			MessageJsonHandler jsonHandler = createJsonHandler();
+			ownedRequestScheduler = null;
 			RemoteEndpoint remoteEndpoint = createRemoteEndpoint(jsonHandler);
+			RequestScheduler schedulerToShutdown = ownedRequestScheduler;
+			ownedRequestScheduler = null;
+			if (requestTimeouts != null)
+				remoteEndpoint.setRequestTimeouts(requestTimeouts);
 			T remoteProxy = createProxy(remoteEndpoint);
 			
 			// Create the message processor
-			StreamMessageProducer reader = new StreamMessageProducer(input, jsonHandler, remoteEndpoint);
-			MessageConsumer messageConsumer = wrapMessageConsumer(remoteEndpoint);
+			ExecutorService execService = executorService != null ? executorService : createExecutorService();
+			MessageProducer reader = new StreamMessageProducer(input, jsonHandler, remoteEndpoint);
+			if (schedulerToShutdown != null)
+				reader = new SchedulerShutdownProducer(reader, schedulerToShutdown);
+			MessageConsumer messageConsumer = wrapMessageConsumer(createInboundConsumer(remoteEndpoint, execService));
 			ConcurrentMessageProcessor msgProcessor = createMessageProcessor(reader, messageConsumer, remoteProxy);
-			ExecutorService execService = executorService != null ? executorService : Executors.newCachedThreadPool();
 			return createLauncher(execService, remoteProxy, remoteEndpoint, msgProcessor);
 		}
 		
+		/**
+		 * Create the executor service that is used if none is configured explicitly.
+		 */
+		protected ExecutorService createExecutorService() {
+			if (useVirtualThreads) {
+				if (VirtualThreads.isAvailable())
+					return VirtualThreads.newExecutor("lsp4j-");
+				Logger.getLogger(Launcher.class.getName()).info("Virtual threads are not available, using a cached thread pool instead.");
+			}
+			return Executors.newCachedThreadPool();
+		}
+		
 		/**
 		 * Create the JSON handler for messages between the local and remote services.
 		 */
@@ -345,28 +468,103 @@ public interface Launcher<T> {
 		protected RemoteEndpoint createRemoteEndpoint(MessageJsonHandler jsonHandler) {
 			MessageConsumer outgoingMessageStream = new StreamMessageConsumer(output, jsonHandler);
 			outgoingMessageStream = wrapMessageConsumer(outgoingMessageStream);
-			Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+			Endpoint localEndpoint = createLocalEndpoint();
 			RemoteEndpoint remoteEndpoint;
-			if (exceptionHandler == null)
+			RequestScheduler scheduler = createRequestScheduler();
+			if (exceptionHandler == null && scheduler == null)
 				remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint);
-			else
+			else if (scheduler == null)
 				remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint, exceptionHandler);
+			else
+				remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint,
+						exceptionHandler != null ? exceptionHandler : RemoteEndpoint.DEFAULT_EXCEPTION_HANDLER, scheduler);
 			jsonHandler.setMethodProvider(remoteEndpoint);
 			return remoteEndpoint;
 		}
 		
+		/**
+		 * Create the endpoint that forwards incoming requests and notifications to the local services.
+		 */
+		protected Endpoint createLocalEndpoint() {
+			Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+			if (concurrencyLimits != null)
+				localEndpoint = concurrencyLimits.wrap(localEndpoint);
+			if (singleFlightMethods != null)
+				localEndpoint = new SingleFlightEndpoint(localEndpoint, singleFlightMethods);
+			return localEndpoint;
+		}
+		
+		/**
+		 * Create the scheduler for incoming requests, or return {@code null} if the requests shall be invoked
+		 * on the thread that handles the request messages.
+		 */
+		protected RequestScheduler createRequestScheduler() {
+			if (requestScheduler == null && requestPriorities == null)
+				return null;
+			RequestScheduler scheduler = requestScheduler;
+			if (scheduler == null) {
+				scheduler = new RequestScheduler();
+				ownedRequestScheduler = scheduler;
+			}
+			for (JsonRpcMethod method : getLocalSupportedMethods().values()) {
+				if (method.getPriority() != null && scheduler.getPriority(method.getMethodName()) == null)
+					scheduler.setPriority(method.getMethodName(), method.getPriority());
+			}
+			if (requestPriorities != null)
+				requestPriorities.forEach(scheduler::setPriority);
+			return scheduler;
+		}
+		
 		/**
 		 * Create the proxy for calling methods on the remote service.
 		 */
 		@SuppressWarnings("unchecked")
 		protected T createProxy(RemoteEndpoint remoteEndpoint) {
+			Endpoint endpoint = remoteEndpoint;
+			if (singleFlightMethods != null)
+				endpoint = new SingleFlightEndpoint(remoteEndpoint, singleFlightMethods);
 			if (localServices.size() == 1 && remoteInterfaces.size() == 1) {
-				return ServiceEndpoints.toServiceObject(remoteEndpoint, remoteInterfaces.iterator().next());
+				return ServiceEndpoints.toServiceObject(endpoint, remoteInterfaces.iterator().next());
 			} else {
-				return (T) ServiceEndpoints.toServiceObject(remoteEndpoint, (Collection<Class<?>>) (Object) remoteInterfaces, classLoader);
+				return (T) ServiceEndpoints.toServiceObject(endpoint, (Collection<Class<?>>) (Object) remoteInterfaces, classLoader);
 			}
 		}
 		
+		/**
+		 * Create the consumer that forwards incoming messages to the remote endpoint. If a message coalescer
+		 * or a non-sequential dispatch policy is configured, the messages are queued before they are handled.
+		 * The queue starts its tasks with the given executor service only if it has been created by this builder;
+		 * a configured executor service may be too small to run the tasks besides the thread that reads the
+		 * input stream, so the queue gets an executor of its own.
+		 */
+		protected MessageConsumer createInboundConsumer(RemoteEndpoint remoteEndpoint, ExecutorService execService) {
+			DispatchPolicy policy = dispatchPolicy != null ? dispatchPolicy : DispatchPolicy.SEQUENTIAL;
+			if (messageCoalescer != null || policy != DispatchPolicy.SEQUENTIAL) {
+				Executor dispatchExecutor = executorService != null ? createDispatchExecutor() : execService;
+				return new InboundMessageQueue(remoteEndpoint, dispatchExecutor, messageCoalescer, policy);
+			}
+			return remoteEndpoint;
+		}
+		
+		/**
+		 * Create the executor that starts the tasks of the queue for incoming messages if an executor service has
+		 * been configured. Its threads are daemon threads that terminate when they have been idle for a while, so
+		 * the executor does not need to be shut down.
+		 */
+		protected Executor createDispatchExecutor() {
+			if (useVirtualThreads && VirtualThreads.isAvailable())
+				return VirtualThreads.newExecutor("lsp4j-dispatch-");
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<>());
+			AtomicInteger threadCount = new AtomicInteger();
+			executor.setThreadFactory(runnable -> {
+				Thread thread = new Thread(runnable, "lsp4j-dispatch-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			return executor;
+		}
+		
 		/**
 		 * Create the message processor that listens to the input stream. 
 		 */
@@ -405,6 +603,16 @@ public interface Launcher<T> {
 			}
 			
 			// Gather the supported methods of local services
+			supportedMethods.putAll(getLocalSupportedMethods());
+			
+			return supportedMethods;
+		}
+		
+		/**
+		 * Gather the JSON-RPC methods of the local services.
+		 */
+		protected Map<String, JsonRpcMethod> getLocalSupportedMethods() {
+			Map<String, JsonRpcMethod> supportedMethods = new LinkedHashMap<>();
 			for (Object localService : localServices) {
 				if (localService instanceof JsonRpcMethodProvider) {
 					JsonRpcMethodProvider rpcMethodProvider = (JsonRpcMethodProvider) localService;
@@ -413,9 +621,38 @@ public interface Launcher<T> {
 					supportedMethods.putAll(ServiceEndpoints.getSupportedMethods(localService.getClass()));
 				}
 			}
-			
 			return supportedMethods;
 		}
+		
+		/**
+		 * Shuts down a request scheduler created by the builder when the reader stops listening.
+		 */
+		private static class SchedulerShutdownProducer implements MessageProducer, Closeable {
+			
+			private final MessageProducer reader;
+			private final RequestScheduler scheduler;
+			
+			SchedulerShutdownProducer(MessageProducer reader, RequestScheduler scheduler) {
+				this.reader = reader;
+				this.scheduler = scheduler;
+			}
+			
+			@Override
+			public void listen(MessageConsumer messageConsumer) {
+				try {
+					reader.listen(messageConsumer);
+				} finally {
+					scheduler.shutdown();
+				}
+			}
+			
+			@Override
+			public void close() throws IOException {
+				if (reader instanceof Closeable)
+					((Closeable) reader).close();
+			}
+			
+		}
 	}
 	
 	
@@ -0,0 +1,40 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+
+/**
+ * Merges incoming messages that are still waiting in an {@link InboundMessageQueue} with messages that arrive
+ * later, so the local endpoint handles them only once.
+ */
+public interface MessageCoalescer {
+
+	/**
+	 * Returns the key of the resource the given message refers to, e.g. the URI of a document. A message is only
+	 * merged with a pending message that has the same key, and only if no other message with that key is queued
+	 * between them. Messages without a key may refer to any resource, so no message is merged across them.
+	 *
+	 * @return the key, or {@code null} if the message does not refer to a specific resource
+	 */
+	Object getKey(Message message);
+
+	/**
+	 * Merge a message into a message with the same key that is still waiting in the queue.
+	 *
+	 * @param queued - the message waiting in the queue
+	 * @param next - the message that has just been received
+	 * @return the message that replaces the queued one, or {@code null} if the two messages cannot be merged
+	 */
+	Message coalesce(Message queued, Message next);
+
+}
@@ -20,8 +20,14 @@ import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,11 +80,57 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 	private final MessageConsumer out;
 	private final Endpoint localEndpoint;
 	private final Function<Throwable, ResponseError> exceptionHandler;
+	private final RequestScheduler requestScheduler;
+	private volatile RequestTimeouts requestTimeouts;
 	
 	private final AtomicInteger nextRequestId = new AtomicInteger();
 	private final Map<String, PendingRequestInfo> sentRequestMap = new LinkedHashMap<>();
 	private final Map<String, CompletableFuture<?>> receivedRequestMap = new LinkedHashMap<>();
 	
+	/**
+	 * The maximal number of request ids that are remembered when a request is cancelled before it is received,
+	 * e.g. because it is still waiting in a queue.
+	 */
+	private static final int MAX_CANCELLED_REQUESTS = 1000;
+	
+	/**
+	 * Requests that have been cancelled before they were received or while they were being handled, mapped to
+	 * the error they are answered with. A {@code null} error stands for a {@code RequestCancelled} error.
+	 */
+	private final Map<String, ResponseError> cancelledRequests = new LinkedHashMap<String, ResponseError>() {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ResponseError> eldest) {
+			return size() > MAX_CANCELLED_REQUESTS;
+		}
+	};
+	
+	/**
+	 * Received requests that have been answered, so a late cancellation does not take up an entry of the
+	 * {@code cancelledRequests}. Guarded by the {@code receivedRequestMap}.
+	 */
+	private final Map<String, Boolean> answeredRequests = new LinkedHashMap<String, Boolean>() {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_CANCELLED_REQUESTS;
+		}
+	};
+	
+	private final List<Consumer<? super ResponseMessage>> responseListeners = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Sent requests that have timed out, so a late response is not reported as unmatched. Guarded by the
+	 * {@code sentRequestMap}.
+	 */
+	private final Map<String, Boolean> expiredRequests = new LinkedHashMap<String, Boolean>() {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_CANCELLED_REQUESTS;
+		}
+	};
+	
 	/**
 	 * Information about requests that have been sent and for which no response has been received yet.
 	 */
@@ -97,6 +149,18 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 	 * @param exceptionHandler - an exception handler that should never return null.
 	 */
 	public RemoteEndpoint(MessageConsumer out, Endpoint localEndpoint, Function<Throwable, ResponseError> exceptionHandler) {
+		this(out, localEndpoint, exceptionHandler, null);
+	}
+	
+	/**
+	 * @param out - a consumer that transmits messages to the remote service
+	 * @param localEndpoint - the local service implementation
+	 * @param exceptionHandler - an exception handler that should never return null.
+	 * @param requestScheduler - runs the incoming requests according to their priority, or {@code null} to
+	 *     invoke the local endpoint on the thread that handles the request message
+	 */
+	public RemoteEndpoint(MessageConsumer out, Endpoint localEndpoint, Function<Throwable, ResponseError> exceptionHandler,
+			RequestScheduler requestScheduler) {
 		if (out == null)
 			throw new NullPointerException("out");
 		if (localEndpoint == null)
@@ -106,6 +170,7 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 		this.out = out;
 		this.localEndpoint = localEndpoint;
 		this.exceptionHandler = exceptionHandler;
+		this.requestScheduler = requestScheduler;
 	}
 	
 	/**
@@ -139,10 +204,27 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 	}
 
 	/**
-	 * Send a request to the remote endpoint.
+	 * Send a request to the remote endpoint. If {@linkplain #setRequestTimeouts(RequestTimeouts) timeouts} are
+	 * configured, the request is cancelled when the remote endpoint does not answer in time.
 	 */
 	@Override
 	public CompletableFuture<Object> request(String method, Object parameter) {
+		RequestTimeouts timeouts = requestTimeouts;
+		long timeout = timeouts != null ? timeouts.getTimeout(method) : 0;
+		return request(method, parameter, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Send a request to the remote endpoint. If the remote endpoint does not answer within the given time, the
+	 * returned future fails with a {@link TimeoutException}, a cancel notification is sent, and the request is
+	 * forgotten. The timeout is driven by the timer of the configured {@link RequestTimeouts}, or the
+	 * {@linkplain TimerWheel#getShared() shared} timer if none are configured. If a {@link CancellationToken} is
+	 * in scope, e.g. because the request is sent while handling an incoming request, the request is cancelled
+	 * together with the token.
+	 *
+	 * @param timeout - the time to wait for the response, or zero to wait forever
+	 */
+	public CompletableFuture<Object> request(String method, Object parameter, long timeout, TimeUnit unit) {
 		final RequestMessage requestMessage = createRequestMessage(method, parameter);
 		final CompletableFuture<Object> result = new CompletableFuture<Object>() {
 			@Override
@@ -155,6 +237,14 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 			// Store request information so it can be handled when the response is received
 			sentRequestMap.put(requestMessage.getId(), new PendingRequestInfo(requestMessage, result));
 		}
+		if (timeout > 0) {
+			RequestTimeouts timeouts = requestTimeouts;
+			TimerWheel timer = timeouts != null ? timeouts.getTimer() : TimerWheel.getShared();
+			long timeoutMillis = unit.toMillis(timeout);
+			TimerWheel.Timeout scheduledTimeout = timer.schedule(
+					() -> handleTimeout(requestMessage, result, timeoutMillis), timeout, unit);
+			result.whenComplete((value, throwable) -> scheduledTimeout.cancel());
+		}
 		
 		try {
 			// Send the request to the remote service
@@ -163,9 +253,47 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 			// The message could not be sent, e.g. because the communication channel was closed
 			result.completeExceptionally(exception);
 		}
+		CancellationToken cancellationToken = CancellationToken.current();
+		if (cancellationToken != null) {
+			// Cancel the request together with the incoming request that is being handled
+			Runnable cancelRequest = () -> result.cancel(true);
+			cancellationToken.addCancelListener(cancelRequest);
+			result.whenComplete((value, throwable) -> cancellationToken.removeCancelListener(cancelRequest));
+		}
 		return result;
 	}
 
+	/**
+	 * The remote endpoint has not answered the given request in time: forget the request, send a cancel
+	 * notification and fail the future for the result. This is called by the timer thread, so sending the
+	 * notification and running the dependents of the future is handed off to the common fork-join pool.
+	 */
+	protected void handleTimeout(RequestMessage requestMessage, CompletableFuture<Object> future, long timeoutMillis) {
+		synchronized (sentRequestMap) {
+			PendingRequestInfo requestInfo = sentRequestMap.get(requestMessage.getId());
+			if (requestInfo == null || requestInfo.future != future)
+				return;
+			sentRequestMap.remove(requestMessage.getId());
+			expiredRequests.put(requestMessage.getId(), Boolean.TRUE);
+		}
+		ForkJoinPool.commonPool().execute(() -> {
+			sendCancelNotification(requestMessage.getRawId());
+			future.completeExceptionally(new TimeoutException("The request (id: " + requestMessage.getId() + ", method: '"
+					+ requestMessage.getMethod() + "') has not been answered within " + timeoutMillis + " ms"));
+		});
+	}
+
+	/**
+	 * Set the timeouts for outgoing requests, or {@code null} to let requests wait for their response forever.
+	 */
+	public void setRequestTimeouts(RequestTimeouts requestTimeouts) {
+		this.requestTimeouts = requestTimeouts;
+	}
+
+	public RequestTimeouts getRequestTimeouts() {
+		return requestTimeouts;
+	}
+
 	protected RequestMessage createRequestMessage(String method, Object parameter) {
 		RequestMessage requestMessage = new RequestMessage();
 		requestMessage.setId(String.valueOf(nextRequestId.incrementAndGet()));
@@ -198,10 +326,16 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 
 	protected void handleResponse(ResponseMessage responseMessage) {
 		PendingRequestInfo requestInfo;
+		boolean expired = false;
 		synchronized (sentRequestMap) {
 			requestInfo = sentRequestMap.remove(responseMessage.getId());
+			if (requestInfo == null)
+				expired = expiredRequests.remove(responseMessage.getId()) != null;
 		}
-		if (requestInfo == null) {
+		if (requestInfo == null && expired) {
+			// The response has arrived after the request has timed out
+			LOG.log(Level.FINE, "Response message for expired request: " + responseMessage);
+		} else if (requestInfo == null) {
 			// We have no pending request information that matches the id given in the response
 			LOG.log(Level.WARNING, "Unmatched response message: " + responseMessage);
 		} else if (responseMessage.getError() != null) {
@@ -238,10 +372,14 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 					synchronized (receivedRequestMap) {
 						String id = ((CancelParams) cancelParams).getId();
 						CompletableFuture<?> future = receivedRequestMap.get(id);
-						if (future != null)
+						if (future != null) {
 							future.cancel(true);
-						else
-							LOG.warning("Unmatched cancel notification for request id " + id);
+						} else {
+							// The request has not been handled yet or has already been answered
+							if (!answeredRequests.containsKey(id))
+								cancelledRequests.putIfAbsent(id, null);
+							LOG.fine("Unmatched cancel notification for request id " + id);
+						}
 					}
 					return true;
 				} else {
@@ -254,37 +392,99 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 		return false;
 	}
 	
+	/**
+	 * Cancel a request received from the remote endpoint and answer it with the given error instead of a
+	 * {@code RequestCancelled} error, e.g. with {@link ResponseErrorCode#ContentModified} when the result would
+	 * be outdated. If the request has not been received yet, e.g. because it is still waiting in a queue, it is
+	 * answered with the error as soon as it arrives, without invoking the local endpoint. Requests that have
+	 * already been answered are ignored.
+	 * 
+	 * @return {@code true} if the request was being handled by the local endpoint
+	 */
+	public boolean cancelReceivedRequest(String requestId, ResponseError error) {
+		CompletableFuture<?> future;
+		synchronized (receivedRequestMap) {
+			if (answeredRequests.containsKey(requestId))
+				return false;
+			cancelledRequests.put(requestId, error);
+			future = receivedRequestMap.get(requestId);
+		}
+		if (future == null)
+			return false;
+		future.cancel(true);
+		return true;
+	}
+	
+	@SuppressWarnings("try")
 	protected void handleRequest(RequestMessage requestMessage) {
+		final String messageId = requestMessage.getId();
+		boolean cancelled;
+		ResponseError cancellationError = null;
+		synchronized (receivedRequestMap) {
+			cancelled = cancelledRequests.containsKey(messageId);
+			if (cancelled)
+				cancellationError = cancelledRequests.remove(messageId);
+		}
+		if (cancelled) {
+			// The request has been cancelled before it was received, so the local endpoint is not invoked
+			if (cancellationError == null)
+				cancellationError = createCancellationError(requestMessage);
+			sendResponse(createErrorResponseMessage(requestMessage, cancellationError));
+			return;
+		}
+		
+		// Requests sent by the local endpoint while handling this request are cancelled together with it
+		CancellationToken cancellationToken = new CancellationToken();
+		Supplier<CompletableFuture<?>> invocation = () -> {
+			try (CancellationToken.Scope scope = cancellationToken.enter()) {
+				return localEndpoint.request(requestMessage.getMethod(), requestMessage.getParams());
+			}
+		};
 		CompletableFuture<?> future;
 		try {
 			// Forward the request to the local endpoint
-			future = localEndpoint.request(requestMessage.getMethod(), requestMessage.getParams());
+			if (requestScheduler != null)
+				future = requestScheduler.schedule(requestMessage, invocation);
+			else
+				future = invocation.get();
 		} catch (Throwable throwable) {
 			// The local endpoint has failed handling the request - reply with an error response
 			ResponseError errorObject = exceptionHandler.apply(throwable);
 			if (errorObject == null) {
 				errorObject = fallbackResponseError("Internal error. Exception handler provided no error object", throwable);
 			}
-			out.consume(createErrorResponseMessage(requestMessage, errorObject));
+			sendResponse(createErrorResponseMessage(requestMessage, errorObject));
 			if (throwable instanceof Error)
 				throw (Error) throwable;
 			else
 				return;
 		}
 		
-		final String messageId = requestMessage.getId();
 		synchronized (receivedRequestMap) {
 			receivedRequestMap.put(messageId, future);
+			cancelled = cancelledRequests.containsKey(messageId);
 		}
+		if (cancelled) {
+			// The request has been cancelled while the local endpoint was invoked
+			future.cancel(true);
+		}
+		future.whenComplete((result, throwable) -> {
+			if (throwable != null && isCancellation(throwable))
+				cancellationToken.cancel();
+		});
 		future.thenAccept((result) -> {
 			// Reply with the result object that was computed by the local endpoint 
-			out.consume(createResultResponseMessage(requestMessage, result));
+			sendResponse(createResultResponseMessage(requestMessage, result));
 		}).exceptionally((Throwable t) -> {
 			// The local endpoint has failed computing a result - reply with an error response
 			ResponseMessage responseMessage;
 			if (isCancellation(t)) {
-				String message = "The request (id: " + messageId + ", method: '" + requestMessage.getMethod()  + "') has been cancelled";
-				ResponseError errorObject = new ResponseError(ResponseErrorCode.RequestCancelled, message, null);
+				ResponseError errorObject;
+				synchronized (receivedRequestMap) {
+					errorObject = cancelledRequests.remove(messageId);
+				}
+				if (errorObject == null)
+					errorObject = createCancellationError(requestMessage);
 				responseMessage = createErrorResponseMessage(requestMessage, errorObject);
 			} else {
 				ResponseError errorObject = exceptionHandler.apply(t);
@@ -293,16 +493,51 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 				}
 				responseMessage = createErrorResponseMessage(requestMessage, errorObject);
 			}
-			out.consume(responseMessage);
+			sendResponse(responseMessage);
 			return null;
 		}).thenApply((obj) -> {
 			synchronized (receivedRequestMap) {
 				receivedRequestMap.remove(messageId);
+				cancelledRequests.remove(messageId);
 			}
 			return null;
 		});
 	}
 
+	/**
+	 * Send the response to a received request and notify the response listeners.
+	 */
+	protected void sendResponse(ResponseMessage responseMessage) {
+		if (responseMessage.getId() != null) {
+			synchronized (receivedRequestMap) {
+				answeredRequests.put(responseMessage.getId(), Boolean.TRUE);
+			}
+		}
+		out.consume(responseMessage);
+		for (Consumer<? super ResponseMessage> listener : responseListeners) {
+			try {
+				listener.accept(responseMessage);
+			} catch (RuntimeException exception) {
+				LOG.log(Level.WARNING, "Response listener threw an exception: " + responseMessage, exception);
+			}
+		}
+	}
+	
+	/**
+	 * Add a listener that is notified after a response to a received request has been sent, e.g. to forget
+	 * state kept for the request.
+	 */
+	public void addResponseListener(Consumer<? super ResponseMessage> listener) {
+		responseListeners.add(listener);
+	}
+	
+	/**
+	 * Remove a listener that has been added with {@link #addResponseListener(Consumer)}.
+	 */
+	public void removeResponseListener(Consumer<? super ResponseMessage> listener) {
+		responseListeners.remove(listener);
+	}
+	
 	@Override
 	public void handle(Message message, List<MessageIssue> issues) {
 		if (issues.isEmpty()) {
@@ -342,15 +577,21 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 			errorObject.setCode(ResponseErrorCode.InvalidRequest);
 			errorObject.setData(issues);
 		}
-		out.consume(createErrorResponseMessage(requestMessage, errorObject));
+		sendResponse(createErrorResponseMessage(requestMessage, errorObject));
 	}
 	
 	protected void handleResponseIssues(ResponseMessage responseMessage, List<MessageIssue> issues) {
 		PendingRequestInfo requestInfo;
+		boolean expired = false;
 		synchronized (sentRequestMap) {
 			requestInfo = sentRequestMap.remove(responseMessage.getId());
+			if (requestInfo == null)
+				expired = expiredRequests.remove(responseMessage.getId()) != null;
 		}
-		if (requestInfo == null) {
+		if (requestInfo == null && expired) {
+			// The response has arrived after the request has timed out
+			LOG.log(Level.FINE, "Response message for expired request: " + responseMessage);
+		} else if (requestInfo == null) {
 			// We have no pending request information that matches the id given in the response
 			LOG.log(Level.WARNING, "Unmatched response message: " + responseMessage);
 			logIssues(responseMessage, issues);
@@ -378,6 +619,11 @@ public class RemoteEndpoint implements Endpoint, MessageConsumer, MessageIssueHa
 		return responseMessage;
 	}
 
+	protected ResponseError createCancellationError(RequestMessage requestMessage) {
+		String message = "The request (id: " + requestMessage.getId() + ", method: '" + requestMessage.getMethod()  + "') has been cancelled";
+		return new ResponseError(ResponseErrorCode.RequestCancelled, message, null);
+	}
+
 	protected boolean isCancellation(Throwable t) {
 		if (t instanceof CompletionException) {
 			return isCancellation(t.getCause());
@@ -0,0 +1,32 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+/**
+ * The scheduling class of an incoming request, used by a {@link RequestScheduler}.
+ *
+ * @see org.eclipse.lsp4j.jsonrpc.services.JsonRequestPriority
+ */
+public enum RequestPriority {
+
+	/**
+	 * Requests the user is waiting for, e.g. completion or hover. This is the default for all requests.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Requests that may take long and can be delayed or cancelled in favor of interactive requests, e.g. a
+	 * search for all references of a symbol.
+	 */
+	BACKGROUND
+
+}
@@ -0,0 +1,257 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+
+/**
+ * Runs the incoming requests of a {@link RemoteEndpoint} according to their {@link RequestPriority}. Each class
+ * has its own queue and a fixed number of threads, so long running background requests such as
+ * {@code workspace/symbol} cannot delay interactive requests such as {@code textDocument/completion}. The
+ * threads use the executor of their class as the
+ * {@linkplain CompletableFutures#setDefaultExecutor(java.util.concurrent.Executor) default executor}, so code
+ * that a request method runs with {@link CompletableFutures#computeAsync(java.util.function.Function)} stays in
+ * the class of the request.
+ *
+ * <p>
+ * The class of a request is looked up by its method name. Methods without a configured priority are
+ * {@link RequestPriority#INTERACTIVE interactive}. If {@link #setPreemptBackgroundRequests(boolean) preemption}
+ * is enabled, the oldest background request in progress is cancelled whenever an interactive request has to wait
+ * for a thread. It is answered with a {@link ResponseErrorCode#ServerCancelled ServerCancelled} error, so the
+ * client may send it again later.
+ *
+ * <p>
+ * Only requests are scheduled. Notifications are still handled in order on the thread that reads the messages,
+ * so a request may be invoked after a notification that the client sent later, e.g. a
+ * {@code textDocument/didChange} notification. Request methods that depend on such notifications have to cope
+ * with state that is newer than the request.
+ */
+public class RequestScheduler {
+
+	private final Map<String, RequestPriority> priorities = new ConcurrentHashMap<>();
+	private final Map<RequestPriority, ThreadPoolExecutor> executors = new EnumMap<>(RequestPriority.class);
+	private final Set<ScheduledRequest> backgroundRequests = ConcurrentHashMap.newKeySet();
+	private volatile boolean preemptBackgroundRequests;
+
+	/**
+	 * Create a scheduler with one interactive thread per available processor and half as many background
+	 * threads.
+	 */
+	public RequestScheduler() {
+		this(Runtime.getRuntime().availableProcessors(), Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+	}
+
+	/**
+	 * @param interactiveThreads - the maximal number of threads for interactive requests
+	 * @param backgroundThreads - the maximal number of threads for background requests
+	 */
+	public RequestScheduler(int interactiveThreads, int backgroundThreads) {
+		if (interactiveThreads < 1)
+			throw new IllegalArgumentException("interactiveThreads must be positive.");
+		if (backgroundThreads < 1)
+			throw new IllegalArgumentException("backgroundThreads must be positive.");
+		executors.put(RequestPriority.INTERACTIVE, createExecutor(RequestPriority.INTERACTIVE, interactiveThreads));
+		executors.put(RequestPriority.BACKGROUND, createExecutor(RequestPriority.BACKGROUND, backgroundThreads));
+	}
+
+	private static ThreadPoolExecutor createExecutor(RequestPriority priority, int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>());
+		String namePrefix = "lsp4j-" + priority.name().toLowerCase() + "-";
+		AtomicInteger threadCount = new AtomicInteger();
+		executor.setThreadFactory(runnable -> {
+			Thread thread = new Thread(() -> {
+				CompletableFutures.setDefaultExecutor(executor);
+				runnable.run();
+			}, namePrefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Set the class of requests with the given method name. A {@code null} priority removes the configuration.
+	 */
+	public void setPriority(String method, RequestPriority priority) {
+		if (priority == null)
+			priorities.remove(method);
+		else
+			priorities.put(method, priority);
+	}
+
+	/**
+	 * Returns the configured class of requests with the given method name, or {@code null} if none is configured.
+	 */
+	public RequestPriority getPriority(String method) {
+		return priorities.get(method);
+	}
+
+	/**
+	 * Cancel the oldest background request in progress whenever an interactive request has to wait for a thread.
+	 */
+	public void setPreemptBackgroundRequests(boolean preemptBackgroundRequests) {
+		this.preemptBackgroundRequests = preemptBackgroundRequests;
+	}
+
+	/**
+	 * Returns the number of requests and asynchronous computations of the given class that wait for a thread.
+	 */
+	public int getQueuedCount(RequestPriority priority) {
+		return executors.get(priority).getQueue().size();
+	}
+
+	/**
+	 * Returns the number of threads of the given class that are busy.
+	 */
+	public int getActiveCount(RequestPriority priority) {
+		return executors.get(priority).getActiveCount();
+	}
+
+	/**
+	 * Invoke a request method in a thread of the class of the request.
+	 *
+	 * @param request - the incoming request
+	 * @param invocation - invokes the local endpoint and returns the future for the result
+	 * @return a future that is completed with the result of the request; cancelling it cancels the request
+	 */
+	public CompletableFuture<Object> schedule(RequestMessage request, Supplier<? extends CompletableFuture<?>> invocation) {
+		RequestPriority priority = getPriority(request.getMethod());
+		if (priority == null)
+			priority = RequestPriority.INTERACTIVE;
+		ScheduledRequest scheduledRequest = new ScheduledRequest(request, invocation);
+		if (priority == RequestPriority.BACKGROUND) {
+			backgroundRequests.add(scheduledRequest);
+			scheduledRequest.whenComplete((result, throwable) -> backgroundRequests.remove(scheduledRequest));
+		}
+		ThreadPoolExecutor executor = executors.get(priority);
+		try {
+			executor.execute(scheduledRequest);
+		} catch (RejectedExecutionException exception) {
+			scheduledRequest.completeExceptionally(exception);
+		}
+		if (priority == RequestPriority.INTERACTIVE && preemptBackgroundRequests && !executor.getQueue().isEmpty())
+			preemptBackgroundRequests();
+		return scheduledRequest;
+	}
+
+	/**
+	 * Cancel the background request that has been in progress for the longest time. Background requests that
+	 * wait for a thread are not cancelled, since they do not compete with the interactive requests yet.
+	 */
+	protected void preemptBackgroundRequests() {
+		ScheduledRequest oldest = null;
+		for (ScheduledRequest scheduledRequest : backgroundRequests) {
+			if (scheduledRequest.startTime != 0 && !scheduledRequest.isDone()
+					&& (oldest == null || scheduledRequest.startTime - oldest.startTime < 0))
+				oldest = scheduledRequest;
+		}
+		if (oldest != null) {
+			RequestMessage request = oldest.request;
+			String message = "The request (id: " + request.getId() + ", method: '" + request.getMethod()
+					+ "') has been cancelled in favor of interactive requests";
+			ResponseError error = new ResponseError(ResponseErrorCode.ServerCancelled, message, null);
+			oldest.abort(new ResponseErrorException(error));
+		}
+	}
+
+	/**
+	 * Stop the threads of the scheduler. Requests that have not been started yet are not run anymore.
+	 */
+	public void shutdown() {
+		for (ThreadPoolExecutor executor : executors.values()) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class ScheduledRequest extends CompletableFuture<Object> implements Runnable {
+
+		final RequestMessage request;
+		private final Supplier<? extends CompletableFuture<?>> invocation;
+		private volatile CompletableFuture<?> result;
+		/** The {@link System#nanoTime()} when the request was started, or {@code 0} while it waits for a thread. */
+		volatile long startTime;
+
+		ScheduledRequest(RequestMessage request, Supplier<? extends CompletableFuture<?>> invocation) {
+			this.request = request;
+			this.invocation = invocation;
+		}
+
+		@Override
+		public void run() {
+			if (isDone())
+				return;
+			long now = System.nanoTime();
+			startTime = now == 0 ? 1 : now;
+			CompletableFuture<?> result;
+			try {
+				result = invocation.get();
+			} catch (Throwable throwable) {
+				completeExceptionally(throwable);
+				if (throwable instanceof Error)
+					throw (Error) throwable;
+				return;
+			}
+			if (result == null) {
+				complete(null);
+				return;
+			}
+			this.result = result;
+			if (isDone()) {
+				// The request has been cancelled while the local endpoint was invoked
+				result.cancel(true);
+				return;
+			}
+			result.whenComplete((value, throwable) -> {
+				if (throwable != null)
+					completeExceptionally(throwable);
+				else
+					complete(value);
+			});
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			cancelResult();
+			return cancelled;
+		}
+
+		void abort(Throwable throwable) {
+			if (completeExceptionally(throwable))
+				cancelResult();
+		}
+
+		private void cancelResult() {
+			CompletableFuture<?> result = this.result;
+			if (result != null)
+				result.cancel(true);
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The timeouts for outgoing requests of a {@link RemoteEndpoint}. If the remote endpoint does not answer a
+ * request in time, the future for its result fails with a {@link java.util.concurrent.TimeoutException}, a
+ * cancel notification is sent, and the request is forgotten. All timeouts are driven by a {@link TimerWheel},
+ * which is the {@linkplain TimerWheel#getShared() shared} one by default.
+ */
+public class RequestTimeouts {
+
+	private final TimerWheel timer;
+	private final Map<String, Long> methodTimeouts = new ConcurrentHashMap<>();
+	private volatile long defaultTimeout;
+
+	public RequestTimeouts() {
+		this(TimerWheel.getShared());
+	}
+
+	public RequestTimeouts(TimerWheel timer) {
+		if (timer == null)
+			throw new NullPointerException("timer");
+		this.timer = timer;
+	}
+
+	/**
+	 * Set the timeout for requests of methods without a specific timeout. A timeout of zero disables it.
+	 */
+	public RequestTimeouts setDefaultTimeout(long timeout, TimeUnit unit) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout must not be negative.");
+		this.defaultTimeout = unit.toMillis(timeout);
+		return this;
+	}
+
+	/**
+	 * Set the timeout for requests of the given method. A timeout of zero means that these requests never time
+	 * out, regardless of the default timeout.
+	 */
+	public RequestTimeouts setTimeout(String method, long timeout, TimeUnit unit) {
+		if (method == null)
+			throw new NullPointerException("method");
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout must not be negative.");
+		methodTimeouts.put(method, unit.toMillis(timeout));
+		return this;
+	}
+
+	/**
+	 * Returns the timeout in milliseconds for requests of the given method, or zero if they do not time out.
+	 */
+	public long getTimeout(String method) {
+		Long timeout = methodTimeouts.get(method);
+		return timeout != null ? timeout : defaultTimeout;
+	}
+
+	public TimerWheel getTimer() {
+		return timer;
+	}
+
+}
@@ -0,0 +1,225 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * An endpoint that forwards identical requests that are in progress at the same time only once. Requests are
+ * identical if they have the same method and equal parameters, as determined by their {@code equals} methods.
+ * Each caller gets its own future, which is completed with the shared result. Cancelling the future of one
+ * caller does not affect the others; the forwarded request is cancelled once all callers have cancelled.
+ *
+ * <p>
+ * Wrapped around a {@link RemoteEndpoint}, e.g. for a service proxy, callers share one outgoing request. Wrapped
+ * around the local endpoint, identical incoming requests share one handler invocation. Only requests whose result
+ * does not depend on when they are received must be deduplicated, so the methods must be selected explicitly.
+ */
+public class SingleFlightEndpoint implements Endpoint {
+
+	private static class FlightKey {
+		final String method;
+		final Object parameter;
+
+		FlightKey(String method, Object parameter) {
+			this.method = method;
+			this.parameter = parameter;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FlightKey))
+				return false;
+			FlightKey other = (FlightKey) obj;
+			return method.equals(other.method) && Objects.equals(parameter, other.parameter);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * method.hashCode() + Objects.hashCode(parameter);
+		}
+	}
+
+	/**
+	 * A request that is in progress, together with the number of callers that wait for it.
+	 */
+	private class Flight {
+		final FlightKey key;
+		final CompletableFuture<Object> sharedResult = new CompletableFuture<>();
+		final CancellationToken cancellationToken = new CancellationToken();
+		/** Guarded by the map of flights */
+		int callers;
+		/** Guarded by the map of flights */
+		CompletableFuture<?> forwarded;
+		/** Guarded by the map of flights */
+		boolean cancelled;
+
+		Flight(FlightKey key) {
+			this.key = key;
+		}
+
+		CompletableFuture<Object> join() {
+			callers++;
+			CancellationToken callerToken = CancellationToken.current();
+			CompletableFuture<Object> result = new CompletableFuture<Object>() {
+				@Override
+				public boolean cancel(boolean mayInterruptIfRunning) {
+					boolean cancelled = super.cancel(mayInterruptIfRunning);
+					if (cancelled)
+						leave();
+					return cancelled;
+				}
+			};
+			sharedResult.whenComplete((value, throwable) -> {
+				if (throwable != null)
+					result.completeExceptionally(throwable);
+				else
+					result.complete(value);
+			});
+			if (callerToken != null) {
+				// The caller's own cancellation is tracked per caller, not for the shared request
+				Runnable cancelResult = () -> result.cancel(true);
+				callerToken.addCancelListener(cancelResult);
+				result.whenComplete((value, throwable) -> callerToken.removeCancelListener(cancelResult));
+			}
+			return result;
+		}
+
+		void leave() {
+			CompletableFuture<?> forwarded;
+			synchronized (flights) {
+				if (--callers > 0 || cancelled)
+					return;
+				cancelled = true;
+				forwarded = this.forwarded;
+				if (flights.get(key) == this)
+					flights.remove(key);
+			}
+			cancellationToken.cancel();
+			if (forwarded != null)
+				forwarded.cancel(true);
+		}
+	}
+
+	private final Endpoint delegate;
+	private final Predicate<String> methods;
+	private final Map<FlightKey, Flight> flights = new HashMap<>();
+	private final AtomicLong sharedCount = new AtomicLong();
+
+	/**
+	 * @param delegate - the endpoint the requests are forwarded to
+	 * @param methods - the methods whose requests are deduplicated
+	 */
+	public SingleFlightEndpoint(Endpoint delegate, Collection<String> methods) {
+		this(delegate, new HashSet<>(methods)::contains);
+	}
+
+	/**
+	 * @param delegate - the endpoint the requests are forwarded to
+	 * @param methods - selects the methods whose requests are deduplicated
+	 */
+	public SingleFlightEndpoint(Endpoint delegate, Predicate<String> methods) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		if (methods == null)
+			throw new NullPointerException("methods");
+		this.delegate = delegate;
+		this.methods = methods;
+	}
+
+	@Override
+	public CompletableFuture<?> request(String method, Object parameter) {
+		if (!methods.test(method))
+			return delegate.request(method, parameter);
+		FlightKey key = new FlightKey(method, parameter);
+		Flight flight;
+		CompletableFuture<Object> result;
+		synchronized (flights) {
+			flight = flights.get(key);
+			if (flight != null) {
+				sharedCount.incrementAndGet();
+				return flight.join();
+			}
+			flight = new Flight(key);
+			flights.put(key, flight);
+			result = flight.join();
+		}
+		forward(flight);
+		return result;
+	}
+
+	@SuppressWarnings("try")
+	private void forward(Flight flight) {
+		CompletableFuture<?> forwarded;
+		try (CancellationToken.Scope scope = flight.cancellationToken.enter()) {
+			forwarded = delegate.request(flight.key.method, flight.key.parameter);
+		} catch (RuntimeException | Error throwable) {
+			complete(flight, null, throwable);
+			throw throwable;
+		}
+		if (forwarded == null) {
+			complete(flight, null, null);
+			return;
+		}
+		boolean cancelled;
+		synchronized (flights) {
+			flight.forwarded = forwarded;
+			cancelled = flight.cancelled;
+		}
+		if (cancelled)
+			forwarded.cancel(true);
+		else
+			forwarded.whenComplete((value, throwable) -> complete(flight, value, throwable));
+	}
+
+	private void complete(Flight flight, Object value, Throwable throwable) {
+		synchronized (flights) {
+			if (flights.get(flight.key) == flight)
+				flights.remove(flight.key);
+		}
+		if (throwable != null)
+			flight.sharedResult.completeExceptionally(throwable);
+		else
+			flight.sharedResult.complete(value);
+	}
+
+	@Override
+	public void notify(String method, Object parameter) {
+		delegate.notify(method, parameter);
+	}
+
+	/**
+	 * Returns the number of requests that have been answered with the result of an identical request in
+	 * progress instead of being forwarded.
+	 */
+	public long getSharedCount() {
+		return sharedCount.get();
+	}
+
+	/**
+	 * Returns the number of distinct requests in progress.
+	 */
+	public int getInFlightCount() {
+		synchronized (flights) {
+			return flights.size();
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed wheel timer for large numbers of timeouts that are usually cancelled before they expire, such as
+ * the timeouts of outgoing requests. All timeouts are handled by a single daemon thread that advances the wheel
+ * once per tick, so a timeout expires up to one tick later than requested. The thread is started with the first
+ * timeout and sleeps while no timeouts are pending.
+ *
+ * <p>
+ * The tasks of expired timeouts are run on the timer thread, so they must not block.
+ */
+public class TimerWheel {
+
+	private static final Logger LOG = Logger.getLogger(TimerWheel.class.getName());
+
+	private static TimerWheel shared;
+
+	/**
+	 * Returns a timer wheel with a tick duration of 100 milliseconds that is shared by all its users.
+	 */
+	public static synchronized TimerWheel getShared() {
+		if (shared == null)
+			shared = new TimerWheel(100, TimeUnit.MILLISECONDS, 512);
+		return shared;
+	}
+
+	/**
+	 * A pending task of the timer wheel.
+	 */
+	public static class Timeout {
+
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private long remainingRounds;
+
+		Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel the timeout so its task is not run.
+		 *
+		 * @return {@code false} if the timeout has already expired or has been cancelled before
+		 */
+		public boolean cancel() {
+			return state.compareAndSet(PENDING, CANCELLED);
+		}
+
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+
+		void expire() {
+			if (state.compareAndSet(PENDING, EXPIRED)) {
+				try {
+					task.run();
+				} catch (Exception exception) {
+					LOG.log(Level.WARNING, "Failed to run timeout task.", exception);
+				}
+			}
+		}
+
+	}
+
+	private final long tickNanos;
+	private final LinkedList<Timeout>[] wheel;
+	private final int mask;
+	private final Queue<Timeout> addedTimeouts = new ConcurrentLinkedQueue<>();
+	private final Object lock = new Object();
+	private long startTime;
+	private long tick;
+	private int pendingCount;
+	private Thread worker;
+
+	/**
+	 * @param tickDuration - the time between two advances of the wheel
+	 * @param unit - the unit of the tick duration
+	 * @param wheelSize - the number of buckets of the wheel, rounded up to a power of two
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public TimerWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+		if (tickDuration <= 0)
+			throw new IllegalArgumentException("tickDuration must be positive.");
+		if (wheelSize <= 0 || wheelSize > (1 << 30))
+			throw new IllegalArgumentException("wheelSize must be positive and at most 2^30.");
+		this.tickNanos = unit.toNanos(tickDuration);
+		int size = Integer.highestOneBit(wheelSize);
+		if (size < wheelSize)
+			size <<= 1;
+		this.wheel = new LinkedList[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new LinkedList<>();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Run the given task once the delay has elapsed, unless the returned timeout is cancelled before.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (task == null)
+			throw new NullPointerException("task");
+		Timeout timeout;
+		synchronized (lock) {
+			if (worker == null) {
+				startTime = System.nanoTime();
+				tick = 0;
+				worker = new Thread(this::run, "lsp4j-timer");
+				worker.setDaemon(true);
+				worker.start();
+			}
+			timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay)));
+			addedTimeouts.add(timeout);
+			if (pendingCount++ == 0)
+				lock.notifyAll();
+		}
+		return timeout;
+	}
+
+	/**
+	 * Returns the number of timeouts that have neither expired nor been removed after their cancellation.
+	 */
+	public int getPendingCount() {
+		synchronized (lock) {
+			return pendingCount;
+		}
+	}
+
+	private void run() {
+		while (true) {
+			awaitNextTick();
+			transferAddedTimeouts();
+			LinkedList<Timeout> bucket = wheel[(int) (tick & mask)];
+			int removed = 0;
+			Iterator<Timeout> iterator = bucket.iterator();
+			while (iterator.hasNext()) {
+				Timeout timeout = iterator.next();
+				if (timeout.isCancelled()) {
+					iterator.remove();
+					removed++;
+				} else if (timeout.remainingRounds <= 0) {
+					iterator.remove();
+					removed++;
+					timeout.expire();
+				} else {
+					timeout.remainingRounds--;
+				}
+			}
+			synchronized (lock) {
+				pendingCount -= removed;
+			}
+			tick++;
+		}
+	}
+
+	/**
+	 * Sleep until the current tick is over. While no timeouts are pending, wait for a new one and skip the ticks
+	 * that elapsed in the meantime. The thread is shared, so interrupts are ignored.
+	 */
+	private void awaitNextTick() {
+		synchronized (lock) {
+			if (pendingCount == 0) {
+				while (pendingCount == 0) {
+					try {
+						lock.wait();
+					} catch (InterruptedException exception) {
+						// Continue waiting
+					}
+				}
+				tick = (System.nanoTime() - startTime) / tickNanos;
+			}
+		}
+		long sleepNanos;
+		while ((sleepNanos = startTime + (tick + 1) * tickNanos - System.nanoTime()) > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (InterruptedException exception) {
+				// Continue sleeping
+			}
+		}
+	}
+
+	private void transferAddedTimeouts() {
+		Timeout timeout;
+		while ((timeout = addedTimeouts.poll()) != null) {
+			long deadlineTick = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+			wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access to the virtual threads of Java 21 and later. The API is accessed reflectively, so this class can be
+ * loaded on older runtimes, where {@link #isAvailable()} returns {@code false}.
+ */
+public final class VirtualThreads {
+
+	private static final Logger LOG = Logger.getLogger(VirtualThreads.class.getName());
+
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builderClass.getMethod("name", String.class, long.class);
+			builderFactory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			// Virtual threads are a preview feature before Java 21, in which case this fails
+			ofVirtual.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException exception) {
+			LOG.log(Level.FINE, "Virtual threads are not available.", exception);
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	/**
+	 * Returns whether the runtime supports virtual threads.
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Create an executor service that starts a new virtual thread for each task. The threads are named with the
+	 * given prefix and a counter. Each thread uses the executor service as its
+	 * {@linkplain CompletableFutures#setDefaultExecutor(java.util.concurrent.Executor) default executor}, so
+	 * {@link CompletableFutures#computeAsync(java.util.function.Function)} called by a task runs on a virtual
+	 * thread as well.
+	 *
+	 * @throws UnsupportedOperationException if virtual threads are not available
+	 */
+	public static ExecutorService newExecutor(String namePrefix) {
+		if (!isAvailable())
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+		try {
+			Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+			ThreadFactory virtualThreads = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			AtomicReference<ExecutorService> executor = new AtomicReference<>();
+			ThreadFactory threadFactory = runnable -> virtualThreads.newThread(() -> {
+				CompletableFutures.setDefaultExecutor(executor.get());
+				runnable.run();
+			});
+			executor.set((ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory));
+			return executor.get();
+		} catch (InvocationTargetException exception) {
+			throw new UnsupportedOperationException("Virtual threads could not be created.", exception.getCause());
+		} catch (IllegalAccessException exception) {
+			throw new UnsupportedOperationException("Virtual threads could not be created.", exception);
+		}
+	}
+
+	private VirtualThreads() {
+	}
+
+}
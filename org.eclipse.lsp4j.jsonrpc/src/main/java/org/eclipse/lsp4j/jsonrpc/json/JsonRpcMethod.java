@@ -13,6 +13,8 @@ package org.eclipse.lsp4j.jsonrpc.json;
 
 import java.lang.reflect.Type;
 
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
+
 import com.google.gson.TypeAdapterFactory;
 
 /**
@@ -25,9 +27,15 @@ public class JsonRpcMethod {
 	private final Type returnType;
 	private final TypeAdapterFactory returnTypeAdapterFactory;
 	private final boolean isNotification;
+	private final RequestPriority priority;
 	
 	private JsonRpcMethod(String methodName, Type[] parameterTypes, Type returnType, TypeAdapterFactory returnTypeAdapterFactory,
 			boolean isNotification) {
+		this(methodName, parameterTypes, returnType, returnTypeAdapterFactory, isNotification, null);
+	}
+	
+	private JsonRpcMethod(String methodName, Type[] parameterTypes, Type returnType, TypeAdapterFactory returnTypeAdapterFactory,
+			boolean isNotification, RequestPriority priority) {
 		if (methodName == null)
 			throw new NullPointerException("methodName");
 		this.methodName = methodName;
@@ -35,6 +43,7 @@ public class JsonRpcMethod {
 		this.returnType = returnType;
 		this.returnTypeAdapterFactory = returnTypeAdapterFactory;
 		this.isNotification = isNotification;
+		this.priority = priority;
 	}
 
 	public String getMethodName() {
@@ -57,6 +66,13 @@ public class JsonRpcMethod {
 		return isNotification;
 	}
 	
+	/**
+	 * Returns the scheduling class declared for a request, or {@code null} if none has been declared.
+	 */
+	public RequestPriority getPriority() {
+		return priority;
+	}
+	
 	public static JsonRpcMethod notification(String name, Type... parameterTypes) {
 		return new JsonRpcMethod(name, parameterTypes, Void.class, null, true);
 	}
@@ -69,6 +85,11 @@ public class JsonRpcMethod {
 		return new JsonRpcMethod(name, parameterTypes, returnType, returnTypeAdapterFactory, false);
 	}
 	
+	public static JsonRpcMethod request(String name, Type returnType, TypeAdapterFactory returnTypeAdapterFactory,
+			RequestPriority priority, Type... parameterTypes) {
+		return new JsonRpcMethod(name, parameterTypes, returnType, returnTypeAdapterFactory, false, priority);
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -81,6 +102,8 @@ public class JsonRpcMethod {
 			builder.append("\tparameterTypes: ").append(parameterTypes).append('\n');
 		if (returnType != null)
 			builder.append("\treturnType: ").append(returnType).append('\n');
+		if (priority != null)
+			builder.append("\tpriority: ").append(priority).append('\n');
 		builder.append("}");
 		return builder.toString();
 	}
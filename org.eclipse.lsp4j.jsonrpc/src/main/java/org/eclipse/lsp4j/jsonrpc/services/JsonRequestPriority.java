@@ -0,0 +1,32 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.services;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
+
+/**
+ * Annotation to declare the scheduling class of a {@link JsonRequest} method. The priority is only taken into
+ * account if the launcher is configured with a {@link org.eclipse.lsp4j.jsonrpc.RequestScheduler}. Requests
+ * without this annotation are {@link RequestPriority#INTERACTIVE interactive}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD })
+public @interface JsonRequestPriority {
+
+	RequestPriority value();
+
+}
@@ -21,6 +21,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
 import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
 import org.eclipse.lsp4j.jsonrpc.json.ResponseJsonAdapter;
 
@@ -104,7 +105,9 @@ public final class ServiceEndpoints {
 							throw new RuntimeException(e);
 						}
 					}
-					meth = JsonRpcMethod.request(methodInfo.name, returnType, responseTypeAdapter, methodInfo.parameterTypes);
+					JsonRequestPriority priorityAnnotation = methodInfo.method.getAnnotation(JsonRequestPriority.class);
+					RequestPriority priority = priorityAnnotation != null ? priorityAnnotation.value() : null;
+					meth = JsonRpcMethod.request(methodInfo.name, returnType, responseTypeAdapter, priority, methodInfo.parameterTypes);
 				} else {
 					throw new IllegalStateException("Expecting return type of CompletableFuture but was : " + genericReturnType);
 				}
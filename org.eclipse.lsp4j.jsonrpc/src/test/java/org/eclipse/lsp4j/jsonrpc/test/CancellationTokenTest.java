@@ -0,0 +1,132 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.jsonrpc.CancellationToken;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CancellationTokenTest {
+
+	private static final long TIMEOUT = 2000;
+
+	@Test
+	@SuppressWarnings("try")
+	public void testTokenTree() {
+		CancellationToken root = new CancellationToken();
+		CancellationToken child = new CancellationToken(root);
+		CancellationToken detached = new CancellationToken(root);
+		CancellationToken grandChild = new CancellationToken(child);
+		List<String> cancelled = new ArrayList<>();
+		grandChild.addCancelListener(() -> cancelled.add("grandChild"));
+		Runnable removed = () -> cancelled.add("removed");
+		child.addCancelListener(removed);
+		child.removeCancelListener(removed);
+		detached.detach();
+
+		Assert.assertNull(CancellationToken.current());
+		try (CancellationToken.Scope scope = child.enter()) {
+			Assert.assertSame(child, CancellationToken.current());
+		}
+		Assert.assertNull(CancellationToken.current());
+
+		root.cancel();
+		Assert.assertTrue(child.isCanceled());
+		Assert.assertTrue(grandChild.isCanceled());
+		Assert.assertFalse(detached.isCanceled());
+		Assert.assertEquals(Collections.singletonList("grandChild"), cancelled);
+
+		// A listener added after the cancellation is run immediately
+		child.addCancelListener(() -> cancelled.add("late"));
+		Assert.assertEquals(2, cancelled.size());
+	}
+
+	@Test
+	public void testCancelNestedRequests() throws Exception {
+		List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch nestedRequestsSent = new CountDownLatch(2);
+		RemoteEndpoint[] remoteEndpoint = new RemoteEndpoint[1];
+		Endpoint local = new Endpoint() {
+
+			@Override
+			public CompletableFuture<?> request(String method, Object parameter) {
+				// Send one request while the incoming request is handled, and one from an asynchronous computation
+				remoteEndpoint[0].request("workspace/configuration", "sync");
+				nestedRequestsSent.countDown();
+				return CompletableFutures.computeAsync(cancelChecker -> {
+					remoteEndpoint[0].request("workspace/applyEdit", "async");
+					nestedRequestsSent.countDown();
+					while (!cancelChecker.isCanceled()) {
+						Thread.yield();
+					}
+					return null;
+				});
+			}
+
+			@Override
+			public void notify(String method, Object parameter) {
+			}
+
+		};
+		remoteEndpoint[0] = new RemoteEndpoint(sent::add, local);
+
+		RequestMessage request = new RequestMessage();
+		request.setId("incoming");
+		request.setMethod("textDocument/codeAction");
+		remoteEndpoint[0].consume(request);
+		Assert.assertTrue(nestedRequestsSent.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, sent.size());
+
+		NotificationMessage cancel = new NotificationMessage();
+		cancel.setMethod(MessageJsonHandler.CANCEL_METHOD.getMethodName());
+		CancelParams cancelParams = new CancelParams();
+		cancelParams.setId("incoming");
+		cancel.setParams(cancelParams);
+		remoteEndpoint[0].consume(cancel);
+
+		// Both nested requests are cancelled and the incoming request is answered
+		List<String> cancelledIds = new ArrayList<>();
+		long start = System.currentTimeMillis();
+		while (sent.size() < 5 && System.currentTimeMillis() - start < TIMEOUT) {
+			Thread.sleep(10);
+		}
+		synchronized (sent) {
+			for (Message message : sent) {
+				if (message instanceof NotificationMessage)
+					cancelledIds.add(((CancelParams) ((NotificationMessage) message).getParams()).getId());
+			}
+		}
+		Collections.sort(cancelledIds);
+		List<String> nestedIds = new ArrayList<>();
+		nestedIds.add(((RequestMessage) sent.get(0)).getId());
+		nestedIds.add(((RequestMessage) sent.get(1)).getId());
+		Collections.sort(nestedIds);
+		Assert.assertEquals(nestedIds, cancelledIds);
+		Assert.assertEquals(5, sent.size());
+	}
+
+}
@@ -0,0 +1,69 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+import org.eclipse.lsp4j.jsonrpc.VirtualThreads;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class CompletableFuturesTest {
+
+	private static final long TIMEOUT = 2000;
+
+	@Test
+	public void testDefaultExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "test-executor"));
+		try {
+			CompletableFutures.setDefaultExecutor(executor);
+			String threadName = CompletableFutures.computeAsync(cancelChecker -> Thread.currentThread().getName())
+					.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.assertEquals("test-executor", threadName);
+
+			CompletableFutures.setDefaultExecutor(null);
+			Assert.assertNull(CompletableFutures.getDefaultExecutor());
+			threadName = CompletableFutures.computeAsync(cancelChecker -> Thread.currentThread().getName())
+					.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.assertNotEquals("test-executor", threadName);
+		} finally {
+			CompletableFutures.setDefaultExecutor(null);
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testVirtualThreads() throws Exception {
+		Assume.assumeTrue(VirtualThreads.isAvailable());
+		ExecutorService executor = VirtualThreads.newExecutor("test-");
+		try {
+			// Code run with computeAsync by a task of the executor runs on a virtual thread as well
+			String threadName = executor.submit(() -> CompletableFutures.computeAsync(
+					cancelChecker -> Thread.currentThread().getName()).get(TIMEOUT, TimeUnit.MILLISECONDS))
+					.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.assertTrue(threadName, threadName.startsWith("test-"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testVirtualThreadsNotAvailable() {
+		Assume.assumeFalse(VirtualThreads.isAvailable());
+		VirtualThreads.newExecutor("test-");
+	}
+
+}
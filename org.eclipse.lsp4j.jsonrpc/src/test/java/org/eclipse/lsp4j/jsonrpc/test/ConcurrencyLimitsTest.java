@@ -0,0 +1,186 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.eclipse.lsp4j.jsonrpc.CancellationToken;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+import org.eclipse.lsp4j.jsonrpc.ConcurrencyLimits;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConcurrencyLimitsTest {
+
+	static class TestEndpoint implements Endpoint {
+
+		List<String> invoked = new ArrayList<>();
+		List<CompletableFuture<Object>> results = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			invoked.add(method + " " + parameter);
+			CompletableFuture<Object> result = new CompletableFuture<>();
+			results.add(result);
+			return result;
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+		}
+
+	}
+
+	private static RequestMessage request(String id, String method) {
+		RequestMessage message = new RequestMessage();
+		message.setId(id);
+		message.setMethod(method);
+		message.setParams(id);
+		return message;
+	}
+
+	@Test
+	public void testMethodLimit() {
+		TestEndpoint local = new TestEndpoint();
+		ConcurrencyLimits limits = new ConcurrencyLimits().setMethodLimit("resolve", 1, 1);
+		List<Message> sent = new ArrayList<>();
+		RemoteEndpoint remoteEndpoint = new RemoteEndpoint(sent::add, limits.wrap(local));
+
+		remoteEndpoint.consume(request("1", "resolve"));
+		remoteEndpoint.consume(request("2", "resolve"));
+		remoteEndpoint.consume(request("3", "resolve"));
+		remoteEndpoint.consume(request("4", "other"));
+		Assert.assertEquals("[resolve 1, other 4]", local.invoked.toString());
+
+		// The third request is rejected since the queue is full
+		Assert.assertEquals(1, sent.size());
+		ResponseMessage response = (ResponseMessage) sent.get(0);
+		Assert.assertEquals("3", response.getId());
+		Assert.assertEquals(ResponseErrorCode.RequestFailed.getValue(), response.getError().getCode());
+
+		ConcurrencyLimits.Limit limit = limits.getMethodLimit("resolve");
+		Assert.assertEquals(1, limit.getRunning());
+		Assert.assertEquals(1, limit.getWaiting());
+		Assert.assertEquals(1, limit.getQueuedCount());
+		Assert.assertEquals(1, limit.getRejectedCount());
+
+		// The waiting request is started as soon as the first one is done
+		local.results.get(0).complete("done");
+		Assert.assertEquals("[resolve 1, other 4, resolve 2]", local.invoked.toString());
+		Assert.assertEquals(1, limit.getRunning());
+		Assert.assertEquals(0, limit.getWaiting());
+		local.results.get(2).complete("done");
+		Assert.assertEquals(0, limit.getRunning());
+	}
+
+	@Test
+	public void testGlobalLimit() {
+		TestEndpoint local = new TestEndpoint();
+		ConcurrencyLimits limits = new ConcurrencyLimits().setGlobalLimit(2, 10).setMethodLimit("a", 1, 10);
+		Endpoint endpoint = limits.wrap(local);
+
+		endpoint.request("a", 1);
+		CompletableFuture<?> waitingForMethod = endpoint.request("a", 2);
+		endpoint.request("b", 3);
+		CompletableFuture<?> waitingForGlobal = endpoint.request("b", 4);
+		endpoint.request("b", 5);
+		Assert.assertEquals("[a 1, b 3]", local.invoked.toString());
+		Assert.assertEquals(1, limits.getMethodLimit("a").getWaiting());
+		Assert.assertEquals(2, limits.getGlobalLimit().getWaiting());
+
+		// A cancelled request is removed from the queue
+		waitingForGlobal.cancel(true);
+		Assert.assertEquals(1, limits.getGlobalLimit().getWaiting());
+		Assert.assertEquals(2, limits.getGlobalLimit().getQueuedCount());
+
+		// Waiting requests are started in order once both limits allow it
+		local.results.get(0).complete(null);
+		Assert.assertEquals("[a 1, b 3, a 2]", local.invoked.toString());
+		Assert.assertFalse(waitingForMethod.isDone());
+		local.results.get(1).complete(null);
+		Assert.assertEquals("[a 1, b 3, a 2, b 5]", local.invoked.toString());
+		Assert.assertEquals(0, limits.getGlobalLimit().getWaiting());
+		Assert.assertEquals(0, limits.getMethodLimit("a").getWaiting());
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void testStartInContextOfRequest() {
+		List<CancellationToken> tokens = new ArrayList<>();
+		List<Executor> executors = new ArrayList<>();
+		CompletableFuture<Object> first = new CompletableFuture<>();
+		Endpoint local = new TestEndpoint() {
+			@Override
+			public CompletableFuture<?> request(String method, Object parameter) {
+				tokens.add(CancellationToken.current());
+				executors.add(CompletableFutures.getDefaultExecutor());
+				return tokens.size() == 1 ? first : CompletableFuture.completedFuture(null);
+			}
+		};
+		Endpoint endpoint = new ConcurrencyLimits().setGlobalLimit(1, 1).wrap(local);
+		endpoint.request("a", 1);
+
+		CancellationToken token = new CancellationToken();
+		Executor executor = Runnable::run;
+		CompletableFuture<?> waiting;
+		CompletableFutures.setDefaultExecutor(executor);
+		try (CancellationToken.Scope scope = token.enter()) {
+			waiting = endpoint.request("a", 2);
+		} finally {
+			CompletableFutures.setDefaultExecutor(null);
+		}
+
+		// The waiting request is started by this thread, but with the context it was received in
+		first.complete(null);
+		Assert.assertTrue(waiting.isDone());
+		Assert.assertSame(token, tokens.get(1));
+		Assert.assertSame(executor, executors.get(1));
+		Assert.assertNull(CancellationToken.current());
+		Assert.assertNull(CompletableFutures.getDefaultExecutor());
+	}
+
+	@Test
+	public void testStartWaitingRequestsWithoutRecursion() {
+		int count = 10_000;
+		CompletableFuture<Object> first = new CompletableFuture<>();
+		Endpoint local = new TestEndpoint() {
+			@Override
+			public CompletableFuture<?> request(String method, Object parameter) {
+				return parameter.equals(0) ? first : CompletableFuture.completedFuture(parameter);
+			}
+		};
+		ConcurrencyLimits limits = new ConcurrencyLimits().setGlobalLimit(1, count);
+		Endpoint endpoint = limits.wrap(local);
+		List<CompletableFuture<?>> results = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			results.add(endpoint.request("a", i));
+		}
+
+		// Waiting requests that complete right away must not start the next ones recursively
+		first.complete(0);
+		for (CompletableFuture<?> result : results) {
+			Assert.assertFalse(result.isCompletedExceptionally());
+			Assert.assertTrue(result.isDone());
+		}
+		Assert.assertEquals(0, limits.getGlobalLimit().getRunning());
+	}
+
+}
@@ -0,0 +1,273 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.eclipse.lsp4j.jsonrpc.DispatchPolicy;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.InboundMessageQueue;
+import org.eclipse.lsp4j.jsonrpc.MessageCoalescer;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InboundMessageQueueTest {
+
+	/**
+	 * Collects the started tasks so the test decides when the queue is drained.
+	 */
+	static class ManualExecutor implements Executor {
+
+		List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty()) {
+				tasks.remove(0).run();
+			}
+		}
+
+	}
+
+	/**
+	 * Keys messages by the first character of their string parameter and concatenates merged notifications.
+	 */
+	static class TestCoalescer implements MessageCoalescer {
+
+		@Override
+		public Object getKey(Message message) {
+			Object params = getParams(message);
+			return params instanceof String ? ((String) params).substring(0, 1) : null;
+		}
+
+		@Override
+		public Message coalesce(Message queued, Message next) {
+			if (!(queued instanceof NotificationMessage) || !(next instanceof NotificationMessage))
+				return null;
+			return notification(getParams(queued) + "+" + getParams(next));
+		}
+
+		private Object getParams(Message message) {
+			if (message instanceof NotificationMessage)
+				return ((NotificationMessage) message).getParams();
+			if (message instanceof RequestMessage)
+				return ((RequestMessage) message).getParams();
+			return null;
+		}
+
+	}
+
+	private static NotificationMessage notification(Object params) {
+		NotificationMessage message = new NotificationMessage();
+		message.setMethod("change");
+		message.setParams(params);
+		return message;
+	}
+
+	private static RequestMessage request(String id, Object params) {
+		RequestMessage message = new RequestMessage();
+		message.setId(id);
+		message.setMethod("query");
+		message.setParams(params);
+		return message;
+	}
+
+	private static List<Object> params(List<Message> messages) {
+		List<Object> result = new ArrayList<>();
+		for (Message message : messages) {
+			if (message instanceof NotificationMessage)
+				result.add(((NotificationMessage) message).getParams());
+			else if (message instanceof RequestMessage)
+				result.add(((RequestMessage) message).getParams());
+			else
+				result.add(message);
+		}
+		return result;
+	}
+
+	@Test
+	public void testMessagesAreHandledInOrder() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor);
+
+		queue.consume(notification("a1"));
+		queue.consume(request("1", "a"));
+		queue.consume(notification("a2"));
+		Assert.assertTrue(handled.isEmpty());
+		// The first message is being handled
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(1, executor.tasks.size());
+
+		executor.runAll();
+		Assert.assertEquals(0, queue.size());
+		Assert.assertEquals(3, handled.size());
+		Assert.assertEquals("[a1, a, a2]", params(handled).toString());
+	}
+
+	@Test
+	public void testResponsesAreNotQueued() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor);
+
+		queue.consume(notification("a1"));
+		ResponseMessage response = new ResponseMessage();
+		response.setId("1");
+		queue.consume(response);
+		Assert.assertEquals(1, handled.size());
+		Assert.assertSame(response, handled.get(0));
+	}
+
+	@Test
+	public void testCoalescing() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor, new TestCoalescer());
+
+		// The first message is handled right away, so it is not merged with later ones
+		queue.consume(notification("a0"));
+		queue.consume(notification("a1"));
+		queue.consume(notification("b1"));
+		// Merged across the notification for another key
+		queue.consume(notification("a2"));
+		// Not merged across a request with the same key
+		queue.consume(request("1", "a"));
+		queue.consume(notification("a3"));
+		queue.consume(notification("a4"));
+		// Not merged across a message without key
+		queue.consume(notification(42));
+		queue.consume(notification("b2"));
+		executor.runAll();
+
+		Assert.assertEquals("[a0, a1+a2, b1, a, a3+a4, 42, b2]", params(handled).toString());
+	}
+
+	@Test
+	public void testDrainedQueueIsRestarted() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor, new TestCoalescer());
+
+		queue.consume(notification("a1"));
+		executor.runAll();
+		queue.consume(notification("a2"));
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		Assert.assertEquals("[a1, a2]", params(handled).toString());
+	}
+
+	@Test
+	public void testCancelQueuedRequest() {
+		List<String> invoked = new ArrayList<>();
+		Endpoint local = new Endpoint() {
+			@Override
+			public CompletableFuture<?> request(String method, Object parameter) {
+				invoked.add(String.valueOf(parameter));
+				return CompletableFuture.completedFuture(parameter);
+			}
+			@Override
+			public void notify(String method, Object parameter) {
+				invoked.add(String.valueOf(parameter));
+			}
+		};
+		List<Message> sent = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(new RemoteEndpoint(sent::add, local), executor);
+
+		queue.consume(notification("a1"));
+		queue.consume(request("1", "a"));
+		queue.consume(request("2", "b"));
+		NotificationMessage cancel = new NotificationMessage();
+		cancel.setMethod("$/cancelRequest");
+		CancelParams cancelParams = new CancelParams();
+		cancelParams.setId("1");
+		cancel.setParams(cancelParams);
+		queue.consume(cancel);
+
+		// The cancelled request is answered before the queue is drained
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(1, sent.size());
+		ResponseMessage response = (ResponseMessage) sent.get(0);
+		Assert.assertEquals("1", response.getId());
+		Assert.assertEquals(ResponseErrorCode.RequestCancelled.getValue(), response.getError().getCode());
+
+		executor.runAll();
+		Assert.assertEquals("[a1, b]", invoked.toString());
+		Assert.assertEquals(2, sent.size());
+		Assert.assertEquals("b", ((ResponseMessage) sent.get(1)).getResult());
+	}
+
+	@Test
+	public void testConcurrentDispatch() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor, null, DispatchPolicy.CONCURRENT);
+
+		queue.consume(notification("a1"));
+		queue.consume(notification("a2"));
+		queue.consume(request("1", "b"));
+		Assert.assertEquals(3, executor.tasks.size());
+		Assert.assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testKeyedDispatch() {
+		List<Message> handled = new ArrayList<>();
+		ManualExecutor executor = new ManualExecutor();
+		TestCoalescer keys = new TestCoalescer();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, executor, null, DispatchPolicy.keyed(keys::getKey));
+
+		queue.consume(notification("a1"));
+		queue.consume(notification("b1"));
+		queue.consume(notification("a2"));
+		queue.consume(notification("c1"));
+		// Different keys run in parallel, the second message for a waits for the first one
+		Assert.assertEquals(3, executor.tasks.size());
+		Assert.assertEquals(1, queue.size());
+
+		// A message without key waits for all running messages, and later messages wait for it
+		queue.consume(notification(42));
+		queue.consume(notification("d1"));
+		Assert.assertEquals(3, executor.tasks.size());
+
+		executor.tasks.remove(0).run();
+		Assert.assertEquals("[a1]", params(handled).toString());
+		// a2 can run now
+		Assert.assertEquals(3, executor.tasks.size());
+		executor.tasks.remove(0).run();
+		executor.tasks.remove(0).run();
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.tasks.remove(0).run();
+		// Only the barrier runs
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.tasks.remove(0).run();
+		Assert.assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		Assert.assertEquals("[a1, b1, c1, a2, 42, d1]", params(handled).toString());
+	}
+
+}
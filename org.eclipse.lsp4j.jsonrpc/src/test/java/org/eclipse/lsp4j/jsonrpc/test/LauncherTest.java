@@ -17,13 +17,22 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.eclipse.lsp4j.jsonrpc.DispatchPolicy;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
+import org.eclipse.lsp4j.jsonrpc.RequestScheduler;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
 import org.eclipse.lsp4j.jsonrpc.services.JsonNotification;
 import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
 import org.junit.Assert;
@@ -166,4 +175,98 @@ public class LauncherTest {
 				out.toString());
 	}
 	
+	@Test public void testQueueWithSingleThreadExecutor() throws Exception {
+		CompletableFuture<String> received = new CompletableFuture<>();
+		A a = new A() {
+			@Override
+			public void say(Param p) {
+				received.complete(p.message);
+			}
+		};
+		PipedOutputStream clientOut = new PipedOutputStream();
+		PipedInputStream in = new PipedInputStream(clientOut);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// The reader occupies the only thread of the executor, so queued messages must be handled elsewhere
+			Launcher<A> launcher = new Launcher.Builder<A>()
+					.setLocalService(a)
+					.setRemoteInterface(A.class)
+					.setInput(in)
+					.setOutput(new ByteArrayOutputStream())
+					.setExecutorService(executor)
+					.setDispatchPolicy(DispatchPolicy.CONCURRENT)
+					.create();
+			launcher.startListening();
+			clientOut.write(("Content-Length: 59\r\n\r\n"
+					+ "{\"jsonrpc\":\"2.0\",\"method\":\"say\",\"params\":{\"message\":\"foo\"}}").getBytes());
+			clientOut.flush();
+			Assert.assertEquals("foo", received.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		} finally {
+			clientOut.close();
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test public void testShutdownCreatedRequestScheduler() throws Exception {
+		A a = new A() {
+			@Override
+			public void say(Param p) {
+			}
+		};
+		RequestScheduler[] created = new RequestScheduler[1];
+		Launcher<A> launcher = new Launcher.Builder<A>() {
+			@Override
+			protected RequestScheduler createRequestScheduler() {
+				created[0] = super.createRequestScheduler();
+				return created[0];
+			}
+		}
+				.setLocalService(a)
+				.setRemoteInterface(A.class)
+				.setInput(new ByteArrayInputStream("".getBytes()))
+				.setOutput(new ByteArrayOutputStream())
+				.setRequestPriority("say", RequestPriority.BACKGROUND)
+				.create();
+		launcher.startListening().get(TIMEOUT, TimeUnit.MILLISECONDS);
+		
+		// The input stream has ended, so the scheduler created by the builder does not accept requests anymore
+		RequestMessage request = new RequestMessage();
+		request.setId("1");
+		request.setMethod("ask");
+		CompletableFuture<Object> result = created[0].schedule(request, () -> CompletableFuture.completedFuture(null));
+		try {
+			result.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected the request to be rejected");
+		} catch (ExecutionException exception) {
+			Assert.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+		}
+	}
+	
+	@Test public void testKeepConfiguredRequestScheduler() throws Exception {
+		A a = new A() {
+			@Override
+			public void say(Param p) {
+			}
+		};
+		RequestScheduler scheduler = new RequestScheduler(1, 1);
+		try {
+			Launcher<A> launcher = new Launcher.Builder<A>()
+					.setLocalService(a)
+					.setRemoteInterface(A.class)
+					.setInput(new ByteArrayInputStream("".getBytes()))
+					.setOutput(new ByteArrayOutputStream())
+					.setRequestScheduler(scheduler)
+					.create();
+			launcher.startListening().get(TIMEOUT, TimeUnit.MILLISECONDS);
+			
+			RequestMessage request = new RequestMessage();
+			request.setId("1");
+			request.setMethod("ask");
+			CompletableFuture<Object> result = scheduler.schedule(request, () -> CompletableFuture.completedFuture("done"));
+			Assert.assertEquals("done", result.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+	
 }
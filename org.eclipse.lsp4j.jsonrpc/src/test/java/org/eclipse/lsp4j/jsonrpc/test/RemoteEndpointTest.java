@@ -33,6 +33,7 @@ import org.eclipse.lsp4j.jsonrpc.Endpoint;
 import org.eclipse.lsp4j.jsonrpc.JsonRpcException;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.jsonrpc.messages.Message;
 import org.eclipse.lsp4j.jsonrpc.messages.MessageIssue;
@@ -186,6 +187,28 @@ public class RemoteEndpointTest {
 		assertEquals(error.getMessage(), "The request (id: 1, method: 'foo') has been cancelled");
 	}
 	
+	@Test
+	public void testCancellationBeforeRequest() {
+		TestEndpoint endp = new TestEndpoint();
+		TestMessageConsumer consumer = new TestMessageConsumer();
+		RemoteEndpoint endpoint = new RemoteEndpoint(consumer, endp);
+		
+		endpoint.consume(init(new NotificationMessage(), it -> {
+			it.setMethod("$/cancelRequest");
+			it.setParams(init(new CancelParams(), p -> p.setId("1")));
+		}));
+		endpoint.consume(init(new RequestMessage(), it -> {
+			it.setId("1");
+			it.setMethod("foo");
+			it.setParams("myparam");
+		}));
+		
+		assertTrue(endp.requests.isEmpty());
+		ResponseMessage message = (ResponseMessage) consumer.messages.get(0);
+		assertEquals(ResponseErrorCode.RequestCancelled.getValue(), message.getError().getCode());
+		assertEquals(Either.forLeft("1"), message.getRawId());
+	}
+	
 	@Test
 	public void testExceptionInEndpoint() {
 		LogMessageAccumulator logMessages = new LogMessageAccumulator();
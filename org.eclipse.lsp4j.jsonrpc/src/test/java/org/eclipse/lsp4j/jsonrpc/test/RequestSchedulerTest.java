@@ -0,0 +1,215 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
+import org.eclipse.lsp4j.jsonrpc.RequestScheduler;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequestPriority;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestSchedulerTest {
+
+	private static final long TIMEOUT = 2000;
+
+	public interface Service {
+		@JsonRequest
+		CompletableFuture<String> interactive(String param);
+		@JsonRequest
+		@JsonRequestPriority(RequestPriority.BACKGROUND)
+		CompletableFuture<String> background(String param);
+	}
+
+	private RequestScheduler scheduler;
+
+	@After
+	public void shutdown() {
+		if (scheduler != null)
+			scheduler.shutdown();
+	}
+
+	private static RequestMessage request(String id, String method) {
+		RequestMessage message = new RequestMessage();
+		message.setId(id);
+		message.setMethod(method);
+		return message;
+	}
+
+	@Test
+	public void testAnnotatedPriority() {
+		JsonRpcMethod interactive = ServiceEndpoints.getSupportedMethods(Service.class).get("interactive");
+		JsonRpcMethod background = ServiceEndpoints.getSupportedMethods(Service.class).get("background");
+		Assert.assertNull(interactive.getPriority());
+		Assert.assertEquals(RequestPriority.BACKGROUND, background.getPriority());
+	}
+
+	@Test
+	public void testComputeAsyncStaysInClass() throws Exception {
+		scheduler = new RequestScheduler(1, 1);
+		scheduler.setPriority("background", RequestPriority.BACKGROUND);
+		CompletableFuture<Object> interactive = scheduler.schedule(request("1", "interactive"),
+				() -> CompletableFutures.computeAsync(cancelChecker -> Thread.currentThread().getName()));
+		CompletableFuture<Object> background = scheduler.schedule(request("2", "background"),
+				() -> CompletableFutures.computeAsync(cancelChecker -> Thread.currentThread().getName()));
+		Assert.assertTrue(interactive.get(TIMEOUT, TimeUnit.MILLISECONDS).toString().startsWith("lsp4j-interactive-"));
+		Assert.assertTrue(background.get(TIMEOUT, TimeUnit.MILLISECONDS).toString().startsWith("lsp4j-background-"));
+	}
+
+	@Test
+	public void testPreemptBackgroundRequests() throws Exception {
+		scheduler = new RequestScheduler(1, 1);
+		scheduler.setPriority("background", RequestPriority.BACKGROUND);
+		scheduler.setPreemptBackgroundRequests(true);
+
+		CompletableFuture<Object> backgroundResult = new CompletableFuture<>();
+		CountDownLatch backgroundStarted = new CountDownLatch(1);
+		CompletableFuture<Object> background = scheduler.schedule(request("1", "background"), () -> {
+			backgroundStarted.countDown();
+			return backgroundResult;
+		});
+		Assert.assertTrue(backgroundStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> first = scheduler.schedule(request("2", "interactive"), () -> {
+			started.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CompletableFuture.completedFuture("first");
+		});
+		Assert.assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(background.isDone());
+
+		// The second interactive request has to wait for the first one, so the background request is cancelled
+		CompletableFuture<Object> second = scheduler.schedule(request("3", "interactive"),
+				() -> CompletableFuture.completedFuture("second"));
+		Assert.assertEquals(1, scheduler.getQueuedCount(RequestPriority.INTERACTIVE));
+		try {
+			background.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected the background request to be cancelled");
+		} catch (ExecutionException exception) {
+			ResponseErrorException cause = (ResponseErrorException) exception.getCause();
+			Assert.assertEquals(ResponseErrorCode.ServerCancelled.getValue(), cause.getResponseError().getCode());
+		}
+		Assert.assertTrue(backgroundResult.isCancelled());
+
+		release.countDown();
+		Assert.assertEquals("first", first.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertEquals("second", second.get(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testPreemptOldestBackgroundRequest() throws Exception {
+		scheduler = new RequestScheduler(1, 2);
+		scheduler.setPriority("background", RequestPriority.BACKGROUND);
+		scheduler.setPreemptBackgroundRequests(true);
+
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CompletableFuture<Object> first = scheduler.schedule(request("1", "background"), () -> {
+			firstStarted.countDown();
+			return new CompletableFuture<>();
+		});
+		Assert.assertTrue(firstStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		CountDownLatch secondStarted = new CountDownLatch(1);
+		CompletableFuture<Object> second = scheduler.schedule(request("2", "background"), () -> {
+			secondStarted.countDown();
+			return new CompletableFuture<>();
+		});
+		Assert.assertTrue(secondStarted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		// Occupy both background threads, so the fifth background request has to wait for a thread
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch busy = new CountDownLatch(2);
+		Supplier<CompletableFuture<Object>> blocking = () -> {
+			busy.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CompletableFuture.completedFuture(null);
+		};
+		scheduler.schedule(request("3", "background"), blocking);
+		scheduler.schedule(request("4", "background"), blocking);
+		Assert.assertTrue(busy.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		CompletableFuture<Object> queued = scheduler.schedule(request("5", "background"),
+				() -> CompletableFuture.completedFuture("queued"));
+
+		CountDownLatch started = new CountDownLatch(1);
+		scheduler.schedule(request("6", "interactive"), () -> {
+			started.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CompletableFuture.completedFuture(null);
+		});
+		Assert.assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		scheduler.schedule(request("7", "interactive"), () -> CompletableFuture.completedFuture(null));
+
+		// Only the request that has been in progress for the longest time is cancelled
+		try {
+			first.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected the oldest background request to be cancelled");
+		} catch (ExecutionException exception) {
+			Assert.assertTrue(exception.getCause() instanceof ResponseErrorException);
+		}
+		Assert.assertFalse(second.isDone());
+		Assert.assertFalse(queued.isDone());
+		release.countDown();
+		Assert.assertEquals("queued", queued.get(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testCancelQueuedRequest() throws Exception {
+		scheduler = new RequestScheduler(1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.schedule(request("1", "interactive"), () -> {
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CompletableFuture.completedFuture(null);
+		});
+		boolean[] invoked = new boolean[1];
+		CompletableFuture<Object> queued = scheduler.schedule(request("2", "interactive"), () -> {
+			invoked[0] = true;
+			return CompletableFuture.completedFuture(null);
+		});
+		CompletableFuture<Object> last = scheduler.schedule(request("3", "interactive"),
+				() -> CompletableFuture.completedFuture("last"));
+		queued.cancel(true);
+		release.countDown();
+
+		// The requests are run in order by the single thread, so the cancelled request has been skipped
+		Assert.assertEquals("last", last.get(TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(invoked[0]);
+	}
+
+}
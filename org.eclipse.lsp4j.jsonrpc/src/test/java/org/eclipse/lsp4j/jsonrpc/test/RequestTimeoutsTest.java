@@ -0,0 +1,148 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.RequestTimeouts;
+import org.eclipse.lsp4j.jsonrpc.TimerWheel;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestTimeoutsTest {
+
+	private static final long TIMEOUT = 2000;
+
+	static class NoopEndpoint implements Endpoint {
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			return new CompletableFuture<>();
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+		}
+
+	}
+
+	@Test
+	public void testTimerWheel() throws Exception {
+		// A small wheel, so some timeouts need several rounds
+		TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 4);
+		List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(3);
+		timer.schedule(() -> { expired.add(3); latch.countDown(); }, 120, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> { expired.add(1); latch.countDown(); }, 10, TimeUnit.MILLISECONDS);
+		TimerWheel.Timeout cancelled = timer.schedule(() -> expired.add(0), 30, TimeUnit.MILLISECONDS);
+		timer.schedule(() -> { expired.add(2); latch.countDown(); }, 60, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(cancelled.cancel());
+		long start = System.nanoTime();
+		Assert.assertTrue(latch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertEquals("[1, 2, 3]", expired.toString());
+		Assert.assertTrue(cancelled.isCancelled());
+	}
+
+	@Test
+	public void testRequestTimeout() throws Exception {
+		List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+		RemoteEndpoint endpoint = new RemoteEndpoint(sent::add, new NoopEndpoint());
+		endpoint.setRequestTimeouts(new RequestTimeouts(new TimerWheel(5, TimeUnit.MILLISECONDS, 64))
+				.setDefaultTimeout(30, TimeUnit.MILLISECONDS)
+				.setTimeout("slow", 0, TimeUnit.MILLISECONDS));
+
+		CompletableFuture<Object> slow = endpoint.request("slow", "param");
+		CompletableFuture<Object> fast = endpoint.request("fast", "param");
+		try {
+			fast.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected a timeout");
+		} catch (ExecutionException exception) {
+			Assert.assertTrue(exception.getCause() instanceof TimeoutException);
+		}
+
+		// A cancel notification has been sent for the expired request only
+		Assert.assertEquals(3, sent.size());
+		NotificationMessage cancel = (NotificationMessage) sent.get(2);
+		Assert.assertEquals(((RequestMessage) sent.get(1)).getId(), ((CancelParams) cancel.getParams()).getId());
+		Assert.assertFalse(slow.isDone());
+
+		// A late response is ignored, while the other request can still be answered
+		ResponseMessage lateResponse = new ResponseMessage();
+		lateResponse.setId(((RequestMessage) sent.get(1)).getId());
+		lateResponse.setResult("late");
+		endpoint.consume(lateResponse);
+		ResponseMessage response = new ResponseMessage();
+		response.setId(((RequestMessage) sent.get(0)).getId());
+		response.setResult("result");
+		endpoint.consume(response);
+		Assert.assertEquals("result", slow.get(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testCancelNotificationOffTimerThread() throws Exception {
+		List<String> threads = Collections.synchronizedList(new ArrayList<>());
+		RemoteEndpoint endpoint = new RemoteEndpoint(message -> threads.add(Thread.currentThread().getName()),
+				new NoopEndpoint());
+		endpoint.setRequestTimeouts(new RequestTimeouts(new TimerWheel(5, TimeUnit.MILLISECONDS, 64)));
+
+		CompletableFuture<Object> future = endpoint.request("method", "param", 20, TimeUnit.MILLISECONDS);
+		try {
+			future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			Assert.fail("Expected a timeout");
+		} catch (ExecutionException exception) {
+			Assert.assertTrue(exception.getCause() instanceof TimeoutException);
+		}
+
+		// The timer thread must not block on writing the cancel notification
+		Assert.assertEquals(2, threads.size());
+		Assert.assertNotEquals("lsp4j-timer", threads.get(1));
+	}
+
+	@Test
+	public void testResponseBeforeTimeout() throws Exception {
+		List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+		RemoteEndpoint endpoint = new RemoteEndpoint(sent::add, new NoopEndpoint());
+		TimerWheel timer = new TimerWheel(5, TimeUnit.MILLISECONDS, 64);
+		endpoint.setRequestTimeouts(new RequestTimeouts(timer));
+
+		CompletableFuture<Object> future = endpoint.request("method", "param", 1000, TimeUnit.MILLISECONDS);
+		ResponseMessage response = new ResponseMessage();
+		response.setId(((RequestMessage) sent.get(0)).getId());
+		response.setResult("result");
+		endpoint.consume(response);
+		Assert.assertEquals("result", future.get(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		// The cancelled timeout is removed from the wheel without sending a cancel notification
+		long start = System.currentTimeMillis();
+		while (timer.getPendingCount() > 0 && System.currentTimeMillis() - start < TIMEOUT) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, timer.getPendingCount());
+		Assert.assertEquals(1, sent.size());
+	}
+
+}
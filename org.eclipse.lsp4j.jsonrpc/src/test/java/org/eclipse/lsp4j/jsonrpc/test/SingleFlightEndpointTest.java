@@ -0,0 +1,136 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.jsonrpc.CancellationToken;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.SingleFlightEndpoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightEndpointTest {
+
+	static class TestEndpoint implements Endpoint {
+
+		List<String> requests = new ArrayList<>();
+		List<CompletableFuture<Object>> futures = new ArrayList<>();
+		List<CancellationToken> tokens = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			requests.add(method + " " + parameter);
+			tokens.add(CancellationToken.current());
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			futures.add(future);
+			return future;
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+		}
+
+	}
+
+	@Test
+	public void testShareResult() throws Exception {
+		TestEndpoint delegate = new TestEndpoint();
+		SingleFlightEndpoint endpoint = new SingleFlightEndpoint(delegate, Collections.singleton("symbol"));
+
+		CompletableFuture<?> first = endpoint.request("symbol", "foo");
+		CompletableFuture<?> second = endpoint.request("symbol", "foo");
+		CompletableFuture<?> other = endpoint.request("symbol", "bar");
+		Assert.assertEquals(2, delegate.requests.size());
+		Assert.assertEquals(1, endpoint.getSharedCount());
+		Assert.assertEquals(2, endpoint.getInFlightCount());
+		Assert.assertNotSame(first, second);
+
+		delegate.futures.get(0).complete("result");
+		Assert.assertEquals("result", first.get());
+		Assert.assertEquals("result", second.get());
+		Assert.assertFalse(other.isDone());
+		Assert.assertEquals(1, endpoint.getInFlightCount());
+
+		// A request received after the shared one completed is forwarded again
+		endpoint.request("symbol", "foo");
+		Assert.assertEquals(3, delegate.requests.size());
+	}
+
+	@Test
+	public void testOtherMethodsAreForwarded() {
+		TestEndpoint delegate = new TestEndpoint();
+		SingleFlightEndpoint endpoint = new SingleFlightEndpoint(delegate, Collections.singleton("symbol"));
+
+		endpoint.request("hover", "foo");
+		endpoint.request("hover", "foo");
+		Assert.assertEquals(2, delegate.requests.size());
+		Assert.assertEquals(0, endpoint.getSharedCount());
+		Assert.assertEquals(0, endpoint.getInFlightCount());
+	}
+
+	@Test
+	public void testCancelOneCaller() throws Exception {
+		TestEndpoint delegate = new TestEndpoint();
+		SingleFlightEndpoint endpoint = new SingleFlightEndpoint(delegate, Collections.singleton("symbol"));
+
+		CompletableFuture<?> first = endpoint.request("symbol", "foo");
+		CompletableFuture<?> second = endpoint.request("symbol", "foo");
+		first.cancel(true);
+		Assert.assertFalse(delegate.futures.get(0).isDone());
+		Assert.assertFalse(delegate.tokens.get(0).isCanceled());
+
+		delegate.futures.get(0).complete("result");
+		Assert.assertEquals("result", second.get());
+	}
+
+	@Test
+	public void testCancelAllCallers() {
+		TestEndpoint delegate = new TestEndpoint();
+		SingleFlightEndpoint endpoint = new SingleFlightEndpoint(delegate, Collections.singleton("symbol"));
+
+		CompletableFuture<?> first = endpoint.request("symbol", "foo");
+		CompletableFuture<?> second = endpoint.request("symbol", "foo");
+		first.cancel(true);
+		second.cancel(true);
+		Assert.assertTrue(delegate.futures.get(0).isCancelled());
+		Assert.assertTrue(delegate.tokens.get(0).isCanceled());
+		Assert.assertEquals(0, endpoint.getInFlightCount());
+
+		// A new request is not joined to the cancelled one
+		CompletableFuture<?> third = endpoint.request("symbol", "foo");
+		Assert.assertEquals(2, delegate.requests.size());
+		Assert.assertFalse(third.isDone());
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void testCallerTokenCancelsCaller() {
+		TestEndpoint delegate = new TestEndpoint();
+		SingleFlightEndpoint endpoint = new SingleFlightEndpoint(delegate, Collections.singleton("symbol"));
+
+		CancellationToken token = new CancellationToken();
+		CompletableFuture<?> first;
+		try (CancellationToken.Scope scope = token.enter()) {
+			first = endpoint.request("symbol", "foo");
+		}
+		CompletableFuture<?> second = endpoint.request("symbol", "foo");
+		token.cancel();
+		Assert.assertTrue(first.isCancelled());
+		Assert.assertFalse(second.isDone());
+		Assert.assertFalse(delegate.futures.get(0).isDone());
+	}
+
+}
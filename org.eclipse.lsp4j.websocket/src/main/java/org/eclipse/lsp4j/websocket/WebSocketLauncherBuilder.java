@@ -19,8 +19,8 @@ import org.eclipse.lsp4j.jsonrpc.Endpoint;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
 import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.RequestScheduler;
 import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
-import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
 
 /**
  * JSON-RPC launcher builder for use in {@link WebSocketEndpoint}.
@@ -49,6 +49,8 @@ public class WebSocketLauncherBuilder<T> extends Launcher.Builder<T> {
 		
 		MessageJsonHandler jsonHandler = createJsonHandler();
 		RemoteEndpoint remoteEndpoint = createRemoteEndpoint(jsonHandler);
+		if (requestTimeouts != null)
+			remoteEndpoint.setRequestTimeouts(requestTimeouts);
 		addMessageHandlers(jsonHandler, remoteEndpoint);
 		T remoteProxy = createProxy(remoteEndpoint);
 		return createLauncher(null, remoteProxy, remoteEndpoint, null);
@@ -58,12 +60,16 @@ public class WebSocketLauncherBuilder<T> extends Launcher.Builder<T> {
 	protected RemoteEndpoint createRemoteEndpoint(MessageJsonHandler jsonHandler) {
 		MessageConsumer outgoingMessageStream = new WebSocketMessageConsumer(session, jsonHandler);
 		outgoingMessageStream = wrapMessageConsumer(outgoingMessageStream);
-		Endpoint localEndpoint = ServiceEndpoints.toEndpoint(localServices);
+		Endpoint localEndpoint = createLocalEndpoint();
 		RemoteEndpoint remoteEndpoint;
-		if (exceptionHandler == null)
+		RequestScheduler scheduler = createRequestScheduler();
+		if (exceptionHandler == null && scheduler == null)
 			remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint);
-		else
+		else if (scheduler == null)
 			remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint, exceptionHandler);
+		else
+			remoteEndpoint = new RemoteEndpoint(outgoingMessageStream, localEndpoint,
+					exceptionHandler != null ? exceptionHandler : RemoteEndpoint.DEFAULT_EXCEPTION_HANDLER, scheduler);
 		jsonHandler.setMethodProvider(remoteEndpoint);
 		return remoteEndpoint;
 	}
@@ -21,6 +21,7 @@ import org.eclipse.lsp4j.adapters.CompletionItemTextEditTypeAdapter
 import org.eclipse.lsp4j.adapters.DocumentChangeListAdapter
 import org.eclipse.lsp4j.adapters.HoverTypeAdapter
 import org.eclipse.lsp4j.adapters.InitializeParamsTypeAdapter
+import org.eclipse.lsp4j.adapters.IntListTypeAdapter
 import org.eclipse.lsp4j.adapters.ResourceChangeListAdapter
 import org.eclipse.lsp4j.adapters.ResourceOperationTypeAdapter
 import org.eclipse.lsp4j.adapters.SymbolInformationTypeAdapter
@@ -1907,6 +1908,30 @@ class GeneralClientCapabilities {
 	 * Since 3.16.0
 	 */
 	MarkdownCapabilities markdown
+
+	/**
+	 * The position encodings supported by the client. Client and server
+	 * have to agree on the same position encoding to ensure that offsets
+	 * (e.g. character position in a line) are interpreted the same on both
+	 * side.
+	 *
+	 * To keep the protocol backwards compatible the following applies: if
+	 * the value 'utf-16' is missing from the array of position encodings
+	 * servers can assume that the client supports UTF-16. UTF-16 is
+	 * therefore a mandatory encoding.
+	 *
+	 * If omitted it defaults to ['utf-16'].
+	 *
+	 * Implementation considerations: since the conversion from one encoding
+	 * into another requires the content of the file / line the conversion
+	 * is best done where the file is read which is usually on the server
+	 * side.
+	 *
+	 * See {@link PositionEncodingKind} for allowed values.
+	 *
+	 * Since 3.17.0
+	 */
+	List<String> positionEncodings
 }
 
 /**
@@ -4987,6 +5012,21 @@ class ServerCapabilities {
 	 */
 	Either<Boolean, MonikerRegistrationOptions> monikerProvider
 
+	/**
+	 * The position encoding the server picked from the encodings offered
+	 * by the client via the client capability `general.positionEncodings`.
+	 *
+	 * If the client didn't provide any position encodings the only valid
+	 * value that a server can return is 'utf-16'.
+	 *
+	 * If omitted it defaults to 'utf-16'.
+	 *
+	 * See {@link PositionEncodingKind} for allowed values.
+	 *
+	 * Since 3.17.0
+	 */
+	String positionEncoding
+
 	/**
 	 * Experimental server capabilities.
 	 */
@@ -5104,6 +5144,7 @@ class SemanticTokens {
 	 * The actual tokens.
 	 */
 	@NonNull
+	@JsonAdapter(IntListTypeAdapter)
 	List<Integer> data
 
 	new(@NonNull List<Integer> data) {
@@ -5123,6 +5164,7 @@ class SemanticTokens {
 class SemanticTokensPartialResult {
 
 	@NonNull
+	@JsonAdapter(IntListTypeAdapter)
 	List<Integer> data
 
 	new(@NonNull List<Integer> data) {
@@ -5175,6 +5217,7 @@ class SemanticTokensEdit {
 	/**
 	 * The elements to insert.
 	 */
+	@JsonAdapter(IntListTypeAdapter)
 	List<Integer> data
 
 	new(int start, int deleteCount, List<Integer> data) {
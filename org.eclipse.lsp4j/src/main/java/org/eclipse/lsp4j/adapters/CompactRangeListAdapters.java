@@ -0,0 +1,351 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.adapters;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import org.eclipse.lsp4j.DocumentHighlight;
+import org.eclipse.lsp4j.DocumentHighlightKind;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.jsonrpc.json.adapters.TypeUtils;
+import org.eclipse.lsp4j.util.AbstractCompactRangeList;
+import org.eclipse.lsp4j.util.CompactDocumentHighlightList;
+import org.eclipse.lsp4j.util.CompactLocationList;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Type adapters that read and write {@link CompactLocationList} and {@link CompactDocumentHighlightList}
+ * in the standard JSON representation of location and document highlight arrays.
+ */
+public final class CompactRangeListAdapters {
+
+	private CompactRangeListAdapters() {}
+
+	/**
+	 * A type adapter factory for the compact range lists. Register it with
+	 * {@link com.google.gson.GsonBuilder#registerTypeAdapterFactory(TypeAdapterFactory)}, e.g. through
+	 * {@code Launcher.Builder.configureGson}.
+	 */
+	public static class Factory implements TypeAdapterFactory {
+
+		private final boolean replaceLists;
+
+		/**
+		 * Create a factory that handles only values that are declared with one of the compact list types,
+		 * and values of these types that are serialized with their runtime type, e.g. request results.
+		 */
+		public Factory() {
+			this(false);
+		}
+
+		/**
+		 * @param replaceLists - whether collections of {@link Location} and {@link DocumentHighlight}
+		 *     should be parsed into compact lists, too, provided that their declared type permits this
+		 */
+		public Factory(boolean replaceLists) {
+			this.replaceLists = replaceLists;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+			Class<? super T> rawType = typeToken.getRawType();
+			if (rawType == CompactLocationList.class)
+				return (TypeAdapter<T>) new LocationListAdapter();
+			if (rawType == CompactDocumentHighlightList.class)
+				return (TypeAdapter<T>) new DocumentHighlightListAdapter();
+			if (replaceLists && Collection.class.isAssignableFrom(rawType)) {
+				Type[] elementTypes = TypeUtils.getElementTypes(typeToken, Collection.class);
+				if (elementTypes.length != 1)
+					return null;
+				if (elementTypes[0] == Location.class && rawType.isAssignableFrom(CompactLocationList.class))
+					return (TypeAdapter<T>) new LocationListAdapter();
+				if (elementTypes[0] == DocumentHighlight.class && rawType.isAssignableFrom(CompactDocumentHighlightList.class))
+					return (TypeAdapter<T>) new DocumentHighlightListAdapter();
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * Reads and writes arrays of {@link Location} objects.
+	 */
+	public static class LocationListAdapter extends TypeAdapter<Collection<Location>> {
+
+		@Override
+		public CompactLocationList read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			CompactLocationList result = new CompactLocationList();
+			in.beginArray();
+			while (in.hasNext()) {
+				if (in.peek() != JsonToken.BEGIN_OBJECT)
+					throw new JsonParseException("Expected a location object but was " + in.peek());
+				String uri = null;
+				long[] range = null;
+				in.beginObject();
+				while (in.hasNext()) {
+					String name = in.nextName();
+					switch (name) {
+					case "uri":
+						uri = in.nextString();
+						break;
+					case "range":
+						range = readRange(in);
+						break;
+					default:
+						in.skipValue();
+					}
+				}
+				in.endObject();
+				if (uri == null || range == null)
+					throw new JsonParseException("A location must have a uri and a range.");
+				result.add(uri, range[0], range[1]);
+			}
+			in.endArray();
+			return result;
+		}
+
+		@Override
+		public void write(JsonWriter out, Collection<Location> value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			if (value instanceof CompactLocationList) {
+				CompactLocationList list = (CompactLocationList) value;
+				for (int i = 0; i < list.size(); i++) {
+					out.beginObject();
+					out.name("uri");
+					out.value(list.getUri(i));
+					out.name("range");
+					writeRange(out, list.getStart(i), list.getEnd(i));
+					out.endObject();
+				}
+			} else {
+				for (Location location : value) {
+					if (location == null) {
+						out.nullValue();
+						continue;
+					}
+					out.beginObject();
+					out.name("uri");
+					out.value(location.getUri());
+					out.name("range");
+					writeRange(out, location.getRange());
+					out.endObject();
+				}
+			}
+			out.endArray();
+		}
+
+	}
+
+	/**
+	 * Reads and writes arrays of {@link DocumentHighlight} objects.
+	 */
+	public static class DocumentHighlightListAdapter extends TypeAdapter<Collection<DocumentHighlight>> {
+
+		@Override
+		public CompactDocumentHighlightList read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			CompactDocumentHighlightList result = new CompactDocumentHighlightList();
+			in.beginArray();
+			while (in.hasNext()) {
+				if (in.peek() != JsonToken.BEGIN_OBJECT)
+					throw new JsonParseException("Expected a document highlight object but was " + in.peek());
+				long[] range = null;
+				DocumentHighlightKind kind = null;
+				in.beginObject();
+				while (in.hasNext()) {
+					String name = in.nextName();
+					switch (name) {
+					case "range":
+						range = readRange(in);
+						break;
+					case "kind":
+						if (in.peek() == JsonToken.NULL) {
+							in.nextNull();
+						} else {
+							try {
+								kind = DocumentHighlightKind.forValue(in.nextInt());
+							} catch (IllegalArgumentException e) {
+								throw new JsonParseException(e);
+							}
+						}
+						break;
+					default:
+						in.skipValue();
+					}
+				}
+				in.endObject();
+				if (range == null)
+					throw new JsonParseException("A document highlight must have a range.");
+				result.add(range[0], range[1], kind);
+			}
+			in.endArray();
+			return result;
+		}
+
+		@Override
+		public void write(JsonWriter out, Collection<DocumentHighlight> value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginArray();
+			if (value instanceof CompactDocumentHighlightList) {
+				CompactDocumentHighlightList list = (CompactDocumentHighlightList) value;
+				for (int i = 0; i < list.size(); i++) {
+					writeHighlight(out, list.getStart(i), list.getEnd(i), list.getKind(i));
+				}
+			} else {
+				for (DocumentHighlight highlight : value) {
+					if (highlight == null) {
+						out.nullValue();
+						continue;
+					}
+					out.beginObject();
+					out.name("range");
+					writeRange(out, highlight.getRange());
+					writeKind(out, highlight.getKind());
+					out.endObject();
+				}
+			}
+			out.endArray();
+		}
+
+		private void writeHighlight(JsonWriter out, long start, long end, DocumentHighlightKind kind) throws IOException {
+			out.beginObject();
+			out.name("range");
+			writeRange(out, start, end);
+			writeKind(out, kind);
+			out.endObject();
+		}
+
+		private void writeKind(JsonWriter out, DocumentHighlightKind kind) throws IOException {
+			if (kind != null) {
+				out.name("kind");
+				out.value(kind.getValue());
+			}
+		}
+
+	}
+
+	/**
+	 * Read a range object and return its packed start and end positions.
+	 */
+	private static long[] readRange(JsonReader in) throws IOException {
+		long start = -1;
+		long end = -1;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			switch (name) {
+			case "start":
+				start = readPosition(in);
+				break;
+			case "end":
+				end = readPosition(in);
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		if (start == -1 || end == -1)
+			throw new JsonParseException("A range must have a start and an end position.");
+		return new long[] { start, end };
+	}
+
+	private static long readPosition(JsonReader in) throws IOException {
+		int line = 0;
+		int character = 0;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			switch (name) {
+			case "line":
+				line = in.nextInt();
+				break;
+			case "character":
+				character = in.nextInt();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return AbstractCompactRangeList.pack(line, character);
+	}
+
+	private static void writeRange(JsonWriter out, long start, long end) throws IOException {
+		out.beginObject();
+		out.name("start");
+		writePosition(out, start);
+		out.name("end");
+		writePosition(out, end);
+		out.endObject();
+	}
+
+	/**
+	 * Write a range of a {@link Location} or {@link DocumentHighlight} object. Missing properties are written
+	 * as {@code null}, which the writer omits unless it is configured to serialize nulls, like the default
+	 * adapters do.
+	 */
+	private static void writeRange(JsonWriter out, Range range) throws IOException {
+		if (range == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("start");
+		if (range.getStart() != null)
+			writePosition(out, AbstractCompactRangeList.pack(range.getStart()));
+		else
+			out.nullValue();
+		out.name("end");
+		if (range.getEnd() != null)
+			writePosition(out, AbstractCompactRangeList.pack(range.getEnd()));
+		else
+			out.nullValue();
+		out.endObject();
+	}
+
+	private static void writePosition(JsonWriter out, long position) throws IOException {
+		out.beginObject();
+		out.name("line");
+		out.value(AbstractCompactRangeList.line(position));
+		out.name("character");
+		out.value(AbstractCompactRangeList.character(position));
+		out.endObject();
+	}
+
+}
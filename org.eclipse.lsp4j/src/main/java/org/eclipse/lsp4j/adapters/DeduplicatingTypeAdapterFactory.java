@@ -0,0 +1,133 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.adapters;
+
+import java.io.IOException;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.LocationLink;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.util.ValuePool;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A type adapter factory that deduplicates the document URIs, {@link Range ranges} and {@link Position positions}
+ * of parsed {@link Location locations} and {@link LocationLink location links} using a {@link ValuePool}.
+ * Values of other types that contain locations, such as {@code SymbolInformation}, are deduplicated as well
+ * because their adapters delegate to the adapters created by this factory. Ranges and positions outside of
+ * locations, e.g. those of text edits or diagnostics, are not pooled, so handlers may modify them.
+ *
+ * <p>
+ * The ranges of parsed locations are shared between all locations with an equal range, also across messages,
+ * so they must not be modified.
+ *
+ * <p>
+ * The factory is meant to be registered per connection, so the pool lives as long as the connection:
+ * <pre>
+ * builder.configureGson(gsonBuilder -&gt; gsonBuilder.registerTypeAdapterFactory(new DeduplicatingTypeAdapterFactory()))
+ * </pre>
+ * Serialization is not affected by this factory.
+ */
+public class DeduplicatingTypeAdapterFactory implements TypeAdapterFactory {
+
+	private final ValuePool pool;
+
+	public DeduplicatingTypeAdapterFactory() {
+		this(new ValuePool());
+	}
+
+	public DeduplicatingTypeAdapterFactory(ValuePool pool) {
+		if (pool == null)
+			throw new NullPointerException("pool");
+		this.pool = pool;
+	}
+
+	public ValuePool getPool() {
+		return pool;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> typeToken) {
+		Class<? super T> rawType = typeToken.getRawType();
+		if (rawType == Location.class)
+			return (TypeAdapter<T>) new LocationAdapter(gson.getDelegateAdapter(this, TypeToken.get(Location.class)));
+		if (rawType == LocationLink.class)
+			return (TypeAdapter<T>) new LocationLinkAdapter(gson.getDelegateAdapter(this, TypeToken.get(LocationLink.class)));
+		return null;
+	}
+
+	protected class LocationAdapter extends TypeAdapter<Location> {
+
+		private final TypeAdapter<Location> delegate;
+
+		LocationAdapter(TypeAdapter<Location> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Location read(JsonReader in) throws IOException {
+			Location location = delegate.read(in);
+			if (location != null) {
+				if (location.getUri() != null)
+					location.setUri(pool.canonicalize(location.getUri()));
+				if (location.getRange() != null)
+					location.setRange(pool.canonicalize(location.getRange()));
+			}
+			return location;
+		}
+
+		@Override
+		public void write(JsonWriter out, Location value) throws IOException {
+			delegate.write(out, value);
+		}
+
+	}
+
+	protected class LocationLinkAdapter extends TypeAdapter<LocationLink> {
+
+		private final TypeAdapter<LocationLink> delegate;
+
+		LocationLinkAdapter(TypeAdapter<LocationLink> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public LocationLink read(JsonReader in) throws IOException {
+			LocationLink link = delegate.read(in);
+			if (link != null) {
+				if (link.getTargetUri() != null)
+					link.setTargetUri(pool.canonicalize(link.getTargetUri()));
+				if (link.getTargetRange() != null)
+					link.setTargetRange(pool.canonicalize(link.getTargetRange()));
+				if (link.getTargetSelectionRange() != null)
+					link.setTargetSelectionRange(pool.canonicalize(link.getTargetSelectionRange()));
+				link.setOriginSelectionRange(pool.canonicalize(link.getOriginSelectionRange()));
+			}
+			return link;
+		}
+
+		@Override
+		public void write(JsonWriter out, LocationLink value) throws IOException {
+			delegate.write(out, value);
+		}
+
+	}
+
+}
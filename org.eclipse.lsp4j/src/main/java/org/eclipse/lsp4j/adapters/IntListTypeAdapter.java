@@ -0,0 +1,67 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.adapters;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.lsp4j.util.IntList;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A type adapter for arrays of integers that parses them into an {@link IntList}, and writes
+ * the elements of an {@link IntList} without boxing them.
+ */
+public class IntListTypeAdapter extends TypeAdapter<List<Integer>> {
+
+	@Override
+	public List<Integer> read(JsonReader in) throws IOException {
+		JsonToken peek = in.peek();
+		if (peek == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		IntList result = new IntList();
+		in.beginArray();
+		while (in.hasNext()) {
+			result.addInt(in.nextInt());
+		}
+		in.endArray();
+		return result;
+	}
+
+	@Override
+	public void write(JsonWriter out, List<Integer> value) throws IOException {
+		if (value == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		if (value instanceof IntList) {
+			IntList list = (IntList) value;
+			int size = list.size();
+			for (int i = 0; i < size; i++) {
+				out.value(list.getInt(i));
+			}
+		} else {
+			for (Integer element : value) {
+				out.value(element);
+			}
+		}
+		out.endArray();
+	}
+
+}
@@ -0,0 +1,83 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.launch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.MessageCoalescer;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.util.TextDocuments;
+
+/**
+ * Merges consecutive {@code textDocument/didChange} notifications for the same document that wait to be
+ * handled by the language server. The merged notification carries the changes of both notifications in their
+ * original order and the version of the later one; changes that precede a change of the whole document are
+ * dropped. Install it with {@link org.eclipse.lsp4j.jsonrpc.Launcher.Builder#setMessageCoalescer(MessageCoalescer)}.
+ *
+ * <p>
+ * All messages whose parameters refer to a text document are keyed by the URI of that document, so a
+ * notification is never merged across a request or another notification for the same document.
+ */
+public class DidChangeCoalescer implements MessageCoalescer {
+
+	public static final String DID_CHANGE_METHOD = "textDocument/didChange";
+
+	@Override
+	public Object getKey(Message message) {
+		return TextDocuments.getUri(message);
+	}
+
+	@Override
+	public Message coalesce(Message queued, Message next) {
+		if (!isDidChange(queued) || !isDidChange(next))
+			return null;
+		DidChangeTextDocumentParams queuedParams = (DidChangeTextDocumentParams) ((NotificationMessage) queued).getParams();
+		DidChangeTextDocumentParams nextParams = (DidChangeTextDocumentParams) ((NotificationMessage) next).getParams();
+		List<TextDocumentContentChangeEvent> queuedChanges = queuedParams.getContentChanges();
+		List<TextDocumentContentChangeEvent> nextChanges = nextParams.getContentChanges();
+		if (queuedChanges == null || nextChanges == null)
+			return null;
+
+		List<TextDocumentContentChangeEvent> changes = new ArrayList<>(queuedChanges.size() + nextChanges.size());
+		changes.addAll(queuedChanges);
+		changes.addAll(nextChanges);
+		// A change without range replaces the whole document, which makes all previous changes obsolete
+		for (int i = changes.size() - 1; i > 0; i--) {
+			if (changes.get(i).getRange() == null) {
+				changes = new ArrayList<>(changes.subList(i, changes.size()));
+				break;
+			}
+		}
+
+		VersionedTextDocumentIdentifier textDocument = nextParams.getTextDocument();
+		DidChangeTextDocumentParams mergedParams = new DidChangeTextDocumentParams(
+				new VersionedTextDocumentIdentifier(textDocument.getUri(), textDocument.getVersion()), changes);
+		NotificationMessage merged = new NotificationMessage();
+		merged.setJsonrpc(next.getJsonrpc());
+		merged.setMethod(DID_CHANGE_METHOD);
+		merged.setParams(mergedParams);
+		return merged;
+	}
+
+	protected boolean isDidChange(Message message) {
+		return message instanceof NotificationMessage
+				&& DID_CHANGE_METHOD.equals(((NotificationMessage) message).getMethod())
+				&& ((NotificationMessage) message).getParams() instanceof DidChangeTextDocumentParams
+				&& ((DidChangeTextDocumentParams) ((NotificationMessage) message).getParams()).getTextDocument() != null;
+	}
+
+}
@@ -0,0 +1,326 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.launch;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.PartialResultParams;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.WorkDoneProgressParams;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.util.TextDocuments;
+
+/**
+ * An endpoint that caches the responses of idempotent document queries, usually wrapped around the local
+ * endpoint of a language server. Responses are cached by method, document URI, document version and the
+ * remaining parameters. The version of each document is tracked from the {@code textDocument/didOpen} and
+ * {@code textDocument/didChange} notifications that pass through this endpoint; requests for documents whose
+ * version is not known are not cached. All responses for a document are dropped when it changes or is closed,
+ * and a response is only stored if the document has not changed while it was computed. Requests with a
+ * {@linkplain WorkDoneProgressParams#getWorkDoneToken() work done token} or a
+ * {@linkplain PartialResultParams#getPartialResultToken() partial result token} are not cached, since the client
+ * expects progress or partial results that a cached response would not report.
+ *
+ * <p>
+ * Responses that depend on more than the content of the document, e.g. on the configuration or on other
+ * documents, become stale without a notification for the document. Call {@link #clear()} before asking the
+ * client to refresh such results, e.g. with {@code workspace/semanticTokens/refresh}.
+ *
+ * <p>
+ * The number of cached responses and their total weight are bounded; the least recently used responses are
+ * evicted first. The weight of a response is estimated by the given function, by default from the number of
+ * elements of a list or of the data of {@link SemanticTokens}. Cached responses are shared between requests,
+ * so they must not be modified after they have been returned. Failed requests and {@code null} responses are
+ * not cached. This class is thread-safe. Use {@link LSPLauncher.Builder#cacheResponses(Collection)} to install it.
+ */
+public class DocumentResponseCache implements Endpoint {
+
+	/**
+	 * The requests cached by default: their results depend only on the content of the document.
+	 */
+	public static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"textDocument/foldingRange",
+			"textDocument/documentSymbol",
+			"textDocument/semanticTokens/full",
+			"textDocument/documentLink")));
+
+	public static final int DEFAULT_MAX_ENTRIES = 500;
+
+	public static final long DEFAULT_MAX_TOTAL_WEIGHT = 1_000_000;
+
+	private static final String DID_OPEN_METHOD = "textDocument/didOpen";
+	private static final String DID_CHANGE_METHOD = "textDocument/didChange";
+	private static final String DID_CLOSE_METHOD = "textDocument/didClose";
+
+	private static class CacheKey {
+		final String method;
+		final String uri;
+		final Integer version;
+		final Object parameter;
+
+		CacheKey(String method, String uri, Integer version, Object parameter) {
+			this.method = method;
+			this.uri = uri;
+			this.version = version;
+			this.parameter = parameter;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return method.equals(other.method) && uri.equals(other.uri) && version.equals(other.version)
+					&& Objects.equals(parameter, other.parameter);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(method, uri, version, parameter);
+		}
+	}
+
+	private static class CacheEntry {
+		final Object value;
+		final long weight;
+
+		CacheEntry(Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private final Endpoint delegate;
+	private final Set<String> methods;
+	private final int maxEntries;
+	private final long maxTotalWeight;
+	private final ToLongFunction<Object> weigher;
+
+	private final Map<String, Integer> versions = new HashMap<>();
+	private final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalWeight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public DocumentResponseCache(Endpoint delegate) {
+		this(delegate, DEFAULT_METHODS);
+	}
+
+	/**
+	 * @param delegate - the endpoint that computes the responses
+	 * @param methods - the methods whose responses are cached
+	 */
+	public DocumentResponseCache(Endpoint delegate, Collection<String> methods) {
+		this(delegate, methods, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_TOTAL_WEIGHT, DocumentResponseCache::estimateWeight);
+	}
+
+	/**
+	 * @param delegate - the endpoint that computes the responses
+	 * @param methods - the methods whose responses are cached
+	 * @param maxEntries - the maximal number of cached responses
+	 * @param maxTotalWeight - the maximal sum of the weights of all cached responses
+	 * @param weigher - computes the weight of a response
+	 */
+	public DocumentResponseCache(Endpoint delegate, Collection<String> methods, int maxEntries, long maxTotalWeight,
+			ToLongFunction<Object> weigher) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		if (methods == null)
+			throw new NullPointerException("methods");
+		if (weigher == null)
+			throw new NullPointerException("weigher");
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be positive.");
+		if (maxTotalWeight <= 0)
+			throw new IllegalArgumentException("maxTotalWeight must be positive.");
+		this.delegate = delegate;
+		this.methods = new HashSet<>(methods);
+		this.maxEntries = maxEntries;
+		this.maxTotalWeight = maxTotalWeight;
+		this.weigher = weigher;
+	}
+
+	@Override
+	public CompletableFuture<?> request(String method, Object parameter) {
+		if (!methods.contains(method))
+			return delegate.request(method, parameter);
+		String uri = TextDocuments.getUri(parameter);
+		if (uri == null || hasProgressToken(parameter))
+			return delegate.request(method, parameter);
+		CacheKey key;
+		synchronized (this) {
+			Integer version = versions.get(uri);
+			if (version == null)
+				return delegate.request(method, parameter);
+			key = new CacheKey(method, uri, version, parameter);
+			CacheEntry entry = entries.get(key);
+			if (entry != null) {
+				hitCount.incrementAndGet();
+				return CompletableFuture.completedFuture(entry.value);
+			}
+		}
+		missCount.incrementAndGet();
+		CompletableFuture<?> result = delegate.request(method, parameter);
+		if (result != null) {
+			result.thenAccept(value -> {
+				if (value != null)
+					store(key, value);
+			});
+		}
+		return result;
+	}
+
+	private static boolean hasProgressToken(Object parameter) {
+		if (parameter instanceof WorkDoneProgressParams
+				&& ((WorkDoneProgressParams) parameter).getWorkDoneToken() != null)
+			return true;
+		return parameter instanceof PartialResultParams
+				&& ((PartialResultParams) parameter).getPartialResultToken() != null;
+	}
+
+	@Override
+	public void notify(String method, Object parameter) {
+		if (DID_CHANGE_METHOD.equals(method) && parameter instanceof DidChangeTextDocumentParams) {
+			DidChangeTextDocumentParams didChange = (DidChangeTextDocumentParams) parameter;
+			if (didChange.getTextDocument() != null)
+				documentChanged(didChange.getTextDocument().getUri(), didChange.getTextDocument().getVersion());
+		} else if (DID_OPEN_METHOD.equals(method) && parameter instanceof DidOpenTextDocumentParams) {
+			DidOpenTextDocumentParams didOpen = (DidOpenTextDocumentParams) parameter;
+			if (didOpen.getTextDocument() != null)
+				documentChanged(didOpen.getTextDocument().getUri(), didOpen.getTextDocument().getVersion());
+		} else if (DID_CLOSE_METHOD.equals(method)) {
+			String uri = TextDocuments.getUri(parameter);
+			if (uri != null)
+				documentChanged(uri, null);
+		}
+		delegate.notify(method, parameter);
+	}
+
+	/**
+	 * Drop all cached responses for the given document and remember its new version, or forget the document
+	 * if the version is {@code null}.
+	 */
+	protected synchronized void documentChanged(String uri, Integer version) {
+		if (version != null)
+			versions.put(uri, version);
+		else
+			versions.remove(uri);
+		Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<CacheKey, CacheEntry> next = iterator.next();
+			if (next.getKey().uri.equals(uri)) {
+				totalWeight -= next.getValue().weight;
+				iterator.remove();
+			}
+		}
+	}
+
+	private synchronized void store(CacheKey key, Object value) {
+		// The document may have changed while the response was computed
+		if (!key.version.equals(versions.get(key.uri)))
+			return;
+		long weight = Math.max(1, weigher.applyAsLong(value));
+		if (weight > maxTotalWeight)
+			return;
+		CacheEntry previous = entries.put(key, new CacheEntry(value, weight));
+		if (previous != null)
+			totalWeight -= previous.weight;
+		totalWeight += weight;
+		Iterator<CacheEntry> iterator = entries.values().iterator();
+		while ((entries.size() > maxEntries || totalWeight > maxTotalWeight) && iterator.hasNext()) {
+			totalWeight -= iterator.next().weight;
+			iterator.remove();
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Estimate the weight of a response from the number of its elements.
+	 */
+	public static long estimateWeight(Object value) {
+		if (value instanceof Collection<?>)
+			return 1 + ((Collection<?>) value).size();
+		if (value instanceof SemanticTokens && ((SemanticTokens) value).getData() != null)
+			return 1 + ((SemanticTokens) value).getData().size();
+		return 1;
+	}
+
+	/**
+	 * Drop all cached responses, e.g. before the client is asked to refresh them.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		totalWeight = 0;
+	}
+
+	/**
+	 * Returns the number of requests that have been answered from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of requests of a cached method that have been forwarded because no response was cached.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Returns the ratio of hits to all requests that could have been answered from the cache, or {@code 0} if
+	 * there has been no such request yet.
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the number of responses that have been evicted because the cache was full.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns the number of cached responses.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the sum of the weights of all cached responses.
+	 */
+	public synchronized long getTotalWeight() {
+		return totalWeight;
+	}
+
+}
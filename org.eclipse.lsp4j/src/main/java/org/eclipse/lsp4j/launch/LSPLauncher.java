@@ -14,14 +14,19 @@ package org.eclipse.lsp4j.launch;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
+import org.eclipse.lsp4j.jsonrpc.DispatchPolicy;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
 import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
 import org.eclipse.lsp4j.jsonrpc.validation.ReflectiveMessageValidator;
 import org.eclipse.lsp4j.services.LanguageClient;
 import org.eclipse.lsp4j.services.LanguageServer;
+import org.eclipse.lsp4j.util.TextDocuments;
 
 /**
  * Specialized launcher for the Language Server Protocol.
@@ -155,6 +160,61 @@ public final class LSPLauncher {
 	 */
 	public static class Builder<T> extends Launcher.Builder<T> {
 		
+		protected Collection<String> staleRequestMethods;
+		protected Collection<String> cachedResponseMethods;
+		
+		/**
+		 * Cancel requests of the given methods with a {@code ContentModified} error when the document they refer
+		 * to changes before they are answered.
+		 * 
+		 * @see StaleRequestCanceller
+		 */
+		public Builder<T> cancelStaleRequests(Collection<String> methods) {
+			this.staleRequestMethods = methods;
+			return this;
+		}
+		
+		/**
+		 * Cache the responses to requests of the given methods by document version, and answer repeated requests
+		 * for a document version from the cache.
+		 * 
+		 * @see DocumentResponseCache
+		 */
+		public Builder<T> cacheResponses(Collection<String> methods) {
+			this.cachedResponseMethods = methods;
+			return this;
+		}
+		
+		/**
+		 * Handle incoming messages that refer to the same text document in the order they were received, and
+		 * messages for different documents in parallel. Messages that do not refer to a text document are handled
+		 * exclusively, after all previous messages and before all later ones.
+		 * 
+		 * @see DispatchPolicy#keyed(java.util.function.Function)
+		 */
+		public Builder<T> dispatchByTextDocument() {
+			setDispatchPolicy(DispatchPolicy.keyed(message -> TextDocuments.getUri(message)));
+			return this;
+		}
+		
+		@Override
+		protected MessageConsumer createInboundConsumer(RemoteEndpoint remoteEndpoint, ExecutorService execService) {
+			MessageConsumer result = super.createInboundConsumer(remoteEndpoint, execService);
+			if (staleRequestMethods != null) {
+				result = new StaleRequestCanceller(result, remoteEndpoint, staleRequestMethods);
+			}
+			return result;
+		}
+		
+		@Override
+		protected Endpoint createLocalEndpoint() {
+			Endpoint result = super.createLocalEndpoint();
+			if (cachedResponseMethods != null) {
+				result = new DocumentResponseCache(result, cachedResponseMethods);
+			}
+			return result;
+		}
+		
 	}
 
 }
@@ -0,0 +1,206 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.launch;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.jsonrpc.JsonRpcException;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.MessageIssueException;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.eclipse.lsp4j.util.TextDocuments;
+
+/**
+ * A message consumer that cancels requests whose result would be outdated because the document they refer to
+ * has changed. It tracks the latest version of each document from {@code textDocument/didOpen} and
+ * {@code textDocument/didChange} notifications, and remembers the requests received for the current version.
+ * When a newer version arrives, all remembered requests for the document are cancelled with
+ * {@link RemoteEndpoint#cancelReceivedRequest(String, ResponseError)}, which answers them with a
+ * {@link ResponseErrorCode#ContentModified ContentModified} error. Requests that are still queued are answered
+ * without invoking the language server, and requests that are being handled see their future cancelled.
+ * Closing a document cancels its requests as well. Requests are forgotten as soon as they have been answered.
+ *
+ * <p>
+ * This consumer must receive the messages in the order they are read from the input stream, i.e. it must be
+ * placed before any queue. Use {@link LSPLauncher.Builder#cancelStaleRequests(Collection)} to install it.
+ */
+public class StaleRequestCanceller implements MessageConsumer {
+
+	/**
+	 * The requests cancelled by default: their results refer to positions or tokens of a specific document version.
+	 */
+	public static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"textDocument/hover",
+			"textDocument/completion",
+			"textDocument/signatureHelp",
+			"textDocument/documentHighlight",
+			"textDocument/codeLens",
+			"textDocument/semanticTokens/full",
+			"textDocument/semanticTokens/full/delta",
+			"textDocument/semanticTokens/range")));
+
+	private static final String DID_OPEN_METHOD = "textDocument/didOpen";
+	private static final String DID_CHANGE_METHOD = "textDocument/didChange";
+	private static final String DID_CLOSE_METHOD = "textDocument/didClose";
+
+	private final MessageConsumer delegate;
+	private final RemoteEndpoint remoteEndpoint;
+	private final Set<String> methods;
+
+	private final Map<String, Integer> versions = new HashMap<>();
+	/** The ids of the unanswered requests for each document */
+	private final Map<String, Set<String>> requests = new HashMap<>();
+	/** The document of each unanswered request */
+	private final Map<String, String> requestUris = new HashMap<>();
+
+	public StaleRequestCanceller(MessageConsumer delegate, RemoteEndpoint remoteEndpoint) {
+		this(delegate, remoteEndpoint, DEFAULT_METHODS);
+	}
+
+	/**
+	 * @param delegate - the consumer that handles the messages
+	 * @param remoteEndpoint - the endpoint that answers the cancelled requests
+	 * @param methods - the methods of the requests that are cancelled when their document changes
+	 */
+	public StaleRequestCanceller(MessageConsumer delegate, RemoteEndpoint remoteEndpoint, Collection<String> methods) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		if (remoteEndpoint == null)
+			throw new NullPointerException("remoteEndpoint");
+		if (methods == null)
+			throw new NullPointerException("methods");
+		this.delegate = delegate;
+		this.remoteEndpoint = remoteEndpoint;
+		this.methods = new HashSet<>(methods);
+		remoteEndpoint.addResponseListener(this::responseSent);
+	}
+
+	@Override
+	public void consume(Message message) throws MessageIssueException, JsonRpcException {
+		if (message instanceof RequestMessage) {
+			RequestMessage request = (RequestMessage) message;
+			if (methods.contains(request.getMethod())) {
+				String uri = TextDocuments.getUri(request.getParams());
+				if (uri != null) {
+					synchronized (this) {
+						requests.computeIfAbsent(uri, k -> new LinkedHashSet<>()).add(request.getId());
+						requestUris.put(request.getId(), uri);
+					}
+				}
+			}
+		} else if (message instanceof NotificationMessage) {
+			NotificationMessage notification = (NotificationMessage) message;
+			Object params = notification.getParams();
+			if (DID_CHANGE_METHOD.equals(notification.getMethod()) && params instanceof DidChangeTextDocumentParams) {
+				DidChangeTextDocumentParams didChange = (DidChangeTextDocumentParams) params;
+				if (didChange.getTextDocument() != null)
+					documentChanged(didChange.getTextDocument().getUri(), didChange.getTextDocument().getVersion());
+			} else if (DID_OPEN_METHOD.equals(notification.getMethod()) && params instanceof DidOpenTextDocumentParams) {
+				DidOpenTextDocumentParams didOpen = (DidOpenTextDocumentParams) params;
+				if (didOpen.getTextDocument() != null)
+					documentChanged(didOpen.getTextDocument().getUri(), didOpen.getTextDocument().getVersion());
+			} else if (DID_CLOSE_METHOD.equals(notification.getMethod())) {
+				String uri = TextDocuments.getUri(params);
+				if (uri != null)
+					documentClosed(uri);
+			}
+		}
+		delegate.consume(message);
+	}
+
+	/**
+	 * Returns the number of remembered requests, i.e. requests that have not been answered yet.
+	 */
+	public synchronized int getPendingRequestCount() {
+		return requestUris.size();
+	}
+
+	/**
+	 * Returns the latest version of the given document, or {@code null} if it is not known.
+	 */
+	public synchronized Integer getVersion(String uri) {
+		return versions.get(uri);
+	}
+
+	/**
+	 * Forget the request that has been answered with the given response.
+	 */
+	protected synchronized void responseSent(ResponseMessage response) {
+		String uri = requestUris.remove(response.getId());
+		if (uri != null) {
+			Set<String> documentRequests = requests.get(uri);
+			if (documentRequests != null && documentRequests.remove(response.getId()) && documentRequests.isEmpty())
+				requests.remove(uri);
+		}
+	}
+
+	/**
+	 * Cancel all remembered requests for the given document, which has changed to the given version.
+	 */
+	protected void documentChanged(String uri, Integer version) {
+		Set<String> staleRequests;
+		synchronized (this) {
+			versions.put(uri, version);
+			staleRequests = removeRequests(uri);
+		}
+		cancel(staleRequests, createError(uri, version != null
+				? "The document '" + uri + "' has been modified (version " + version + ")."
+				: "The document '" + uri + "' has been modified."));
+	}
+
+	/**
+	 * Cancel all remembered requests for the given document, which has been closed.
+	 */
+	protected void documentClosed(String uri) {
+		Set<String> staleRequests;
+		synchronized (this) {
+			versions.remove(uri);
+			staleRequests = removeRequests(uri);
+		}
+		cancel(staleRequests, createError(uri, "The document '" + uri + "' has been closed."));
+	}
+
+	private Set<String> removeRequests(String uri) {
+		Set<String> documentRequests = requests.remove(uri);
+		if (documentRequests != null)
+			requestUris.keySet().removeAll(documentRequests);
+		return documentRequests;
+	}
+
+	private void cancel(Set<String> staleRequests, ResponseError error) {
+		if (staleRequests != null) {
+			for (String id : staleRequests) {
+				remoteEndpoint.cancelReceivedRequest(id, error);
+			}
+		}
+	}
+
+	protected ResponseError createError(String uri, String message) {
+		return new ResponseError(ResponseErrorCode.ContentModified, message, null);
+	}
+
+}
@@ -89,10 +89,12 @@ import org.eclipse.lsp4j.adapters.DocumentSymbolResponseAdapter;
 import org.eclipse.lsp4j.adapters.LocationLinkListAdapter;
 import org.eclipse.lsp4j.adapters.PrepareRenameResponseAdapter;
 import org.eclipse.lsp4j.adapters.SemanticTokensFullDeltaResponseAdapter;
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
 import org.eclipse.lsp4j.jsonrpc.json.ResponseJsonAdapter;
 import org.eclipse.lsp4j.jsonrpc.messages.Either;
 import org.eclipse.lsp4j.jsonrpc.services.JsonNotification;
 import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequestPriority;
 import org.eclipse.lsp4j.jsonrpc.services.JsonSegment;
 
 @JsonSegment("textDocument")
@@ -206,6 +208,7 @@ public interface TextDocumentService {
 	 * Registration Options: TextDocumentRegistrationOptions
 	 */
 	@JsonRequest
+	@JsonRequestPriority(RequestPriority.BACKGROUND)
 	default CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
 		throw new UnsupportedOperationException();
 	}
@@ -539,6 +542,7 @@ public interface TextDocumentService {
 	 * Since 3.16.0
 	*/
 	@JsonRequest(value="callHierarchy/incomingCalls", useSegment = false)
+	@JsonRequestPriority(RequestPriority.BACKGROUND)
 	default CompletableFuture<List<CallHierarchyIncomingCall>> callHierarchyIncomingCalls(CallHierarchyIncomingCallsParams params) {
 		throw new UnsupportedOperationException();
 	}
@@ -551,6 +555,7 @@ public interface TextDocumentService {
 	* Since 3.16.0
 	*/
 	@JsonRequest(value="callHierarchy/outgoingCalls", useSegment = false)
+	@JsonRequestPriority(RequestPriority.BACKGROUND)
 	default CompletableFuture<List<CallHierarchyOutgoingCall>> callHierarchyOutgoingCalls(CallHierarchyOutgoingCallsParams params) {
 		throw new UnsupportedOperationException();
 	}
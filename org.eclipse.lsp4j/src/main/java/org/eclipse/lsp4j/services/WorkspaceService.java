@@ -24,8 +24,10 @@ import org.eclipse.lsp4j.RenameFilesParams;
 import org.eclipse.lsp4j.SymbolInformation;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.jsonrpc.RequestPriority;
 import org.eclipse.lsp4j.jsonrpc.services.JsonNotification;
 import org.eclipse.lsp4j.jsonrpc.services.JsonRequest;
+import org.eclipse.lsp4j.jsonrpc.services.JsonRequestPriority;
 import org.eclipse.lsp4j.jsonrpc.services.JsonSegment;
 
 @JsonSegment("workspace")
@@ -51,6 +53,7 @@ public interface WorkspaceService {
 	 * Registration Options: void
 	 */
 	@JsonRequest
+	@JsonRequestPriority(RequestPriority.BACKGROUND)
 	default CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
 		throw new UnsupportedOperationException();
 	}
@@ -0,0 +1,184 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * Base class for lists of protocol objects that consist mainly of a {@link Range}. Instead of
+ * holding one object per element, the ranges are stored in primitive columns with each position
+ * packed into a single {@code long}. Subclasses add further columns for the remaining properties.
+ *
+ * <p>
+ * Elements returned by {@link #get(int)} are created on demand, so changing them does not affect
+ * the list. Use {@link #set(int, Object)} to replace an element.
+ */
+public abstract class AbstractCompactRangeList<E> extends AbstractList<E> implements RandomAccess {
+
+	private static final int DEFAULT_CAPACITY = 10;
+
+	private long[] starts;
+	private long[] ends;
+	private int size;
+
+	protected AbstractCompactRangeList(int initialCapacity) {
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		this.starts = new long[initialCapacity];
+		this.ends = new long[initialCapacity];
+	}
+
+	/**
+	 * Pack a line and character offset into a single value. Packed positions have the same order
+	 * as the positions they represent.
+	 */
+	public static long pack(int line, int character) {
+		return ((long) line << 32) | (character & 0xFFFFFFFFL);
+	}
+
+	public static long pack(Position position) {
+		return pack(position.getLine(), position.getCharacter());
+	}
+
+	public static int line(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	public static int character(long packed) {
+		return (int) packed;
+	}
+
+	public static Position toPosition(long packed) {
+		return new Position(line(packed), character(packed));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public long getStart(int index) {
+		checkIndex(index);
+		return starts[index];
+	}
+
+	public long getEnd(int index) {
+		checkIndex(index);
+		return ends[index];
+	}
+
+	public int getStartLine(int index) {
+		return line(getStart(index));
+	}
+
+	public int getStartCharacter(int index) {
+		return character(getStart(index));
+	}
+
+	public int getEndLine(int index) {
+		return line(getEnd(index));
+	}
+
+	public int getEndCharacter(int index) {
+		return character(getEnd(index));
+	}
+
+	/**
+	 * Create a new {@link Range} for the element at the given index.
+	 */
+	public Range getRange(int index) {
+		checkIndex(index);
+		return new Range(toPosition(starts[index]), toPosition(ends[index]));
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		size = 0;
+		clearColumns();
+	}
+
+	@Override
+	public E remove(int index) {
+		E result = get(index);
+		int moved = size - index - 1;
+		if (moved > 0) {
+			System.arraycopy(starts, index + 1, starts, index, moved);
+			System.arraycopy(ends, index + 1, ends, index, moved);
+		}
+		removeColumns(index, moved);
+		size--;
+		modCount++;
+		return result;
+	}
+
+	/**
+	 * Insert a range at the given index and make room in the subclass columns.
+	 */
+	protected void insertRange(int index, long start, long end) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		if (size == starts.length) {
+			int newCapacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+			starts = Arrays.copyOf(starts, newCapacity);
+			ends = Arrays.copyOf(ends, newCapacity);
+			growColumns(newCapacity);
+		}
+		int moved = size - index;
+		if (moved > 0) {
+			System.arraycopy(starts, index, starts, index + 1, moved);
+			System.arraycopy(ends, index, ends, index + 1, moved);
+		}
+		insertColumns(index, moved);
+		starts[index] = start;
+		ends[index] = end;
+		size++;
+		modCount++;
+	}
+
+	protected void setRange(int index, long start, long end) {
+		checkIndex(index);
+		starts[index] = start;
+		ends[index] = end;
+	}
+
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	/**
+	 * Grow the subclass columns to the given capacity.
+	 */
+	protected abstract void growColumns(int capacity);
+
+	/**
+	 * Shift the given number of elements of the subclass columns starting at {@code index} by one to the right.
+	 */
+	protected abstract void insertColumns(int index, int moved);
+
+	/**
+	 * Shift the given number of elements of the subclass columns starting at {@code index + 1} by one to the left.
+	 */
+	protected abstract void removeColumns(int index, int moved);
+
+	/**
+	 * Release references held by the subclass columns.
+	 */
+	protected abstract void clearColumns();
+
+}
@@ -0,0 +1,320 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.ApplyWorkspaceEditParams;
+import org.eclipse.lsp4j.ApplyWorkspaceEditResponse;
+import org.eclipse.lsp4j.ConfigurationItem;
+import org.eclipse.lsp4j.ConfigurationParams;
+import org.eclipse.lsp4j.LogTraceParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.ProgressParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Registration;
+import org.eclipse.lsp4j.RegistrationParams;
+import org.eclipse.lsp4j.SetTraceParams;
+import org.eclipse.lsp4j.ShowDocumentParams;
+import org.eclipse.lsp4j.ShowDocumentResult;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.UnregistrationParams;
+import org.eclipse.lsp4j.WorkDoneProgressCreateParams;
+import org.eclipse.lsp4j.WorkspaceFolder;
+import org.eclipse.lsp4j.jsonrpc.CancellationToken;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * A language client that forwards all calls to another client, usually the remote proxy of a language server,
+ * and caches the results of {@code workspace/configuration} requests by scope URI and section.
+ *
+ * <p>
+ * At most one {@code workspace/configuration} request is sent at a time. Items that are neither cached nor
+ * already requested are collected while a request is in progress and sent together in the next request, so
+ * concurrent lookups share round trips. Identical items of concurrent lookups are requested only once.
+ *
+ * <p>
+ * The client notifies the server of configuration changes with {@code workspace/didChangeConfiguration}; the
+ * server must call {@link #invalidate()} from its
+ * {@link org.eclipse.lsp4j.services.WorkspaceService#didChangeConfiguration(org.eclipse.lsp4j.DidChangeConfigurationParams)
+ * didChangeConfiguration} method. Clients that support dynamic registration only send the notification after
+ * {@link #registerForConfigurationChanges()}. Cached values are shared between lookups, so they must not be
+ * modified. Failed requests are not cached. This class is thread-safe.
+ *
+ * <p>
+ * Only the methods of {@link LanguageClient} are forwarded. If the delegate is a proxy that also implements
+ * extensions of the protocol, cast the {@linkplain #getDelegate() delegate} to call them instead of this client.
+ */
+public class CachingLanguageClient implements LanguageClient {
+
+	public static final String DID_CHANGE_CONFIGURATION_METHOD = "workspace/didChangeConfiguration";
+
+	private static class ConfigurationKey {
+		final String scopeUri;
+		final String section;
+
+		ConfigurationKey(ConfigurationItem item) {
+			this.scopeUri = item.getScopeUri();
+			this.section = item.getSection();
+		}
+
+		ConfigurationItem toItem() {
+			ConfigurationItem item = new ConfigurationItem();
+			item.setScopeUri(scopeUri);
+			item.setSection(section);
+			return item;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConfigurationKey))
+				return false;
+			ConfigurationKey other = (ConfigurationKey) obj;
+			return Objects.equals(scopeUri, other.scopeUri) && Objects.equals(section, other.section);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(scopeUri, section);
+		}
+	}
+
+	private final LanguageClient delegate;
+
+	/** The cached and requested values, guarded by this map */
+	private final Map<ConfigurationKey, CompletableFuture<Object>> values = new HashMap<>();
+	/** The items waiting for the next request, guarded by the map of values */
+	private LinkedHashMap<ConfigurationKey, CompletableFuture<Object>> nextBatch = new LinkedHashMap<>();
+	/** Guarded by the map of values */
+	private boolean requesting;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	public CachingLanguageClient(LanguageClient delegate) {
+		if (delegate == null)
+			throw new NullPointerException("delegate");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Returns the client calls are forwarded to.
+	 */
+	public LanguageClient getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public CompletableFuture<List<Object>> configuration(ConfigurationParams configurationParams) {
+		List<ConfigurationItem> items = configurationParams.getItems();
+		List<CompletableFuture<Object>> results = new ArrayList<>(items.size());
+		boolean send = false;
+		synchronized (values) {
+			for (ConfigurationItem item : items) {
+				ConfigurationKey key = new ConfigurationKey(item);
+				CompletableFuture<Object> value = values.get(key);
+				if (value != null) {
+					hitCount.incrementAndGet();
+				} else {
+					value = new CompletableFuture<>();
+					values.put(key, value);
+					nextBatch.put(key, value);
+				}
+				results.add(value);
+			}
+			if (!requesting && !nextBatch.isEmpty()) {
+				requesting = true;
+				send = true;
+			}
+		}
+		if (send)
+			sendNextBatch();
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()])).thenApply(v -> {
+			List<Object> result = new ArrayList<>(results.size());
+			for (CompletableFuture<Object> value : results) {
+				result.add(value.join());
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Send a request for the items collected so far. Must only be called by the thread that has set the
+	 * {@code requesting} flag.
+	 */
+	@SuppressWarnings("try")
+	private void sendNextBatch() {
+		Map<ConfigurationKey, CompletableFuture<Object>> batch;
+		synchronized (values) {
+			if (nextBatch.isEmpty()) {
+				requesting = false;
+				return;
+			}
+			batch = nextBatch;
+			nextBatch = new LinkedHashMap<>();
+		}
+		List<ConfigurationItem> items = new ArrayList<>(batch.size());
+		for (ConfigurationKey key : batch.keySet()) {
+			items.add(key.toItem());
+		}
+		requestCount.incrementAndGet();
+		CompletableFuture<List<Object>> response;
+		// The request is shared by concurrent lookups, so it must not be cancelled together with the caller's request
+		try (CancellationToken.Scope scope = new CancellationToken().enter()) {
+			response = delegate.configuration(new ConfigurationParams(items));
+		} catch (RuntimeException exception) {
+			response = new CompletableFuture<>();
+			response.completeExceptionally(exception);
+		}
+		response.whenComplete((result, throwable) -> {
+			int index = 0;
+			for (Map.Entry<ConfigurationKey, CompletableFuture<Object>> entry : batch.entrySet()) {
+				if (throwable != null) {
+					synchronized (values) {
+						values.remove(entry.getKey(), entry.getValue());
+					}
+					entry.getValue().completeExceptionally(throwable);
+				} else {
+					entry.getValue().complete(result != null && index < result.size() ? result.get(index) : null);
+				}
+				index++;
+			}
+			sendNextBatch();
+		});
+	}
+
+	/**
+	 * Drop all cached configuration values. Values that are being requested are delivered to the lookups that
+	 * requested them, but not cached.
+	 */
+	public void invalidate() {
+		synchronized (values) {
+			values.clear();
+		}
+	}
+
+	/**
+	 * Ask the client to send {@code workspace/didChangeConfiguration} notifications by registering the
+	 * capability dynamically. The client must support dynamic registration for
+	 * {@code workspace/didChangeConfiguration}.
+	 */
+	public CompletableFuture<Void> registerForConfigurationChanges() {
+		Registration registration = new Registration(UUID.randomUUID().toString(), DID_CHANGE_CONFIGURATION_METHOD);
+		return delegate.registerCapability(new RegistrationParams(Collections.singletonList(registration)));
+	}
+
+	/**
+	 * Returns the number of configuration items that have been answered from the cache or by a request that was
+	 * already in progress.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of {@code workspace/configuration} requests that have been sent.
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	@Override
+	public CompletableFuture<ApplyWorkspaceEditResponse> applyEdit(ApplyWorkspaceEditParams params) {
+		return delegate.applyEdit(params);
+	}
+
+	@Override
+	public CompletableFuture<Void> registerCapability(RegistrationParams params) {
+		return delegate.registerCapability(params);
+	}
+
+	@Override
+	public CompletableFuture<Void> unregisterCapability(UnregistrationParams params) {
+		return delegate.unregisterCapability(params);
+	}
+
+	@Override
+	public void telemetryEvent(Object object) {
+		delegate.telemetryEvent(object);
+	}
+
+	@Override
+	public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		delegate.publishDiagnostics(diagnostics);
+	}
+
+	@Override
+	public void showMessage(MessageParams messageParams) {
+		delegate.showMessage(messageParams);
+	}
+
+	@Override
+	public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+		return delegate.showMessageRequest(requestParams);
+	}
+
+	@Override
+	public CompletableFuture<ShowDocumentResult> showDocument(ShowDocumentParams params) {
+		return delegate.showDocument(params);
+	}
+
+	@Override
+	public void logMessage(MessageParams message) {
+		delegate.logMessage(message);
+	}
+
+	@Override
+	public CompletableFuture<List<WorkspaceFolder>> workspaceFolders() {
+		return delegate.workspaceFolders();
+	}
+
+	@Override
+	public CompletableFuture<Void> createProgress(WorkDoneProgressCreateParams params) {
+		return delegate.createProgress(params);
+	}
+
+	@Override
+	public void notifyProgress(ProgressParams params) {
+		delegate.notifyProgress(params);
+	}
+
+	@Override
+	public void logTrace(LogTraceParams params) {
+		delegate.logTrace(params);
+	}
+
+	@Override
+	public void setTrace(SetTraceParams params) {
+		delegate.setTrace(params);
+	}
+
+	@Override
+	public CompletableFuture<Void> refreshSemanticTokens() {
+		return delegate.refreshSemanticTokens();
+	}
+
+	@Override
+	public CompletableFuture<Void> refreshCodeLenses() {
+		return delegate.refreshCodeLenses();
+	}
+
+}
@@ -0,0 +1,124 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.eclipse.lsp4j.DocumentHighlight;
+import org.eclipse.lsp4j.DocumentHighlightKind;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A memory efficient list of {@link DocumentHighlight document highlights}. Ranges are stored in primitive
+ * columns and the highlight kind is stored as a single byte per element.
+ *
+ * <p>
+ * Register the {@code CompactRangeListAdapters.Factory} in order to serialize and parse instances of this
+ * class without creating intermediate {@link DocumentHighlight} objects.
+ */
+public class CompactDocumentHighlightList extends AbstractCompactRangeList<DocumentHighlight> {
+
+	private byte[] kinds;
+
+	public CompactDocumentHighlightList() {
+		this(10);
+	}
+
+	public CompactDocumentHighlightList(int initialCapacity) {
+		super(initialCapacity);
+		this.kinds = new byte[initialCapacity];
+	}
+
+	public CompactDocumentHighlightList(Collection<? extends DocumentHighlight> highlights) {
+		this(highlights.size());
+		addAll(highlights);
+	}
+
+	/**
+	 * Append a document highlight without creating intermediate objects.
+	 *
+	 * @param kind - the highlight kind, or {@code null} if it is not specified
+	 */
+	public void add(int startLine, int startCharacter, int endLine, int endCharacter, DocumentHighlightKind kind) {
+		add(pack(startLine, startCharacter), pack(endLine, endCharacter), kind);
+	}
+
+	/**
+	 * Append a document highlight given by its packed start and end positions.
+	 *
+	 * @see AbstractCompactRangeList#pack(int, int)
+	 */
+	public void add(long start, long end, DocumentHighlightKind kind) {
+		int index = size();
+		insertRange(index, start, end);
+		kinds[index] = toByte(kind);
+	}
+
+	@Override
+	public void add(int index, DocumentHighlight highlight) {
+		Preconditions.checkNotNull(highlight, "highlight");
+		Range range = Preconditions.checkNotNull(highlight.getRange(), "range");
+		insertRange(index, pack(range.getStart()), pack(range.getEnd()));
+		kinds[index] = toByte(highlight.getKind());
+	}
+
+	@Override
+	public DocumentHighlight get(int index) {
+		return new DocumentHighlight(getRange(index), getKind(index));
+	}
+
+	@Override
+	public DocumentHighlight set(int index, DocumentHighlight highlight) {
+		Preconditions.checkNotNull(highlight, "highlight");
+		Range range = Preconditions.checkNotNull(highlight.getRange(), "range");
+		DocumentHighlight previous = get(index);
+		setRange(index, pack(range.getStart()), pack(range.getEnd()));
+		kinds[index] = toByte(highlight.getKind());
+		return previous;
+	}
+
+	/**
+	 * Returns the highlight kind of the element at the given index, or {@code null} if it is not specified.
+	 */
+	public DocumentHighlightKind getKind(int index) {
+		checkIndex(index);
+		byte kind = kinds[index];
+		return kind == 0 ? null : DocumentHighlightKind.forValue(kind);
+	}
+
+	private static byte toByte(DocumentHighlightKind kind) {
+		return kind == null ? 0 : (byte) kind.getValue();
+	}
+
+	@Override
+	protected void growColumns(int capacity) {
+		kinds = Arrays.copyOf(kinds, capacity);
+	}
+
+	@Override
+	protected void insertColumns(int index, int moved) {
+		if (moved > 0)
+			System.arraycopy(kinds, index, kinds, index + 1, moved);
+	}
+
+	@Override
+	protected void removeColumns(int index, int moved) {
+		if (moved > 0)
+			System.arraycopy(kinds, index + 1, kinds, index, moved);
+	}
+
+	@Override
+	protected void clearColumns() {
+	}
+
+}
@@ -0,0 +1,155 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A memory efficient list of {@link Location locations}, e.g. for the result of a {@code textDocument/references}
+ * request. Document URIs are stored once in a table that is shared by all elements, and ranges are stored
+ * in primitive columns.
+ *
+ * <p>
+ * Register the {@code CompactRangeListAdapters.Factory} in order to serialize and parse instances of this
+ * class without creating intermediate {@link Location} objects.
+ */
+public class CompactLocationList extends AbstractCompactRangeList<Location> {
+
+	private String[] uriTable = new String[4];
+	private int uriCount;
+	private final Map<String, Integer> uriIndex = new HashMap<>();
+	private int[] uriIds;
+
+	public CompactLocationList() {
+		this(10);
+	}
+
+	public CompactLocationList(int initialCapacity) {
+		super(initialCapacity);
+		this.uriIds = new int[initialCapacity];
+	}
+
+	public CompactLocationList(Collection<? extends Location> locations) {
+		this(locations.size());
+		addAll(locations);
+	}
+
+	/**
+	 * Append a location without creating intermediate objects.
+	 */
+	public void add(String uri, int startLine, int startCharacter, int endLine, int endCharacter) {
+		insert(size(), uri, pack(startLine, startCharacter), pack(endLine, endCharacter));
+	}
+
+	/**
+	 * Append a location given by its URI and packed start and end positions.
+	 *
+	 * @see AbstractCompactRangeList#pack(int, int)
+	 */
+	public void add(String uri, long start, long end) {
+		insert(size(), uri, start, end);
+	}
+
+	@Override
+	public void add(int index, Location location) {
+		Preconditions.checkNotNull(location, "location");
+		Range range = Preconditions.checkNotNull(location.getRange(), "range");
+		insert(index, location.getUri(), pack(range.getStart()), pack(range.getEnd()));
+	}
+
+	@Override
+	public Location get(int index) {
+		return new Location(getUri(index), getRange(index));
+	}
+
+	@Override
+	public Location set(int index, Location location) {
+		Preconditions.checkNotNull(location, "location");
+		Range range = Preconditions.checkNotNull(location.getRange(), "range");
+		String uri = Preconditions.checkNotNull(location.getUri(), "uri");
+		// Validate everything before the list is changed
+		long start = pack(range.getStart());
+		long end = pack(range.getEnd());
+		Location previous = get(index);
+		setRange(index, start, end);
+		uriIds[index] = uriId(uri);
+		return previous;
+	}
+
+	public String getUri(int index) {
+		checkIndex(index);
+		return uriTable[uriIds[index]];
+	}
+
+	/**
+	 * Returns the index of the element's URI in the {@link #getUriTable() URI table}.
+	 */
+	public int getUriId(int index) {
+		checkIndex(index);
+		return uriIds[index];
+	}
+
+	/**
+	 * Returns a copy of the URI table. The table may contain URIs that are no longer used by any element.
+	 */
+	public String[] getUriTable() {
+		return Arrays.copyOf(uriTable, uriCount);
+	}
+
+	private void insert(int index, String uri, long start, long end) {
+		int uriId = uriId(Preconditions.checkNotNull(uri, "uri"));
+		insertRange(index, start, end);
+		uriIds[index] = uriId;
+	}
+
+	private int uriId(String uri) {
+		Integer id = uriIndex.get(uri);
+		if (id != null)
+			return id;
+		if (uriCount == uriTable.length)
+			uriTable = Arrays.copyOf(uriTable, uriCount * 2);
+		uriTable[uriCount] = uri;
+		uriIndex.put(uri, uriCount);
+		return uriCount++;
+	}
+
+	@Override
+	protected void growColumns(int capacity) {
+		uriIds = Arrays.copyOf(uriIds, capacity);
+	}
+
+	@Override
+	protected void insertColumns(int index, int moved) {
+		if (moved > 0)
+			System.arraycopy(uriIds, index, uriIds, index + 1, moved);
+	}
+
+	@Override
+	protected void removeColumns(int index, int moved) {
+		if (moved > 0)
+			System.arraycopy(uriIds, index + 1, uriIds, index, moved);
+	}
+
+	@Override
+	protected void clearColumns() {
+		Arrays.fill(uriTable, 0, uriCount, null);
+		uriCount = 0;
+		uriIndex.clear();
+	}
+
+}
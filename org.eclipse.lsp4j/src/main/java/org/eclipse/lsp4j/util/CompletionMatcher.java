@@ -0,0 +1,238 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.lsp4j.CompletionItem;
+
+/**
+ * Filters and ranks a fixed list of {@link CompletionItem completion items} against the prefix typed by the
+ * user, with fuzzy matching semantics similar to the ones of VS Code: the characters of the prefix must occur
+ * in the {@link CompletionItem#getFilterText() filter text} (or the label) in the same order, ignoring case,
+ * and the first character must match at a strong position, i.e. the start of the word, a camel hump or the
+ * start of a word after a separator. Matches at such positions, matches in the common prefix and matches with
+ * the same case score higher.
+ *
+ * <p>
+ * When the prefix is extended, only the items that matched the previous prefix are scored again. Scoring
+ * reuses buffers of the matcher, so no objects are created per item apart from the {@code sortText} of the
+ * matching items. The {@code sortText} is overwritten with the rank of each item, so the client keeps the
+ * order computed here; ties are broken by the original {@code sortText} and the label.
+ *
+ * <p>
+ * A matcher is meant to serve the completion requests of one completion session and is not thread-safe.
+ */
+public class CompletionMatcher {
+
+	/**
+	 * The score of a word that does not match.
+	 */
+	public static final int NO_MATCH = Integer.MIN_VALUE;
+
+	private static final int NONE = Integer.MIN_VALUE / 2;
+
+	private final List<CompletionItem> items;
+	private final String[] words;
+	private final int[] tieBreakRanks;
+	private final int[] itemsByRank;
+
+	private String lastPrefix;
+	private int[] lastMatches;
+	private int lastMatchCount;
+
+	private int[] scores;
+	private int[] previousRow = new int[32];
+	private int[] currentRow = new int[32];
+	private long[] sortKeys;
+
+	public CompletionMatcher(List<CompletionItem> items) {
+		Preconditions.checkNotNull(items, "items");
+		this.items = new ArrayList<>(items);
+		int size = this.items.size();
+		this.words = new String[size];
+		String[] originalSortTexts = new String[size];
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			CompletionItem item = this.items.get(i);
+			String word = item.getFilterText() != null ? item.getFilterText() : item.getLabel();
+			words[i] = word == null ? "" : word;
+			originalSortTexts[i] = item.getSortText() != null ? item.getSortText() : item.getLabel();
+			order[i] = i;
+		}
+		Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+		Arrays.sort(order, (a, b) -> {
+			int result = nullsFirst.compare(originalSortTexts[a], originalSortTexts[b]);
+			return result != 0 ? result : nullsFirst.compare(this.items.get(a).getLabel(), this.items.get(b).getLabel());
+		});
+		this.tieBreakRanks = new int[size];
+		this.itemsByRank = new int[size];
+		for (int rank = 0; rank < size; rank++) {
+			tieBreakRanks[order[rank]] = rank;
+			itemsByRank[rank] = order[rank];
+		}
+		this.scores = new int[size];
+		this.sortKeys = new long[size];
+	}
+
+	/**
+	 * Returns the items that match the given prefix, best matches first, and sets their {@code sortText}
+	 * according to that order.
+	 */
+	public List<CompletionItem> match(String prefix) {
+		Preconditions.checkNotNull(prefix, "prefix");
+		int[] candidates;
+		int candidateCount;
+		if (lastPrefix != null && prefix.startsWith(lastPrefix)) {
+			candidates = lastMatches;
+			candidateCount = lastMatchCount;
+		} else {
+			candidates = null;
+			candidateCount = items.size();
+		}
+		int[] matches = new int[candidateCount];
+		int matchCount = 0;
+		for (int i = 0; i < candidateCount; i++) {
+			int index = candidates == null ? i : candidates[i];
+			int score = score(prefix, words[index]);
+			if (score != NO_MATCH) {
+				scores[index] = score;
+				matches[matchCount++] = index;
+			}
+		}
+		lastPrefix = prefix;
+		lastMatches = matches;
+		lastMatchCount = matchCount;
+
+		// Sort by descending score, then by the original order, without boxing
+		for (int i = 0; i < matchCount; i++) {
+			int index = matches[i];
+			sortKeys[i] = (long) (Integer.MAX_VALUE - scores[index]) << 32 | tieBreakRanks[index];
+		}
+		Arrays.sort(sortKeys, 0, matchCount);
+		int width = Integer.toString(Math.max(matchCount - 1, 0)).length();
+		List<CompletionItem> result = new ArrayList<>(matchCount);
+		for (int i = 0; i < matchCount; i++) {
+			CompletionItem item = items.get(itemsByRank[(int) sortKeys[i]]);
+			item.setSortText(pad(i, width));
+			result.add(item);
+		}
+		return result;
+	}
+
+	private static String pad(int number, int width) {
+		String digits = Integer.toString(number);
+		if (digits.length() == width)
+			return digits;
+		char[] chars = new char[width];
+		Arrays.fill(chars, 0, width - digits.length(), '0');
+		digits.getChars(0, digits.length(), chars, width - digits.length());
+		return new String(chars);
+	}
+
+	/**
+	 * Score how well the word matches the pattern. Higher scores are better matches.
+	 *
+	 * @return the score, or {@link #NO_MATCH} if the word does not match the pattern
+	 */
+	public int score(String pattern, String word) {
+		int patternLength = pattern.length();
+		int wordLength = word.length();
+		if (patternLength == 0)
+			return 0;
+		if (patternLength > wordLength || !isSubsequence(pattern, word))
+			return NO_MATCH;
+		if (previousRow.length < wordLength) {
+			previousRow = new int[Math.max(wordLength, previousRow.length * 2)];
+			currentRow = new int[previousRow.length];
+		}
+		int[] previous = previousRow;
+		int[] current = currentRow;
+		for (int i = 0; i < patternLength; i++) {
+			char patternChar = pattern.charAt(i);
+			char patternLower = Character.toLowerCase(patternChar);
+			// The best score of the previous row strictly before the column preceding j
+			int bestBefore = NONE;
+			for (int j = 0; j < wordLength; j++) {
+				if (i > 0 && j >= 2)
+					bestBefore = Math.max(bestBefore, previous[j - 2]);
+				char wordChar = word.charAt(j);
+				if (j < i || Character.toLowerCase(wordChar) != patternLower) {
+					current[j] = NONE;
+					continue;
+				}
+				int charScore = charScore(patternChar, i, word, j);
+				if (i == 0) {
+					// The first character must match at a strong position
+					current[j] = charScore > 1 ? charScore : NONE;
+					continue;
+				}
+				int diagonal = previous[j - 1] == NONE ? NONE : previous[j - 1] + charScore + (charScore == 1 ? 3 : 0);
+				int gap = bestBefore == NONE ? NONE : bestBefore + charScore;
+				current[j] = Math.max(diagonal, gap);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		int best = NONE;
+		for (int j = patternLength - 1; j < wordLength; j++) {
+			best = Math.max(best, previous[j]);
+		}
+		return best == NONE ? NO_MATCH : best;
+	}
+
+	private static int charScore(char patternChar, int patternIndex, String word, int wordIndex) {
+		char wordChar = word.charAt(wordIndex);
+		int score = 1;
+		if (wordIndex == patternIndex) {
+			// Within the common prefix
+			score = patternChar == wordChar ? 7 : 5;
+		} else if (Character.isUpperCase(wordChar)
+				&& (wordIndex == 0 || !Character.isUpperCase(word.charAt(wordIndex - 1)))) {
+			score = patternChar == wordChar ? 7 : 5;
+		} else if (isSeparator(wordChar) && (wordIndex == 0 || !isSeparator(word.charAt(wordIndex - 1)))) {
+			score = 5;
+		} else if (wordIndex > 0 && (isSeparator(word.charAt(wordIndex - 1)) || Character.isWhitespace(word.charAt(wordIndex - 1)))) {
+			score = 5;
+		}
+		if (score > 1 && patternIndex == 0)
+			score += 2;
+		return score;
+	}
+
+	private static boolean isSeparator(char c) {
+		switch (c) {
+		case '_': case '-': case '.': case ' ': case '/': case '\\': case '\'': case '"': case ':': case '$': case '<': case '>': case '(': case ')': case '[': case ']': case '{': case '}':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isSubsequence(String pattern, String word) {
+		int j = 0;
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = Character.toLowerCase(pattern.charAt(i));
+			while (j < word.length() && Character.toLowerCase(word.charAt(j)) != c) {
+				j++;
+			}
+			if (j++ == word.length())
+				return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,282 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.jsonrpc.TimerWheel;
+import org.eclipse.lsp4j.services.LanguageClient;
+
+/**
+ * Sends {@code textDocument/publishDiagnostics} notifications to a language client, usually the remote proxy,
+ * at a limited rate. At most one notification per document is sent within each window; diagnostics published
+ * while a notification for the same document has been sent recently are held back, and only the latest of them
+ * is sent when the window has passed. Diagnostics that are equal to those last sent for the document are
+ * dropped. {@link #flush()} sends all held back diagnostics immediately, e.g. before the server shuts down.
+ *
+ * <p>
+ * The latest diagnostics sent for each document are remembered for the comparison until {@link #forget(String)}
+ * is called, e.g. when the document is closed. This class is thread-safe; notifications for the same document
+ * are sent in the order they have been published. Held back diagnostics are sent by an executor, by default the
+ * common fork-join pool, so writing the notification does not block the timer.
+ */
+public class DiagnosticsPublisher {
+
+	public static final long DEFAULT_WINDOW = 200;
+
+	/**
+	 * The diagnostics of a document. Guarded by itself.
+	 */
+	private static class DocumentState {
+		PublishDiagnosticsParams lastSent;
+		long lastSentTime;
+		PublishDiagnosticsParams pending;
+		TimerWheel.Timeout scheduled;
+		/** Set when the state has been removed by {@link DiagnosticsPublisher#forget(String)}. */
+		boolean removed;
+	}
+
+	private final LanguageClient client;
+	private final long window;
+	private final TimerWheel timer;
+	private final Executor executor;
+
+	private final Map<String, DocumentState> documents = new HashMap<>();
+
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong supersededCount = new AtomicLong();
+	private final AtomicLong duplicateCount = new AtomicLong();
+
+	public DiagnosticsPublisher(LanguageClient client) {
+		this(client, DEFAULT_WINDOW, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param client - the client the notifications are sent to
+	 * @param window - the minimal time between two notifications for the same document
+	 * @param unit - the unit of the window
+	 */
+	public DiagnosticsPublisher(LanguageClient client, long window, TimeUnit unit) {
+		this(client, window, unit, TimerWheel.getShared());
+	}
+
+	/**
+	 * @param client - the client the notifications are sent to
+	 * @param window - the minimal time between two notifications for the same document
+	 * @param unit - the unit of the window
+	 * @param timer - the timer used to send held back diagnostics
+	 */
+	public DiagnosticsPublisher(LanguageClient client, long window, TimeUnit unit, TimerWheel timer) {
+		this(client, window, unit, timer, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param client - the client the notifications are sent to
+	 * @param window - the minimal time between two notifications for the same document
+	 * @param unit - the unit of the window
+	 * @param timer - the timer that signals when held back diagnostics are due
+	 * @param executor - the executor that sends held back diagnostics
+	 */
+	public DiagnosticsPublisher(LanguageClient client, long window, TimeUnit unit, TimerWheel timer, Executor executor) {
+		if (client == null)
+			throw new NullPointerException("client");
+		if (unit == null)
+			throw new NullPointerException("unit");
+		if (timer == null)
+			throw new NullPointerException("timer");
+		if (executor == null)
+			throw new NullPointerException("executor");
+		if (window < 0)
+			throw new IllegalArgumentException("window must not be negative.");
+		this.client = client;
+		this.window = unit.toNanos(window);
+		this.timer = timer;
+		this.executor = executor;
+	}
+
+	/**
+	 * Publish the given diagnostics. They are sent right away if no notification has been sent for the document
+	 * within the window, and otherwise when the window has passed unless newer diagnostics are published before.
+	 */
+	public void publish(PublishDiagnosticsParams params) {
+		Preconditions.checkNotNull(params, "params");
+		Preconditions.checkNotNull(params.getUri(), "uri");
+		while (!publish(params, getOrCreateState(params.getUri()))) {
+			// The document has been forgotten after its state was looked up, so publish to a new state
+		}
+	}
+
+	private DocumentState getOrCreateState(String uri) {
+		synchronized (documents) {
+			return documents.computeIfAbsent(uri, key -> new DocumentState());
+		}
+	}
+
+	/**
+	 * Publish the diagnostics to the given state, or return {@code false} if the state has been removed.
+	 */
+	private boolean publish(PublishDiagnosticsParams params, DocumentState state) {
+		synchronized (state) {
+			if (state.removed)
+				return false;
+			if (state.pending != null) {
+				supersededCount.incrementAndGet();
+				state.pending = null;
+			}
+			if (params.equals(state.lastSent)) {
+				duplicateCount.incrementAndGet();
+				if (state.scheduled != null) {
+					state.scheduled.cancel();
+					state.scheduled = null;
+				}
+				return true;
+			}
+			long delay = state.lastSent == null ? 0 : state.lastSentTime + window - System.nanoTime();
+			if (delay <= 0) {
+				send(state, params);
+			} else {
+				state.pending = params;
+				if (state.scheduled == null)
+					schedule(state, delay);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Send the held back diagnostics of the given document when the delay has passed. The timer task only hands
+	 * the send off to the executor.
+	 */
+	private void schedule(DocumentState state, long delay) {
+		state.scheduled = timer.schedule(() -> executor.execute(() -> sendDue(state)), delay, TimeUnit.NANOSECONDS);
+	}
+
+	private void sendDue(DocumentState state) {
+		synchronized (state) {
+			state.scheduled = null;
+			if (state.pending == null)
+				return;
+			// Diagnostics may have been sent while this task was waiting for the executor
+			long delay = state.lastSentTime + window - System.nanoTime();
+			if (delay > 0) {
+				schedule(state, delay);
+			} else {
+				PublishDiagnosticsParams pending = state.pending;
+				state.pending = null;
+				send(state, pending);
+			}
+		}
+	}
+
+	private void sendPending(DocumentState state) {
+		synchronized (state) {
+			state.scheduled = null;
+			if (state.pending != null) {
+				PublishDiagnosticsParams pending = state.pending;
+				state.pending = null;
+				send(state, pending);
+			}
+		}
+	}
+
+	/**
+	 * Send the diagnostics while holding the lock of the document state, so notifications for the same document
+	 * cannot overtake each other.
+	 */
+	private void send(DocumentState state, PublishDiagnosticsParams params) {
+		if (state.scheduled != null) {
+			state.scheduled.cancel();
+			state.scheduled = null;
+		}
+		state.lastSent = params;
+		state.lastSentTime = System.nanoTime();
+		sentCount.incrementAndGet();
+		client.publishDiagnostics(params);
+	}
+
+	/**
+	 * Send the held back diagnostics of the given document immediately.
+	 */
+	public void flush(String uri) {
+		DocumentState state;
+		synchronized (documents) {
+			state = documents.get(uri);
+		}
+		if (state != null)
+			sendPending(state);
+	}
+
+	/**
+	 * Send the held back diagnostics of all documents immediately.
+	 */
+	public void flush() {
+		List<DocumentState> states;
+		synchronized (documents) {
+			states = new ArrayList<>(documents.values());
+		}
+		for (DocumentState state : states) {
+			sendPending(state);
+		}
+	}
+
+	/**
+	 * Forget the diagnostics of the given document, discarding held back diagnostics. The next diagnostics
+	 * published for the document are sent right away.
+	 */
+	public void forget(String uri) {
+		DocumentState state;
+		synchronized (documents) {
+			state = documents.remove(uri);
+		}
+		if (state != null) {
+			synchronized (state) {
+				state.removed = true;
+				state.pending = null;
+				if (state.scheduled != null) {
+					state.scheduled.cancel();
+					state.scheduled = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of notifications that have been sent.
+	 */
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	/**
+	 * Returns the number of held back diagnostics that have been replaced by newer ones before they were sent.
+	 */
+	public long getSupersededCount() {
+		return supersededCount.get();
+	}
+
+	/**
+	 * Returns the number of diagnostics that have been dropped because they were equal to the diagnostics last
+	 * sent for the document.
+	 */
+	public long getDuplicateCount() {
+		return duplicateCount.get();
+	}
+
+}
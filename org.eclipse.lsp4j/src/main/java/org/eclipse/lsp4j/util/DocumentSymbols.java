@@ -12,7 +12,10 @@
 package org.eclipse.lsp4j.util;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 
 import org.eclipse.lsp4j.DocumentSymbol;
@@ -35,6 +38,32 @@ public final class DocumentSymbols {
 		return new DocumentSymbolIterator(documentSymbol);
 	}
 
+	/**
+	 * Returns a {@link RangeTree range tree} over the given {@link DocumentSymbol document symbols} and all
+	 * their descendants, keyed by the {@link DocumentSymbol#getRange() range} of each symbol. Use
+	 * {@link RangeTree#findContaining(org.eclipse.lsp4j.Position)} to find the symbols enclosing a position,
+	 * outermost first, instead of traversing the hierarchy for every request.
+	 */
+	public static RangeTree<DocumentSymbol> asRangeTree(Iterable<DocumentSymbol> documentSymbols) {
+		Preconditions.checkNotNull(documentSymbols, "documentSymbols");
+		List<DocumentSymbol> flattened = new ArrayList<>();
+		Deque<DocumentSymbol> stack = new ArrayDeque<>();
+		for (DocumentSymbol documentSymbol : documentSymbols) {
+			stack.push(documentSymbol);
+		}
+		while (!stack.isEmpty()) {
+			DocumentSymbol symbol = stack.pop();
+			flattened.add(symbol);
+			List<DocumentSymbol> children = symbol.getChildren();
+			if (children != null) {
+				for (DocumentSymbol child : children) {
+					stack.push(child);
+				}
+			}
+		}
+		return new RangeTree<>(flattened, DocumentSymbol::getRange);
+	}
+
 	protected static class DocumentSymbolIterator extends BreadthFirstIterator<DocumentSymbol> {
 
 		protected DocumentSymbolIterator(DocumentSymbol documentSymbol) {
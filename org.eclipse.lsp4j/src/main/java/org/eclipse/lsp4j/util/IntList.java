@@ -0,0 +1,217 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of integers that is backed by a primitive {@code int} array. It is used for large integer arrays
+ * of the protocol such as the data of {@link org.eclipse.lsp4j.SemanticTokens SemanticTokens}, where a
+ * list of boxed {@link Integer} objects would take several times the memory.
+ *
+ * <p>
+ * Prefer the primitive accessors {@link #getInt(int)}, {@link #setInt(int, int)} and {@link #addInt(int)}
+ * over the methods of the {@link List} interface, which box and unbox the elements. {@code null} elements
+ * are not supported.
+ */
+public class IntList extends AbstractList<Integer> implements RandomAccess {
+
+	private static final int[] EMPTY = new int[0];
+
+	private int[] elements;
+	private int size;
+
+	public IntList() {
+		this.elements = EMPTY;
+	}
+
+	public IntList(int initialCapacity) {
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		this.elements = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+	}
+
+	/**
+	 * Create a list containing a copy of the given elements.
+	 */
+	public IntList(Collection<Integer> elements) {
+		this(elements.size());
+		if (elements instanceof IntList) {
+			IntList other = (IntList) elements;
+			System.arraycopy(other.elements, 0, this.elements, 0, other.size);
+			this.size = other.size;
+		} else {
+			for (Integer element : elements) {
+				addInt(element);
+			}
+		}
+	}
+
+	/**
+	 * Create a list that uses the given array as its storage, without copying it.
+	 * The caller must not modify the array afterwards.
+	 */
+	public static IntList wrap(int[] elements) {
+		return wrap(elements, elements.length);
+	}
+
+	/**
+	 * Create a list that uses the first {@code size} elements of the given array as its storage,
+	 * without copying it. The caller must not modify the array afterwards.
+	 */
+	public static IntList wrap(int[] elements, int size) {
+		if (size < 0 || size > elements.length)
+			throw new IllegalArgumentException("Illegal size: " + size);
+		IntList result = new IntList();
+		result.elements = elements;
+		result.size = size;
+		return result;
+	}
+
+	public static IntList of(int... elements) {
+		return wrap(Arrays.copyOf(elements, elements.length));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public int getInt(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	public int setInt(int index, int element) {
+		checkIndex(index);
+		int previous = elements[index];
+		elements[index] = element;
+		return previous;
+	}
+
+	public void addInt(int element) {
+		if (size == elements.length)
+			grow(size + 1);
+		elements[size++] = element;
+		modCount++;
+	}
+
+	/**
+	 * Append the elements {@code from} (inclusive) to {@code to} (exclusive) of the given array.
+	 */
+	public void addAll(int[] source, int from, int to) {
+		int length = to - from;
+		if (from < 0 || length < 0 || to > source.length)
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + source.length);
+		if (size + length > elements.length)
+			grow(size + length);
+		System.arraycopy(source, from, elements, size, length);
+		size += length;
+		modCount++;
+	}
+
+	@Override
+	public Integer get(int index) {
+		return getInt(index);
+	}
+
+	@Override
+	public Integer set(int index, Integer element) {
+		return setInt(index, element);
+	}
+
+	@Override
+	public void add(int index, Integer element) {
+		int value = element;
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		if (size == elements.length)
+			grow(size + 1);
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = value;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Integer remove(int index) {
+		int previous = getInt(index);
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		modCount++;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Returns a copy of the elements as a primitive array.
+	 */
+	public int[] toIntArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/**
+	 * Copy the elements {@code from} (inclusive) to {@code to} (exclusive) into the given array.
+	 */
+	public void getInts(int from, int to, int[] target, int targetOffset) {
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+		System.arraycopy(elements, from, target, targetOffset, to - from);
+	}
+
+	private void grow(int minCapacity) {
+		int newCapacity = Math.max(Math.max(minCapacity, 10), elements.length + (elements.length >> 1));
+		elements = Arrays.copyOf(elements, newCapacity);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj instanceof IntList) {
+			IntList other = (IntList) obj;
+			if (size != other.size)
+				return false;
+			for (int i = 0; i < size; i++) {
+				if (elements[i] != other.elements[i])
+					return false;
+			}
+			return true;
+		}
+		return super.equals(obj);
+	}
+
+	@Override
+	public int hashCode() {
+		// Same result as List.hashCode(), but without boxing
+		int result = 1;
+		for (int i = 0; i < size; i++) {
+			result = 31 * result + elements[i];
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,471 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Arrays;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * An index of the lines of a text that converts between {@link Position}s and offsets, and between
+ * the column units of different encodings: UTF-16 code units (the unit of {@link Position#getCharacter()}
+ * unless negotiated otherwise), Unicode code points and UTF-8 bytes.
+ *
+ * <p>
+ * The start offset of every line is stored for each encoding, so finding the line of an offset is a binary
+ * search. Columns of lines that contain only ASCII characters are identical in all encodings and are converted
+ * without looking at the text. For other lines, the code point and byte counts are recorded every
+ * {@value #CHECKPOINT_INTERVAL} UTF-16 code units, so a conversion never scans more than that many characters.
+ * A checkpoint that falls between the two halves of a surrogate pair is moved to the start of the pair when a
+ * conversion resumes from it.
+ *
+ * <p>
+ * Lines are separated by {@code \n}, {@code \r\n} or {@code \r}. Columns beyond the end of a line are clamped to
+ * the end of the line. A surrogate pair counts as two UTF-16 code units, one code point and four UTF-8 bytes;
+ * an unpaired surrogate counts as one code point and three UTF-8 bytes, like its replacement character.
+ *
+ * <p>
+ * The index keeps a reference to the text it was created from, so the text must not be modified. When the
+ * document changes, the index can be updated with the new text, which rescans only the changed lines. This
+ * class is not thread-safe.
+ */
+public class LineIndex {
+
+	/**
+	 * The units in which columns and offsets are counted.
+	 */
+	public enum Encoding {
+		UTF8, UTF16, UTF32
+	}
+
+	public static final int CHECKPOINT_INTERVAL = 64;
+
+	private CharSequence text;
+	private int lineCount;
+	private int[] starts16;
+	private int[] starts32;
+	private int[] starts8;
+	/** Interleaved code point and byte counts relative to the line start, or {@code null} for ASCII lines. */
+	private int[][] checkpoints;
+
+	public LineIndex(CharSequence text) {
+		Preconditions.checkNotNull(text, "text");
+		reset(text);
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Returns the length of the text in the units of the given encoding.
+	 */
+	public int getLength(Encoding encoding) {
+		return starts(encoding)[lineCount];
+	}
+
+	/**
+	 * Returns the offset at which the given line starts, in the units of the given encoding.
+	 */
+	public int getLineStart(int line, Encoding encoding) {
+		checkLine(line);
+		return starts(encoding)[line];
+	}
+
+	/**
+	 * Returns whether the given line contains only ASCII characters, so its columns are the same in all encodings.
+	 */
+	public boolean isAscii(int line) {
+		checkLine(line);
+		return checkpoints[line] == null;
+	}
+
+	/**
+	 * Convert a column of the given line from one encoding into another.
+	 */
+	public int convertColumn(int line, int column, Encoding from, Encoding to) {
+		checkLine(line);
+		if (column < 0)
+			throw new IllegalArgumentException("Illegal column: " + column);
+		return fromUtf16Column(line, toUtf16Column(line, column, from), to);
+	}
+
+	/**
+	 * Convert a position from one encoding into another. Positions after the last line are mapped to the
+	 * end of the text.
+	 */
+	public Position convert(Position position, Encoding from, Encoding to) {
+		Preconditions.checkNotNull(position, "position");
+		int line = position.getLine();
+		if (line >= lineCount)
+			return new Position(lineCount - 1, fromUtf16Column(lineCount - 1, Integer.MAX_VALUE, to));
+		return new Position(line, convertColumn(line, position.getCharacter(), from, to));
+	}
+
+	public Range convert(Range range, Encoding from, Encoding to) {
+		Preconditions.checkNotNull(range, "range");
+		return new Range(convert(range.getStart(), from, to), convert(range.getEnd(), from, to));
+	}
+
+	/**
+	 * Convert a position whose column is given in the units of the given encoding into an offset in the
+	 * same units.
+	 */
+	public int offsetAt(Position position, Encoding encoding) {
+		Preconditions.checkNotNull(position, "position");
+		int line = position.getLine();
+		if (line < 0 || position.getCharacter() < 0)
+			throw new IllegalArgumentException("Illegal position: " + position);
+		if (line >= lineCount)
+			return starts(encoding)[lineCount];
+		return starts(encoding)[line] + convertColumn(line, position.getCharacter(), encoding, encoding);
+	}
+
+	/**
+	 * Convert an offset into a position, both in the units of the given encoding.
+	 */
+	public Position positionAt(int offset, Encoding encoding) {
+		int[] starts = starts(encoding);
+		if (offset < 0 || offset > starts[lineCount])
+			throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + starts[lineCount]);
+		int line = lineOf(starts, offset);
+		return new Position(line, offset - starts[line]);
+	}
+
+	/**
+	 * Convert an offset from one encoding into another.
+	 */
+	public int convertOffset(int offset, Encoding from, Encoding to) {
+		Position position = positionAt(offset, from);
+		int line = position.getLine();
+		return starts(to)[line] + convertColumn(line, position.getCharacter(), from, to);
+	}
+
+	/**
+	 * Update the index after the content change of a {@code textDocument/didChange} notification.
+	 * The index must still refer to the text before the change.
+	 */
+	public void update(CharSequence newText, TextDocumentContentChangeEvent change) {
+		Preconditions.checkNotNull(change, "change");
+		Range range = change.getRange();
+		if (range == null) {
+			Preconditions.checkNotNull(newText, "newText");
+			reset(newText);
+			return;
+		}
+		int start = offsetAt(range.getStart(), Encoding.UTF16);
+		int oldEnd = Math.max(start, offsetAt(range.getEnd(), Encoding.UTF16));
+		String insertedText = change.getText() == null ? "" : change.getText();
+		update(newText, start, oldEnd, start + insertedText.length());
+	}
+
+	/**
+	 * Update the index after the UTF-16 code units between {@code start} and {@code oldEnd} in the previous text
+	 * have been replaced with the code units between {@code start} and {@code newEnd} in the new text. Only the
+	 * lines touched by the change are scanned again; the start offsets of the following lines are shifted.
+	 */
+	public void update(CharSequence newText, int start, int oldEnd, int newEnd) {
+		Preconditions.checkNotNull(newText, "newText");
+		if (start < 0 || oldEnd < start || oldEnd > starts16[lineCount] || newEnd < start || newEnd > newText.length())
+			throw new IndexOutOfBoundsException("Start: " + start + ", Old end: " + oldEnd + ", New end: " + newEnd);
+		// Rescan one more line on each side, since a change can join or split a \r\n pair at a line boundary
+		int firstLine = Math.max(0, lineOf(starts16, start) - 1);
+		int lastLine = Math.min(lineCount - 1, lineOf(starts16, oldEnd) + 1);
+		int regionStart = starts16[firstLine];
+		int oldRegionEnd = starts16[lastLine + 1];
+		int newRegionEnd = oldRegionEnd + newEnd - oldEnd;
+
+		Lines lines = new Lines(lastLine - firstLine + 2);
+		scan(newText, regionStart, newRegionEnd, starts32[firstLine], starts8[firstLine], lastLine == lineCount - 1, lines);
+		int delta32 = lines.end32 - starts32[lastLine + 1];
+		int delta8 = lines.end8 - starts8[lastLine + 1];
+		int delta16 = newRegionEnd - oldRegionEnd;
+
+		int oldCount = lastLine - firstLine + 1;
+		int newLineCount = lineCount - oldCount + lines.count;
+		ensureCapacity(newLineCount + 1);
+		int tail = lineCount + 1 - (lastLine + 1);
+		int to = firstLine + lines.count;
+		System.arraycopy(starts16, lastLine + 1, starts16, to, tail);
+		System.arraycopy(starts32, lastLine + 1, starts32, to, tail);
+		System.arraycopy(starts8, lastLine + 1, starts8, to, tail);
+		System.arraycopy(checkpoints, lastLine + 1, checkpoints, to, tail);
+		for (int i = to; i <= newLineCount; i++) {
+			starts16[i] += delta16;
+			starts32[i] += delta32;
+			starts8[i] += delta8;
+		}
+		System.arraycopy(lines.starts16, 0, starts16, firstLine, lines.count);
+		System.arraycopy(lines.starts32, 0, starts32, firstLine, lines.count);
+		System.arraycopy(lines.starts8, 0, starts8, firstLine, lines.count);
+		System.arraycopy(lines.checkpoints, 0, checkpoints, firstLine, lines.count);
+		Arrays.fill(checkpoints, newLineCount + 1, checkpoints.length, null);
+		lineCount = newLineCount;
+		text = newText;
+	}
+
+	private void reset(CharSequence newText) {
+		Lines lines = new Lines(16);
+		scan(newText, 0, newText.length(), 0, 0, true, lines);
+		this.text = newText;
+		this.lineCount = lines.count;
+		this.starts16 = Arrays.copyOf(lines.starts16, lines.count + 1);
+		this.starts32 = Arrays.copyOf(lines.starts32, lines.count + 1);
+		this.starts8 = Arrays.copyOf(lines.starts8, lines.count + 1);
+		this.checkpoints = Arrays.copyOf(lines.checkpoints, lines.count + 1);
+		starts16[lineCount] = newText.length();
+		starts32[lineCount] = lines.end32;
+		starts8[lineCount] = lines.end8;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > starts16.length) {
+			int newCapacity = Math.max(capacity, starts16.length + (starts16.length >> 1));
+			starts16 = Arrays.copyOf(starts16, newCapacity);
+			starts32 = Arrays.copyOf(starts32, newCapacity);
+			starts8 = Arrays.copyOf(starts8, newCapacity);
+			checkpoints = Arrays.copyOf(checkpoints, newCapacity);
+		}
+	}
+
+	private int[] starts(Encoding encoding) {
+		switch (encoding) {
+		case UTF8:
+			return starts8;
+		case UTF16:
+			return starts16;
+		case UTF32:
+			return starts32;
+		default:
+			throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+		}
+	}
+
+	private void checkLine(int line) {
+		if (line < 0 || line >= lineCount)
+			throw new IndexOutOfBoundsException("Line: " + line + ", Line count: " + lineCount);
+	}
+
+	/**
+	 * Returns the last line that starts at or before the given offset.
+	 */
+	private int lineOf(int[] starts, int offset) {
+		int low = 0;
+		int high = lineCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= offset)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the UTF-16 offset of the end of the given line, excluding the line break.
+	 */
+	private int contentEnd(int line) {
+		int end = starts16[line + 1];
+		if (line + 1 < lineCount) {
+			char c = text.charAt(end - 1);
+			end--;
+			if (c == '\n' && end > starts16[line] && text.charAt(end - 1) == '\r')
+				end--;
+		}
+		return end;
+	}
+
+	private int toUtf16Column(int line, int column, Encoding from) {
+		int lineStart = starts16[line];
+		int lineLength = contentEnd(line) - lineStart;
+		int[] lineCheckpoints = checkpoints[line];
+		if (from == Encoding.UTF16 || lineCheckpoints == null)
+			return Math.min(column, lineLength);
+		int offset = from == Encoding.UTF32 ? 0 : 1;
+		// Find the last checkpoint that does not exceed the column
+		int low = 0;
+		int high = lineCheckpoints.length / 2 - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineCheckpoints[2 * mid + offset] <= column)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		int position = lineStart + low * CHECKPOINT_INTERVAL;
+		int count = lineCheckpoints[2 * low + offset];
+		int end = lineStart + lineLength;
+		if (position < end && isTrailingSurrogate(text, position)) {
+			// The checkpoint splits a surrogate pair, whose code point and bytes are counted before it
+			position--;
+			count -= from == Encoding.UTF32 ? 1 : 4;
+		}
+		while (position < end && count < column) {
+			int width = from == Encoding.UTF32 ? codePointWidth(text, position) : utf8Width(text, position);
+			if (count + width > column)
+				break;
+			count += width;
+			position += isSurrogatePair(text, position) ? 2 : 1;
+		}
+		return position - lineStart;
+	}
+
+	private int fromUtf16Column(int line, int column, Encoding to) {
+		int lineStart = starts16[line];
+		int lineLength = contentEnd(line) - lineStart;
+		column = Math.min(column, lineLength);
+		int[] lineCheckpoints = checkpoints[line];
+		if (to == Encoding.UTF16 || lineCheckpoints == null)
+			return column;
+		int index = Math.min(column / CHECKPOINT_INTERVAL, lineCheckpoints.length / 2 - 1);
+		int position = lineStart + index * CHECKPOINT_INTERVAL;
+		int count = lineCheckpoints[2 * index + (to == Encoding.UTF32 ? 0 : 1)];
+		int end = lineStart + column;
+		while (position < end) {
+			count += to == Encoding.UTF32 ? codePointWidth(text, position) : utf8Width(text, position);
+			position++;
+		}
+		return count;
+	}
+
+	private static boolean isSurrogatePair(CharSequence text, int index) {
+		return Character.isHighSurrogate(text.charAt(index)) && index + 1 < text.length()
+				&& Character.isLowSurrogate(text.charAt(index + 1));
+	}
+
+	private static boolean isTrailingSurrogate(CharSequence text, int index) {
+		return Character.isLowSurrogate(text.charAt(index)) && index > 0
+				&& Character.isHighSurrogate(text.charAt(index - 1));
+	}
+
+	private static int codePointWidth(CharSequence text, int index) {
+		return isTrailingSurrogate(text, index) ? 0 : 1;
+	}
+
+	private static int utf8Width(CharSequence text, int index) {
+		char c = text.charAt(index);
+		if (c < 0x80)
+			return 1;
+		if (c < 0x800)
+			return 2;
+		if (isSurrogatePair(text, index))
+			return 4;
+		if (isTrailingSurrogate(text, index))
+			return 0;
+		return 3;
+	}
+
+	/**
+	 * Scan the lines between the given offsets, which must be a line start and either a line start or the end
+	 * of the text. If {@code isLast} is set, the region includes the last line of the text, which is empty if
+	 * the text ends with a line break.
+	 */
+	private static void scan(CharSequence text, int from, int to, int start32, int start8, boolean isLast, Lines lines) {
+		int length = text.length();
+		int position = from;
+		int count32 = start32;
+		int count8 = start8;
+		int[] lineCheckpoints = new int[8];
+		while (position < to) {
+			int lineStart = position;
+			int lineStart32 = count32;
+			int lineStart8 = count8;
+			int checkpointCount = 0;
+			boolean ascii = true;
+			while (position < to) {
+				char c = text.charAt(position);
+				if (c == '\n' || c == '\r')
+					break;
+				if ((position - lineStart) % CHECKPOINT_INTERVAL == 0) {
+					if (2 * checkpointCount + 2 > lineCheckpoints.length)
+						lineCheckpoints = Arrays.copyOf(lineCheckpoints, lineCheckpoints.length * 2);
+					lineCheckpoints[2 * checkpointCount] = count32 - lineStart32;
+					lineCheckpoints[2 * checkpointCount + 1] = count8 - lineStart8;
+					checkpointCount++;
+				}
+				if (c < 0x80) {
+					count32++;
+					count8++;
+				} else {
+					ascii = false;
+					count32 += codePointWidth(text, position);
+					count8 += utf8Width(text, position);
+				}
+				position++;
+			}
+			lines.add(lineStart, lineStart32, lineStart8,
+					ascii ? null : Arrays.copyOf(lineCheckpoints, 2 * Math.max(checkpointCount, 1)));
+			if (position < to) {
+				// Skip the line break
+				if (text.charAt(position) == '\r' && position + 1 < length && text.charAt(position + 1) == '\n') {
+					position += 2;
+					count32 += 2;
+					count8 += 2;
+				} else {
+					position++;
+					count32++;
+					count8++;
+				}
+			}
+		}
+		if (isLast && (to == from || isLineBreak(text.charAt(to - 1)))) {
+			// The text ends with an empty line
+			lines.add(to, count32, count8, null);
+		}
+		lines.end32 = count32;
+		lines.end8 = count8;
+	}
+
+	private static boolean isLineBreak(char c) {
+		return c == '\n' || c == '\r';
+	}
+
+	private static class Lines {
+		int count;
+		int[] starts16;
+		int[] starts32;
+		int[] starts8;
+		int[][] checkpoints;
+		int end32;
+		int end8;
+
+		Lines(int capacity) {
+			starts16 = new int[capacity];
+			starts32 = new int[capacity];
+			starts8 = new int[capacity];
+			checkpoints = new int[capacity][];
+		}
+
+		void add(int start16, int start32, int start8, int[] lineCheckpoints) {
+			if (count == starts16.length) {
+				int newCapacity = count * 2;
+				starts16 = Arrays.copyOf(starts16, newCapacity);
+				starts32 = Arrays.copyOf(starts32, newCapacity);
+				starts8 = Arrays.copyOf(starts8, newCapacity);
+				checkpoints = Arrays.copyOf(checkpoints, newCapacity);
+			}
+			starts16[count] = start16;
+			starts32[count] = start32;
+			starts8[count] = start8;
+			checkpoints[count] = lineCheckpoints;
+			count++;
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.ClientCapabilities;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PositionEncodingKind;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.util.LineIndex.Encoding;
+
+/**
+ * Utilities for negotiating the {@link PositionEncodingKind} of a connection and for converting positions
+ * and ranges between encodings.
+ *
+ * <p>
+ * A server that works with UTF-8 internally should offer {@link PositionEncodingKind#UTF8} in
+ * {@link #negotiate(InitializeParams, String...)} and report the result in
+ * {@link ServerCapabilities#setPositionEncoding(String)}. If the client accepts it, no conversion is
+ * needed at all; otherwise the conversion methods of this class translate the positions with a
+ * {@link LineIndex} of the document.
+ */
+public final class PositionEncodings {
+
+	/**
+	 * Choose the position encoding of a connection: the first of the encodings preferred by the server that
+	 * is supported by the client, or {@link PositionEncodingKind#UTF16} if there is none. UTF-16 is always
+	 * supported, even if the client does not list it.
+	 */
+	public static String negotiate(InitializeParams params, String... serverPreferences) {
+		Preconditions.checkNotNull(params, "params");
+		return negotiate(params.getCapabilities(), serverPreferences);
+	}
+
+	/**
+	 * Choose the position encoding of a connection: the first of the encodings preferred by the server that
+	 * is supported by the client, or {@link PositionEncodingKind#UTF16} if there is none. UTF-16 is always
+	 * supported, even if the client does not list it.
+	 */
+	public static String negotiate(ClientCapabilities capabilities, String... serverPreferences) {
+		List<String> supported = null;
+		if (capabilities != null && capabilities.getGeneral() != null)
+			supported = capabilities.getGeneral().getPositionEncodings();
+		for (String preference : serverPreferences) {
+			// UTF-16 is mandatory, so every client supports it whether it lists it or not
+			if (PositionEncodingKind.UTF16.equals(preference) || supported != null && supported.contains(preference))
+				return preference;
+		}
+		return PositionEncodingKind.UTF16;
+	}
+
+	/**
+	 * Map a {@link PositionEncodingKind} to the encoding of a {@link LineIndex}. A {@code null} kind denotes
+	 * the default encoding UTF-16.
+	 *
+	 * @throws IllegalArgumentException if the kind is not known
+	 */
+	public static Encoding getEncoding(String positionEncodingKind) {
+		if (positionEncodingKind == null)
+			return Encoding.UTF16;
+		switch (positionEncodingKind) {
+		case PositionEncodingKind.UTF8:
+			return Encoding.UTF8;
+		case PositionEncodingKind.UTF16:
+			return Encoding.UTF16;
+		case PositionEncodingKind.UTF32:
+			return Encoding.UTF32;
+		default:
+			throw new IllegalArgumentException("Unknown position encoding: " + positionEncodingKind);
+		}
+	}
+
+	/**
+	 * Convert a position from one encoding into another. The position is returned as is if both encodings
+	 * are the same.
+	 */
+	public static Position convert(LineIndex index, Position position, String from, String to) {
+		Encoding fromEncoding = getEncoding(from);
+		Encoding toEncoding = getEncoding(to);
+		if (fromEncoding == toEncoding)
+			return position;
+		return index.convert(position, fromEncoding, toEncoding);
+	}
+
+	/**
+	 * Convert a range from one encoding into another. The range is returned as is if both encodings
+	 * are the same.
+	 */
+	public static Range convert(LineIndex index, Range range, String from, String to) {
+		Encoding fromEncoding = getEncoding(from);
+		Encoding toEncoding = getEncoding(to);
+		if (fromEncoding == toEncoding)
+			return range;
+		return index.convert(range, fromEncoding, toEncoding);
+	}
+
+	/**
+	 * Convert a list of ranges from one encoding into another. The list is returned as is if both encodings
+	 * are the same.
+	 */
+	public static List<Range> convertRanges(LineIndex index, List<Range> ranges, String from, String to) {
+		Encoding fromEncoding = getEncoding(from);
+		Encoding toEncoding = getEncoding(to);
+		if (fromEncoding == toEncoding)
+			return ranges;
+		List<Range> result = new ArrayList<>(ranges.size());
+		for (Range range : ranges) {
+			result.add(index.convert(range, fromEncoding, toEncoding));
+		}
+		return result;
+	}
+
+	/**
+	 * Convert the character of the given positions from one encoding into another by modifying the
+	 * positions, which avoids allocating new objects for large results. Positions on ASCII-only lines
+	 * are left untouched.
+	 */
+	public static void convertInPlace(LineIndex index, Iterable<Position> positions, String from, String to) {
+		Encoding fromEncoding = getEncoding(from);
+		Encoding toEncoding = getEncoding(to);
+		if (fromEncoding == toEncoding)
+			return;
+		int lineCount = index.getLineCount();
+		for (Position position : positions) {
+			int line = position.getLine();
+			if (line < lineCount && index.isAscii(line)) {
+				continue;
+			}
+			Position converted = index.convert(position, fromEncoding, toEncoding);
+			position.setLine(converted.getLine());
+			position.setCharacter(converted.getCharacter());
+		}
+	}
+
+	private PositionEncodings() {
+	}
+
+}
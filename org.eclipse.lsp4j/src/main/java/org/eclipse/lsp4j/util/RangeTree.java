@@ -0,0 +1,297 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * An augmented interval tree over elements that have a {@link Range}, e.g. diagnostics, code lenses, folding
+ * ranges or document symbols. It answers which elements contain a position or a range, or overlap a range,
+ * in {@code O(log n + k)} time for {@code k} results.
+ *
+ * <p>
+ * The tree is built in bulk: the elements are sorted by the start of their range, and the sorted array is
+ * used as an implicit balanced binary search tree in which every node knows the maximal end position of its
+ * subtree. Positions are packed into {@code long} values, so queries do not allocate apart from the result list.
+ * Ranges are treated as closed intervals, like in {@link Ranges#containsPosition(Range, Position)}.
+ *
+ * <p>
+ * When the document is edited, the stored ranges can be shifted with {@link #shift(Range, Position)} instead
+ * of rebuilding the tree; the ranges of the elements themselves are not modified, so the current range of
+ * an element is obtained with {@link #getRange(int)}. This class is not thread-safe.
+ */
+public class RangeTree<T> {
+
+	private final T[] elements;
+	private final long[] starts;
+	private final long[] ends;
+	private final long[] maxEnds;
+
+	/**
+	 * Build a tree from the given elements and the function that determines their range.
+	 */
+	@SuppressWarnings("unchecked")
+	public RangeTree(Collection<? extends T> elements, Function<? super T, Range> rangeFunction) {
+		Preconditions.checkNotNull(elements, "elements");
+		Preconditions.checkNotNull(rangeFunction, "rangeFunction");
+		int size = elements.size();
+		long[] unsortedStarts = new long[size];
+		long[] unsortedEnds = new long[size];
+		Object[] unsorted = elements.toArray();
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			Range range = rangeFunction.apply((T) unsorted[i]);
+			unsortedStarts[i] = AbstractCompactRangeList.pack(range.getStart());
+			unsortedEnds[i] = AbstractCompactRangeList.pack(range.getEnd());
+			order[i] = i;
+		}
+		// Enclosing ranges come before the ranges they contain
+		Arrays.sort(order, (a, b) -> {
+			int result = Long.compare(unsortedStarts[a], unsortedStarts[b]);
+			return result != 0 ? result : Long.compare(unsortedEnds[b], unsortedEnds[a]);
+		});
+		this.elements = (T[]) new Object[size];
+		this.starts = new long[size];
+		this.ends = new long[size];
+		this.maxEnds = new long[size];
+		for (int i = 0; i < size; i++) {
+			int index = order[i];
+			this.elements[i] = (T) unsorted[index];
+			this.starts[i] = unsortedStarts[index];
+			this.ends[i] = unsortedEnds[index];
+		}
+		computeMaxEnds(0, size);
+	}
+
+	/**
+	 * Build a tree from a collection of ranges.
+	 */
+	public static <R extends Range> RangeTree<R> of(Collection<R> ranges) {
+		return new RangeTree<>(ranges, Function.identity());
+	}
+
+	private long computeMaxEnds(int low, int high) {
+		if (low >= high)
+			return Long.MIN_VALUE;
+		int mid = (low + high) >>> 1;
+		long max = Math.max(ends[mid], Math.max(computeMaxEnds(low, mid), computeMaxEnds(mid + 1, high)));
+		maxEnds[mid] = max;
+		return max;
+	}
+
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * Returns the element at the given index in the order of their start positions.
+	 */
+	public T get(int index) {
+		return elements[index];
+	}
+
+	/**
+	 * Returns the current range of the element at the given index, including all shifts applied to the tree.
+	 */
+	public Range getRange(int index) {
+		return new Range(AbstractCompactRangeList.toPosition(starts[index]),
+				AbstractCompactRangeList.toPosition(ends[index]));
+	}
+
+	/**
+	 * Returns the elements whose range contains the given position, ordered by their start position.
+	 * For nested elements like document symbols, the outermost element comes first.
+	 */
+	public List<T> findContaining(Position position) {
+		Preconditions.checkNotNull(position, "position");
+		long packed = AbstractCompactRangeList.pack(position);
+		List<T> result = new ArrayList<>();
+		collect(0, elements.length, Long.MIN_VALUE, packed, packed, Long.MAX_VALUE, result);
+		return result;
+	}
+
+	/**
+	 * Returns the elements whose range contains the given range, ordered by their start position.
+	 */
+	public List<T> findContaining(Range range) {
+		Preconditions.checkNotNull(range, "range");
+		List<T> result = new ArrayList<>();
+		collect(0, elements.length, Long.MIN_VALUE, AbstractCompactRangeList.pack(range.getStart()),
+				AbstractCompactRangeList.pack(range.getEnd()), Long.MAX_VALUE, result);
+		return result;
+	}
+
+	/**
+	 * Returns the elements whose range is contained in the given range, ordered by their start position.
+	 */
+	public List<T> findContainedIn(Range range) {
+		Preconditions.checkNotNull(range, "range");
+		long start = AbstractCompactRangeList.pack(range.getStart());
+		long end = AbstractCompactRangeList.pack(range.getEnd());
+		List<T> result = new ArrayList<>();
+		collect(0, elements.length, start, end, Long.MIN_VALUE, end, result);
+		return result;
+	}
+
+	/**
+	 * Returns the elements whose range overlaps the given range, ordered by their start position.
+	 */
+	public List<T> findOverlapping(Range range) {
+		Preconditions.checkNotNull(range, "range");
+		List<T> result = new ArrayList<>();
+		collect(0, elements.length, Long.MIN_VALUE, AbstractCompactRangeList.pack(range.getEnd()),
+				AbstractCompactRangeList.pack(range.getStart()), Long.MAX_VALUE, result);
+		return result;
+	}
+
+	/**
+	 * Returns the innermost element whose range contains the given position, i.e. the one with the latest
+	 * start and, among those, the earliest end, or {@code null} if there is none.
+	 */
+	public T findInnermost(Position position) {
+		Preconditions.checkNotNull(position, "position");
+		long packed = AbstractCompactRangeList.pack(position);
+		int index = findInnermost(0, elements.length, packed, -1);
+		return index < 0 ? null : elements[index];
+	}
+
+	private int findInnermost(int low, int high, long position, int best) {
+		if (low >= high || maxEnds[(low + high) >>> 1] < position)
+			return best;
+		int mid = (low + high) >>> 1;
+		if (starts[mid] <= position) {
+			// Later starts are better, so search the right subtree first
+			best = findInnermost(mid + 1, high, position, best);
+			if (ends[mid] >= position && isBetter(mid, best))
+				best = mid;
+		}
+		return findInnermost(low, mid, position, best);
+	}
+
+	private boolean isBetter(int index, int best) {
+		return best < 0 || starts[index] > starts[best] || starts[index] == starts[best] && ends[index] < ends[best];
+	}
+
+	/**
+	 * Collect the elements with {@code minStart <= start <= maxStart} and {@code minEnd <= end <= maxEnd}.
+	 */
+	private void collect(int low, int high, long minStart, long maxStart, long minEnd, long maxEnd, List<T> result) {
+		if (low >= high)
+			return;
+		int mid = (low + high) >>> 1;
+		if (maxEnds[mid] < minEnd)
+			return;
+		if (starts[mid] >= minStart)
+			collect(low, mid, minStart, maxStart, minEnd, maxEnd, result);
+		if (starts[mid] > maxStart)
+			return;
+		if (starts[mid] >= minStart && ends[mid] >= minEnd && ends[mid] <= maxEnd)
+			result.add(elements[mid]);
+		collect(mid + 1, high, minStart, maxStart, minEnd, maxEnd, result);
+	}
+
+	/**
+	 * Shift the stored ranges after the text in {@code replaced} has been replaced with text that ends at
+	 * {@code newEnd}. Positions before the replaced range stay where they are, positions inside of it are moved
+	 * to the end of the new text, and positions after it are moved by the difference of the old and the new
+	 * end. Since this keeps the order of the start positions, the tree is updated without sorting again.
+	 */
+	public void shift(Range replaced, Position newEnd) {
+		Preconditions.checkNotNull(replaced, "replaced");
+		Preconditions.checkNotNull(newEnd, "newEnd");
+		long start = AbstractCompactRangeList.pack(replaced.getStart());
+		long oldEnd = AbstractCompactRangeList.pack(replaced.getEnd());
+		long end = AbstractCompactRangeList.pack(newEnd);
+		if (oldEnd == end)
+			return;
+		boolean changed = false;
+		// Only elements that start after the replaced range start have to be moved
+		for (int i = upperBound(start); i < starts.length; i++) {
+			starts[i] = shift(starts[i], start, oldEnd, end);
+		}
+		for (int i = 0; i < ends.length; i++) {
+			if (ends[i] > start) {
+				ends[i] = shift(ends[i], start, oldEnd, end);
+				changed = true;
+			}
+		}
+		if (changed)
+			computeMaxEnds(0, elements.length);
+	}
+
+	/**
+	 * Shift the stored ranges after the given content change of a {@code textDocument/didChange} notification.
+	 * A change without a range replaces the whole document, which cannot be handled by shifting.
+	 *
+	 * @throws IllegalArgumentException if the change has no range
+	 */
+	public void shift(TextDocumentContentChangeEvent change) {
+		Preconditions.checkNotNull(change, "change");
+		Range range = change.getRange();
+		if (range == null)
+			throw new IllegalArgumentException("Cannot shift ranges for a change of the whole document.");
+		String text = change.getText() == null ? "" : change.getText();
+		int line = range.getStart().getLine();
+		int character = range.getStart().getCharacter();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+				line++;
+				character = 0;
+			} else if (c != '\r') {
+				character++;
+			}
+		}
+		shift(range, new Position(line, character));
+	}
+
+	private static long shift(long position, long start, long oldEnd, long newEnd) {
+		if (position <= start)
+			return position;
+		if (position < oldEnd)
+			return newEnd;
+		int line = AbstractCompactRangeList.line(position);
+		int oldEndLine = AbstractCompactRangeList.line(oldEnd);
+		int newEndLine = AbstractCompactRangeList.line(newEnd);
+		if (line == oldEndLine) {
+			int character = AbstractCompactRangeList.character(newEnd) + AbstractCompactRangeList.character(position)
+					- AbstractCompactRangeList.character(oldEnd);
+			return AbstractCompactRangeList.pack(newEndLine, character);
+		}
+		return AbstractCompactRangeList.pack(line + newEndLine - oldEndLine, AbstractCompactRangeList.character(position));
+	}
+
+	/**
+	 * Returns the index of the first element that starts after the given position.
+	 */
+	private int upperBound(long position) {
+		int low = 0;
+		int high = starts.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= position)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.CodeAction;
+import org.eclipse.lsp4j.CodeLens;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.DocumentLink;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseError;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Keeps the context needed to resolve completion items, code actions, code lenses and document links on the
+ * server, so the {@code data} property of the items only has to carry a short token instead of the context
+ * itself. The items are sent to the client with {@link #attach(CompletionItem, Object)} or one of its
+ * overloads, and the context is looked up again with {@link #get(Object)} or {@link #require(Object)} when the
+ * client sends the item back in a resolve request.
+ *
+ * <p>
+ * The number of remembered contexts is bounded; the least recently used contexts are evicted first. A token
+ * whose context has been evicted, or which has been created by another instance, e.g. before the server was
+ * restarted, is answered with {@code null} by {@link #get(Object)} and with a
+ * {@link ResponseErrorCode#ContentModified ContentModified} error by {@link #require(Object)}, which clients
+ * ignore silently. This class is thread-safe.
+ *
+ * @param <C> - the type of the context
+ */
+public class ResolveCache<C> {
+
+	public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+	private final int maxEntries;
+	private final String prefix;
+	private final AtomicLong nextToken = new AtomicLong();
+	private final LinkedHashMap<String, C> contexts = new LinkedHashMap<>(16, 0.75f, true);
+
+	public ResolveCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries - the maximal number of remembered contexts
+	 */
+	public ResolveCache(int maxEntries) {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be positive.");
+		this.maxEntries = maxEntries;
+		// Distinguishes the tokens of this instance from those of earlier instances
+		this.prefix = Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36), 36) + '.';
+	}
+
+	/**
+	 * Remember the given context and return the token under which it can be looked up.
+	 */
+	public String put(C context) {
+		Preconditions.checkNotNull(context, "context");
+		String token = prefix + Long.toString(nextToken.getAndIncrement(), 36);
+		synchronized (contexts) {
+			contexts.put(token, context);
+			if (contexts.size() > maxEntries) {
+				contexts.remove(contexts.keySet().iterator().next());
+			}
+		}
+		return token;
+	}
+
+	/**
+	 * Remember the given context and set the token as {@code data} of the completion item.
+	 */
+	public CompletionItem attach(CompletionItem item, C context) {
+		item.setData(put(context));
+		return item;
+	}
+
+	/**
+	 * Remember the given context and set the token as {@code data} of the code action.
+	 */
+	public CodeAction attach(CodeAction action, C context) {
+		action.setData(put(context));
+		return action;
+	}
+
+	/**
+	 * Remember the given context and set the token as {@code data} of the code lens.
+	 */
+	public CodeLens attach(CodeLens codeLens, C context) {
+		codeLens.setData(put(context));
+		return codeLens;
+	}
+
+	/**
+	 * Remember the given context and set the token as {@code data} of the document link.
+	 */
+	public DocumentLink attach(DocumentLink link, C context) {
+		link.setData(put(context));
+		return link;
+	}
+
+	/**
+	 * Returns the context for the given {@code data} of an item, or {@code null} if the data is not a token or
+	 * its context is not known anymore. The data may be a string or a {@link JsonPrimitive}, as it is received
+	 * in a resolve request.
+	 */
+	public C get(Object data) {
+		String token = getToken(data);
+		if (token == null)
+			return null;
+		synchronized (contexts) {
+			return contexts.get(token);
+		}
+	}
+
+	/**
+	 * Returns the context for the given {@code data} of an item.
+	 *
+	 * @throws ResponseErrorException with a {@link ResponseErrorCode#ContentModified ContentModified} error if
+	 *             the context is not known anymore
+	 */
+	public C require(Object data) {
+		C context = get(data);
+		if (context == null) {
+			throw new ResponseErrorException(new ResponseError(ResponseErrorCode.ContentModified,
+					"The item cannot be resolved because its context is not available anymore.", null));
+		}
+		return context;
+	}
+
+	/**
+	 * Forget the context for the given {@code data} of an item, e.g. after it has been resolved.
+	 */
+	public C remove(Object data) {
+		String token = getToken(data);
+		if (token == null)
+			return null;
+		synchronized (contexts) {
+			return contexts.remove(token);
+		}
+	}
+
+	/**
+	 * Forget all contexts.
+	 */
+	public void clear() {
+		synchronized (contexts) {
+			contexts.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of remembered contexts.
+	 */
+	public int size() {
+		synchronized (contexts) {
+			return contexts.size();
+		}
+	}
+
+	private String getToken(Object data) {
+		if (data instanceof String)
+			return (String) data;
+		if (data instanceof JsonPrimitive && ((JsonPrimitive) data).isString())
+			return ((JsonElement) data).getAsString();
+		return null;
+	}
+
+}
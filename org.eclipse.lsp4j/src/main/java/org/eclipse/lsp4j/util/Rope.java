@@ -0,0 +1,286 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+/**
+ * An immutable rope: a height-balanced binary tree whose leaves hold chunks of text. Every node knows
+ * the length of its text and the number of line breaks in it, so offsets and line starts can be found
+ * in logarithmic time, and edits create a new rope that shares all untouched nodes with the old one.
+ *
+ * <p>
+ * Line breaks are {@code \n}, {@code \r\n} and {@code \r}. A {@code \r\n} pair may be split across two
+ * leaves; this is accounted for when nodes are combined.
+ */
+final class Rope {
+
+	static final int MAX_LEAF_LENGTH = 512;
+
+	static final Rope EMPTY = new Rope(new Node(""));
+
+	private static final class Node {
+		final Node left;
+		final Node right;
+		final String text;
+		final int length;
+		final int height;
+		/** The number of line breaks, where a trailing {@code \r} is counted as a line break. */
+		final int lineBreaks;
+		final boolean startsWithLF;
+		final boolean endsWithCR;
+
+		Node(String text) {
+			this.left = null;
+			this.right = null;
+			this.text = text;
+			this.length = text.length();
+			this.height = 0;
+			int count = 0;
+			for (int i = 0; i < length; i++) {
+				char c = text.charAt(i);
+				if (c == '\n' || c == '\r' && (i + 1 == length || text.charAt(i + 1) != '\n'))
+					count++;
+			}
+			this.lineBreaks = count;
+			this.startsWithLF = length > 0 && text.charAt(0) == '\n';
+			this.endsWithCR = length > 0 && text.charAt(length - 1) == '\r';
+		}
+
+		Node(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+			this.text = null;
+			this.length = left.length + right.length;
+			this.height = Math.max(left.height, right.height) + 1;
+			this.lineBreaks = left.lineBreaks + right.lineBreaks - (isCRLFSplit(left, right) ? 1 : 0);
+			this.startsWithLF = left.length > 0 ? left.startsWithLF : right.startsWithLF;
+			this.endsWithCR = right.length > 0 ? right.endsWithCR : left.endsWithCR;
+		}
+
+		boolean isLeaf() {
+			return text != null;
+		}
+	}
+
+	private final Node root;
+
+	private Rope(Node root) {
+		this.root = root;
+	}
+
+	static Rope of(CharSequence text) {
+		if (text.length() == 0)
+			return EMPTY;
+		return new Rope(build(text.toString(), 0, text.length()));
+	}
+
+	private static Node build(String text, int start, int end) {
+		if (end - start <= MAX_LEAF_LENGTH)
+			return new Node(text.substring(start, end));
+		int middle = (start + end) >>> 1;
+		return new Node(build(text, start, middle), build(text, middle, end));
+	}
+
+	private static boolean isCRLFSplit(Node left, Node right) {
+		return left.endsWithCR && right.startsWithLF;
+	}
+
+	int length() {
+		return root.length;
+	}
+
+	/**
+	 * Returns the number of lines, which is the number of line breaks plus one.
+	 */
+	int lineCount() {
+		return root.lineBreaks + 1;
+	}
+
+	char charAt(int index) {
+		if (index < 0 || index >= root.length)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + root.length);
+		Node node = root;
+		while (!node.isLeaf()) {
+			if (index < node.left.length) {
+				node = node.left;
+			} else {
+				index -= node.left.length;
+				node = node.right;
+			}
+		}
+		return node.text.charAt(index);
+	}
+
+	/**
+	 * Append the text between the given offsets to the given builder.
+	 */
+	void append(StringBuilder builder, int start, int end) {
+		if (start < 0 || end > root.length || start > end)
+			throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + root.length);
+		append(root, builder, start, end);
+	}
+
+	private static void append(Node node, StringBuilder builder, int start, int end) {
+		if (start >= end)
+			return;
+		if (node.isLeaf()) {
+			builder.append(node.text, start, end);
+			return;
+		}
+		int leftLength = node.left.length;
+		if (start < leftLength)
+			append(node.left, builder, start, Math.min(end, leftLength));
+		if (end > leftLength)
+			append(node.right, builder, Math.max(start, leftLength) - leftLength, end - leftLength);
+	}
+
+	/**
+	 * Returns the offset at which the given line starts.
+	 */
+	int lineStart(int line) {
+		if (line < 0 || line > root.lineBreaks)
+			throw new IndexOutOfBoundsException("Line: " + line + ", Line count: " + lineCount());
+		if (line == 0)
+			return 0;
+		return lineStart(root, line, false);
+	}
+
+	/**
+	 * Returns the offset directly after the given line break (counting from one) within the node.
+	 *
+	 * @param nextIsLF - whether the text following the node starts with {@code \n}
+	 */
+	private static int lineStart(Node node, int lineBreak, boolean nextIsLF) {
+		int offset = 0;
+		while (!node.isLeaf()) {
+			int leftBreaks = node.left.lineBreaks - (isCRLFSplit(node.left, node.right) ? 1 : 0);
+			if (lineBreak <= leftBreaks) {
+				nextIsLF = node.right.length > 0 ? node.right.startsWithLF : nextIsLF;
+				node = node.left;
+			} else {
+				lineBreak -= leftBreaks;
+				offset += node.left.length;
+				node = node.right;
+			}
+		}
+		String text = node.text;
+		for (int i = 0; i < text.length(); i++) {
+			if (isLineBreak(text, i, nextIsLF) && --lineBreak == 0)
+				return offset + i + 1;
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Returns the line that contains the given offset.
+	 */
+	int lineOf(int offset) {
+		if (offset < 0 || offset > root.length)
+			throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + root.length);
+		Node node = root;
+		boolean nextIsLF = false;
+		int line = 0;
+		while (!node.isLeaf()) {
+			if (offset <= node.left.length) {
+				nextIsLF = node.right.length > 0 ? node.right.startsWithLF : nextIsLF;
+				node = node.left;
+			} else {
+				line += node.left.lineBreaks - (isCRLFSplit(node.left, node.right) ? 1 : 0);
+				offset -= node.left.length;
+				node = node.right;
+			}
+		}
+		String text = node.text;
+		for (int i = 0; i < offset; i++) {
+			if (isLineBreak(text, i, nextIsLF))
+				line++;
+		}
+		return line;
+	}
+
+	private static boolean isLineBreak(String text, int index, boolean nextIsLF) {
+		char c = text.charAt(index);
+		if (c == '\n')
+			return true;
+		if (c == '\r')
+			return index + 1 < text.length() ? text.charAt(index + 1) != '\n' : !nextIsLF;
+		return false;
+	}
+
+	/**
+	 * Returns a new rope in which the text between the given offsets is replaced with the given text.
+	 */
+	Rope replace(int start, int end, CharSequence text) {
+		if (start < 0 || end > root.length || start > end)
+			throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + root.length);
+		Node[] head = split(root, start);
+		Node[] tail = split(head[1], end - start);
+		Node result = concat(head[0], text.length() == 0 ? null : build(text.toString(), 0, text.length()));
+		result = concat(result, tail[1]);
+		return result == null ? EMPTY : new Rope(result);
+	}
+
+	private static Node[] split(Node node, int offset) {
+		if (node == null)
+			return new Node[2];
+		if (offset <= 0)
+			return new Node[] { null, node };
+		if (offset >= node.length)
+			return new Node[] { node, null };
+		if (node.isLeaf())
+			return new Node[] { new Node(node.text.substring(0, offset)), new Node(node.text.substring(offset)) };
+		if (offset <= node.left.length) {
+			Node[] result = split(node.left, offset);
+			result[1] = concat(result[1], node.right);
+			return result;
+		} else {
+			Node[] result = split(node.right, offset - node.left.length);
+			result[0] = concat(node.left, result[0]);
+			return result;
+		}
+	}
+
+	private static Node concat(Node left, Node right) {
+		if (left == null || left.length == 0)
+			return right;
+		if (right == null || right.length == 0)
+			return left;
+		if (left.isLeaf() && right.isLeaf() && left.length + right.length <= MAX_LEAF_LENGTH)
+			return new Node(left.text + right.text);
+		if (left.height > right.height + 1)
+			return balance(left.left, concat(left.right, right));
+		if (right.height > left.height + 1)
+			return balance(concat(left, right.left), right.right);
+		return new Node(left, right);
+	}
+
+	private static Node balance(Node left, Node right) {
+		if (left.height > right.height + 1) {
+			if (left.left.height >= left.right.height)
+				return new Node(left.left, new Node(left.right, right));
+			return new Node(new Node(left.left, left.right.left), new Node(left.right.right, right));
+		}
+		if (right.height > left.height + 1) {
+			if (right.right.height >= right.left.height)
+				return new Node(new Node(left, right.left), right.right);
+			return new Node(new Node(left, right.left.left), new Node(right.left.right, right.right));
+		}
+		return new Node(left, right);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(root.length);
+		append(root, builder, 0, root.length);
+		return builder.toString();
+	}
+
+}
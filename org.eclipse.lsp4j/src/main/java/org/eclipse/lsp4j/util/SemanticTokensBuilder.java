@@ -0,0 +1,190 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensLegend;
+
+/**
+ * Encodes tokens given by their absolute positions into the relative integer format of {@link SemanticTokens}.
+ * Each token is encoded as five integers: the line delta to the previous token, the start character (relative
+ * to the previous token if both are on the same line), the length, the index of the token type in the legend,
+ * and the bit set of token modifiers.
+ *
+ * <p>
+ * Tokens may be pushed in any order; they are sorted by position when the result is built.
+ */
+public class SemanticTokensBuilder {
+
+	private static final int TOKEN_SIZE = 5;
+
+	private final Map<String, Integer> tokenTypes;
+	private final Map<String, Integer> tokenModifiers;
+
+	private int[] tokens = new int[TOKEN_SIZE * 64];
+	private int tokenCount;
+	private boolean sorted = true;
+	private int lastLine;
+	private int lastCharacter;
+
+	/**
+	 * Create a builder that accepts only token type and modifier indices.
+	 */
+	public SemanticTokensBuilder() {
+		this.tokenTypes = null;
+		this.tokenModifiers = null;
+	}
+
+	/**
+	 * Create a builder that maps token type and modifier names through the given legend.
+	 */
+	public SemanticTokensBuilder(SemanticTokensLegend legend) {
+		Preconditions.checkNotNull(legend, "legend");
+		this.tokenTypes = indexMap(legend.getTokenTypes());
+		this.tokenModifiers = indexMap(legend.getTokenModifiers());
+		if (tokenModifiers.size() > Integer.SIZE)
+			throw new IllegalArgumentException("The legend must not contain more than " + Integer.SIZE + " token modifiers.");
+	}
+
+	private static Map<String, Integer> indexMap(List<String> values) {
+		Map<String, Integer> result = new HashMap<>();
+		for (int i = 0; i < values.size(); i++) {
+			result.putIfAbsent(values.get(i), i);
+		}
+		return result;
+	}
+
+	/**
+	 * Add a token given by the names of its type and modifiers.
+	 *
+	 * @throws IllegalArgumentException if the type or a modifier is not contained in the legend
+	 */
+	public SemanticTokensBuilder push(int line, int character, int length, String tokenType, String... modifiers) {
+		if (tokenTypes == null)
+			throw new IllegalStateException("Token names can only be used if the builder has been created with a legend.");
+		Integer typeIndex = tokenTypes.get(tokenType);
+		if (typeIndex == null)
+			throw new IllegalArgumentException("Unknown token type: " + tokenType);
+		int modifierBits = 0;
+		for (String modifier : modifiers) {
+			Integer modifierIndex = tokenModifiers.get(modifier);
+			if (modifierIndex == null)
+				throw new IllegalArgumentException("Unknown token modifier: " + modifier);
+			modifierBits |= 1 << modifierIndex;
+		}
+		return push(line, character, length, typeIndex, modifierBits);
+	}
+
+	/**
+	 * Add a token given by the index of its type in the legend and the bit set of its modifiers.
+	 */
+	public SemanticTokensBuilder push(int line, int character, int length, int tokenType, int tokenModifiers) {
+		if (line < 0 || character < 0 || length < 0)
+			throw new IllegalArgumentException("Illegal token position: " + line + ":" + character + ", length " + length);
+		if (tokenCount > 0 && (line < lastLine || line == lastLine && character < lastCharacter))
+			sorted = false;
+		int offset = tokenCount * TOKEN_SIZE;
+		if (offset == tokens.length)
+			tokens = Arrays.copyOf(tokens, tokens.length * 2);
+		tokens[offset] = line;
+		tokens[offset + 1] = character;
+		tokens[offset + 2] = length;
+		tokens[offset + 3] = tokenType;
+		tokens[offset + 4] = tokenModifiers;
+		tokenCount++;
+		lastLine = line;
+		lastCharacter = character;
+		return this;
+	}
+
+	/**
+	 * Returns the number of tokens that have been pushed.
+	 */
+	public int size() {
+		return tokenCount;
+	}
+
+	/**
+	 * Encode the pushed tokens into a new array in the relative format.
+	 */
+	public int[] buildArray() {
+		if (!sorted)
+			sort();
+		int[] result = new int[tokenCount * TOKEN_SIZE];
+		int previousLine = 0;
+		int previousCharacter = 0;
+		for (int i = 0; i < tokenCount; i++) {
+			int offset = i * TOKEN_SIZE;
+			int line = tokens[offset];
+			int character = tokens[offset + 1];
+			result[offset] = line - previousLine;
+			result[offset + 1] = line == previousLine ? character - previousCharacter : character;
+			result[offset + 2] = tokens[offset + 2];
+			result[offset + 3] = tokens[offset + 3];
+			result[offset + 4] = tokens[offset + 4];
+			previousLine = line;
+			previousCharacter = character;
+		}
+		return result;
+	}
+
+	public SemanticTokens build() {
+		return build(null);
+	}
+
+	public SemanticTokens build(String resultId) {
+		return new SemanticTokens(resultId, IntList.wrap(buildArray()));
+	}
+
+	/**
+	 * Remove all pushed tokens, so the builder can be reused.
+	 */
+	public void clear() {
+		tokenCount = 0;
+		sorted = true;
+	}
+
+	private void sort() {
+		// Sort packed keys of the line and the push index first, then the keys of the character and the push
+		// index within each line, so tokens at the same position keep the order in which they were pushed
+		long[] keys = new long[tokenCount];
+		for (int i = 0; i < tokenCount; i++) {
+			keys[i] = (long) tokens[i * TOKEN_SIZE] << 32 | i;
+		}
+		Arrays.sort(keys);
+		int start = 0;
+		while (start < tokenCount) {
+			int line = (int) (keys[start] >>> 32);
+			int end = start;
+			while (end < tokenCount && (int) (keys[end] >>> 32) == line) {
+				int index = (int) keys[end];
+				keys[end] = (long) tokens[index * TOKEN_SIZE + 1] << 32 | index;
+				end++;
+			}
+			if (end - start > 1)
+				Arrays.sort(keys, start, end);
+			start = end;
+		}
+		int[] sortedTokens = new int[tokens.length];
+		for (int i = 0; i < tokenCount; i++) {
+			System.arraycopy(tokens, (int) keys[i] * TOKEN_SIZE, sortedTokens, i * TOKEN_SIZE, TOKEN_SIZE);
+		}
+		tokens = sortedTokens;
+		sorted = true;
+	}
+
+}
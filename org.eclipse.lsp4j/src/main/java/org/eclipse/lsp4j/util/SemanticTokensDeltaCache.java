@@ -0,0 +1,199 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensDelta;
+import org.eclipse.lsp4j.SemanticTokensDeltaParams;
+import org.eclipse.lsp4j.SemanticTokensEdit;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+/**
+ * Keeps the token arrays of previous {@code textDocument/semanticTokens} responses by their result id
+ * and computes {@code textDocument/semanticTokens/full/delta} responses from them.
+ *
+ * <p>
+ * Every response created by this class is assigned a new result id, and the token array is remembered
+ * under that id. When the client asks for a delta, the new token array is compared with the remembered
+ * one: the common prefix and suffix are trimmed in linear time and the remainder is sent as a single
+ * {@link SemanticTokensEdit}. If the previous result is not known anymore, or if nothing could be trimmed,
+ * the full token array is sent instead.
+ *
+ * <p>
+ * The number of remembered results and their total size are bounded; the least recently used results
+ * are evicted first. Token arrays passed to this class are stored without copying, so they must not be
+ * modified afterwards. This class is thread-safe.
+ */
+public class SemanticTokensDeltaCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 100;
+
+	public static final long DEFAULT_MAX_TOTAL_SIZE = 10_000_000;
+
+	private final int maxEntries;
+	private final long maxTotalSize;
+	private final AtomicLong nextResultId = new AtomicLong();
+	private final LinkedHashMap<String, int[]> results = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalSize;
+
+	public SemanticTokensDeltaCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_TOTAL_SIZE);
+	}
+
+	/**
+	 * @param maxEntries - the maximal number of remembered results
+	 * @param maxTotalSize - the maximal sum of the lengths of all remembered token arrays
+	 */
+	public SemanticTokensDeltaCache(int maxEntries, long maxTotalSize) {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be positive.");
+		if (maxTotalSize <= 0)
+			throw new IllegalArgumentException("maxTotalSize must be positive.");
+		this.maxEntries = maxEntries;
+		this.maxTotalSize = maxTotalSize;
+	}
+
+	/**
+	 * Create a {@code textDocument/semanticTokens/full} response and remember its token array.
+	 */
+	public SemanticTokens full(int[] data) {
+		Preconditions.checkNotNull(data, "data");
+		String resultId = store(data);
+		return new SemanticTokens(resultId, IntList.wrap(data));
+	}
+
+	/**
+	 * Create a {@code textDocument/semanticTokens/full/delta} response for the given request parameters.
+	 */
+	public Either<SemanticTokens, SemanticTokensDelta> delta(SemanticTokensDeltaParams params, int[] data) {
+		Preconditions.checkNotNull(params, "params");
+		return delta(params.getPreviousResultId(), data);
+	}
+
+	/**
+	 * Create a {@code textDocument/semanticTokens/full/delta} response that transforms the result with the
+	 * given id into the given token array, and remember the new token array. If the previous result is
+	 * unknown, a full response is created instead. The previous result is forgotten in either case.
+	 */
+	public Either<SemanticTokens, SemanticTokensDelta> delta(String previousResultId, int[] data) {
+		Preconditions.checkNotNull(data, "data");
+		int[] previous;
+		synchronized (results) {
+			previous = previousResultId == null ? null : results.get(previousResultId);
+		}
+		Either<SemanticTokens, SemanticTokensDelta> result = null;
+		if (previous != null) {
+			List<SemanticTokensEdit> edits = computeEdits(previous, data);
+			if (edits != null) {
+				String resultId = store(data);
+				result = Either.forRight(new SemanticTokensDelta(edits, resultId));
+			}
+		}
+		if (result == null)
+			result = Either.forLeft(full(data));
+		// The client replaces the previous result with the new one, so it is not needed anymore
+		if (previousResultId != null)
+			remove(previousResultId);
+		return result;
+	}
+
+	/**
+	 * Compute the edits that transform the {@code previous} token array into the {@code current} one.
+	 * At most one edit is created, covering everything between the common prefix and the common suffix
+	 * of the two arrays.
+	 *
+	 * @return the list of edits, or {@code null} if the arrays have neither a common prefix nor a common
+	 *     suffix, so a full response is cheaper than a delta
+	 */
+	public static List<SemanticTokensEdit> computeEdits(int[] previous, int[] current) {
+		int minLength = Math.min(previous.length, current.length);
+		int prefix = 0;
+		while (prefix < minLength && previous[prefix] == current[prefix]) {
+			prefix++;
+		}
+		if (prefix == previous.length && prefix == current.length) {
+			return Collections.emptyList();
+		}
+		int suffix = 0;
+		int maxSuffix = minLength - prefix;
+		while (suffix < maxSuffix
+				&& previous[previous.length - 1 - suffix] == current[current.length - 1 - suffix]) {
+			suffix++;
+		}
+		if (prefix == 0 && suffix == 0) {
+			return null;
+		}
+		int deleteCount = previous.length - prefix - suffix;
+		int insertEnd = current.length - suffix;
+		IntList insert = null;
+		if (insertEnd > prefix) {
+			insert = new IntList(insertEnd - prefix);
+			insert.addAll(current, prefix, insertEnd);
+		}
+		return Collections.singletonList(new SemanticTokensEdit(prefix, deleteCount, insert));
+	}
+
+	/**
+	 * Forget the result with the given id.
+	 */
+	public void remove(String resultId) {
+		synchronized (results) {
+			int[] removed = results.remove(resultId);
+			if (removed != null)
+				totalSize -= removed.length;
+		}
+	}
+
+	public void clear() {
+		synchronized (results) {
+			results.clear();
+			totalSize = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of remembered results.
+	 */
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	protected String createResultId() {
+		return Long.toString(nextResultId.incrementAndGet());
+	}
+
+	private String store(int[] data) {
+		String resultId = createResultId();
+		synchronized (results) {
+			results.put(resultId, data);
+			totalSize += data.length;
+			Iterator<Map.Entry<String, int[]>> iterator = results.entrySet().iterator();
+			while ((results.size() > maxEntries || totalSize > maxTotalSize) && results.size() > 1) {
+				// Evict the least recently used results, but always keep the new one
+				int[] evicted = iterator.next().getValue();
+				iterator.remove();
+				totalSize -= evicted.length;
+			}
+		}
+		return resultId;
+	}
+
+}
@@ -0,0 +1,170 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensRangeParams;
+
+/**
+ * Keeps the full semantic token array of each document and answers {@code textDocument/semanticTokens/range}
+ * requests from it without recomputing the tokens.
+ *
+ * <p>
+ * When a token array is stored, the absolute start position of every token is decoded once. A range request
+ * then finds the first and last token of the range by binary search and copies the tokens in between. Only the
+ * first token of the copy needs to be re-encoded, because all following tokens are relative to their predecessor
+ * within the slice.
+ *
+ * <p>
+ * Each token is assumed to end on the line it starts on, as the protocol requires unless the client announces
+ * {@code multilineTokenSupport}; a token that starts on an earlier line is not included in a range, even if it
+ * extends into it. Token arrays passed to this class are stored without copying, so they must not be modified
+ * afterwards. This class is thread-safe.
+ */
+public class SemanticTokensStore {
+
+	private static final int TOKEN_SIZE = 5;
+
+	private static class Entry {
+		final int[] data;
+		final long[] starts;
+
+		Entry(int[] data) {
+			if (data.length % TOKEN_SIZE != 0)
+				throw new IllegalArgumentException("The length of the token array must be a multiple of " + TOKEN_SIZE + ".");
+			this.data = data;
+			this.starts = new long[data.length / TOKEN_SIZE];
+			int line = 0;
+			int character = 0;
+			for (int i = 0; i < starts.length; i++) {
+				int offset = i * TOKEN_SIZE;
+				int deltaLine = data[offset];
+				line += deltaLine;
+				character = deltaLine == 0 ? character + data[offset + 1] : data[offset + 1];
+				starts[i] = AbstractCompactRangeList.pack(line, character);
+			}
+		}
+	}
+
+	private final Map<String, Entry> documents = new ConcurrentHashMap<>();
+
+	/**
+	 * Store the full token array of the given document, replacing any previously stored tokens.
+	 */
+	public void put(String uri, int[] data) {
+		Preconditions.checkNotNull(uri, "uri");
+		Preconditions.checkNotNull(data, "data");
+		documents.put(uri, new Entry(data));
+	}
+
+	/**
+	 * Store the token array of a {@code textDocument/semanticTokens/full} response.
+	 */
+	public void put(String uri, SemanticTokens tokens) {
+		Preconditions.checkNotNull(tokens, "tokens");
+		put(uri, toIntArray(tokens.getData()));
+	}
+
+	/**
+	 * Returns the stored token array of the given document, or {@code null} if there is none.
+	 */
+	public int[] get(String uri) {
+		Entry entry = documents.get(uri);
+		return entry == null ? null : entry.data;
+	}
+
+	public void remove(String uri) {
+		documents.remove(uri);
+	}
+
+	public void clear() {
+		documents.clear();
+	}
+
+	/**
+	 * Create a {@code textDocument/semanticTokens/range} response from the stored tokens.
+	 *
+	 * @return the tokens of the requested range, or {@code null} if no tokens are stored for the document
+	 */
+	public SemanticTokens range(SemanticTokensRangeParams params) {
+		Preconditions.checkNotNull(params, "params");
+		return range(params.getTextDocument().getUri(), params.getRange());
+	}
+
+	/**
+	 * Create a {@code textDocument/semanticTokens/range} response from the stored tokens. A token is included
+	 * if it overlaps the given range.
+	 *
+	 * @return the tokens of the given range, or {@code null} if no tokens are stored for the document
+	 */
+	public SemanticTokens range(String uri, Range range) {
+		Preconditions.checkNotNull(range, "range");
+		Entry entry = documents.get(uri);
+		if (entry == null)
+			return null;
+		return new SemanticTokens(IntList.wrap(slice(entry, range)));
+	}
+
+	private static int[] slice(Entry entry, Range range) {
+		long[] starts = entry.starts;
+		long rangeStart = AbstractCompactRangeList.pack(range.getStart());
+		long rangeEnd = AbstractCompactRangeList.pack(range.getEnd());
+		int from = lowerBound(starts, rangeStart);
+		// Tokens on the start line that begin before the range may extend into it, even if other tokens follow them
+		int startLine = range.getStart().getLine();
+		int startCharacter = range.getStart().getCharacter();
+		for (int i = from - 1; i >= 0 && AbstractCompactRangeList.line(starts[i]) == startLine; i--) {
+			if (AbstractCompactRangeList.character(starts[i]) + entry.data[i * TOKEN_SIZE + 2] > startCharacter)
+				from = i;
+		}
+		int to = lowerBound(starts, rangeEnd);
+		if (to <= from)
+			return new int[0];
+		int[] result = Arrays.copyOfRange(entry.data, from * TOKEN_SIZE, to * TOKEN_SIZE);
+		result[0] = AbstractCompactRangeList.line(starts[from]);
+		result[1] = AbstractCompactRangeList.character(starts[from]);
+		return result;
+	}
+
+	/**
+	 * Returns the index of the first element that is greater than or equal to the given key.
+	 */
+	private static int lowerBound(long[] array, long key) {
+		int low = 0;
+		int high = array.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (array[mid] < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static int[] toIntArray(List<Integer> data) {
+		if (data instanceof IntList)
+			return ((IntList) data).toIntArray();
+		int[] result = new int[data.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = data.get(i);
+		}
+		return result;
+	}
+
+}
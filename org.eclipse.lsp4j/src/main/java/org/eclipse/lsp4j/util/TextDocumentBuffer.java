@@ -0,0 +1,104 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.List;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentItem;
+
+/**
+ * The text of an open document, updated with the incremental changes of {@code textDocument/didChange}
+ * notifications.
+ *
+ * <p>
+ * The text is kept in a balanced rope with a line break count in every node, so applying a change and
+ * converting between positions and offsets take logarithmic time in the size of the document instead of
+ * copying the whole text. Every change produces a new {@link TextDocumentSnapshot}, which shares all
+ * unchanged parts of the text with its predecessor and stays valid when further changes are applied.
+ *
+ * <p>
+ * Changes are applied under the lock of this buffer, while snapshots can be read from any thread.
+ */
+public class TextDocumentBuffer {
+
+	private volatile TextDocumentSnapshot snapshot;
+
+	public TextDocumentBuffer(TextDocumentItem document) {
+		this(document.getUri(), document.getVersion(), document.getText());
+	}
+
+	public TextDocumentBuffer(String uri, Integer version, CharSequence text) {
+		Preconditions.checkNotNull(text, "text");
+		this.snapshot = new TextDocumentSnapshot(uri, version, Rope.of(text));
+	}
+
+	/**
+	 * Returns the current content of the document.
+	 */
+	public TextDocumentSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Apply the content changes of a {@code textDocument/didChange} notification and take over its version.
+	 *
+	 * @return the new content of the document
+	 */
+	public TextDocumentSnapshot apply(DidChangeTextDocumentParams params) {
+		Preconditions.checkNotNull(params, "params");
+		return apply(params.getTextDocument().getVersion(), params.getContentChanges());
+	}
+
+	/**
+	 * Apply the given content changes in their order and set the given version.
+	 * A change without a range replaces the whole document.
+	 *
+	 * @return the new content of the document
+	 */
+	public synchronized TextDocumentSnapshot apply(Integer version, List<TextDocumentContentChangeEvent> changes) {
+		Preconditions.checkNotNull(changes, "changes");
+		TextDocumentSnapshot current = snapshot;
+		Rope rope = current.getRope();
+		for (TextDocumentContentChangeEvent change : changes) {
+			String text = change.getText() == null ? "" : change.getText();
+			Range range = change.getRange();
+			if (range == null) {
+				rope = Rope.of(text);
+			} else {
+				// Offsets are computed on the intermediate text, since each change refers to the result of the previous one
+				TextDocumentSnapshot intermediate = new TextDocumentSnapshot(current.getUri(), version, rope);
+				int start = intermediate.offsetAt(range.getStart());
+				int end = Math.max(start, intermediate.offsetAt(range.getEnd()));
+				rope = rope.replace(start, end, text);
+			}
+		}
+		TextDocumentSnapshot result = new TextDocumentSnapshot(current.getUri(), version, rope);
+		snapshot = result;
+		return result;
+	}
+
+	/**
+	 * Replace the whole content of the document.
+	 *
+	 * @return the new content of the document
+	 */
+	public synchronized TextDocumentSnapshot setText(Integer version, CharSequence text) {
+		Preconditions.checkNotNull(text, "text");
+		TextDocumentSnapshot result = new TextDocumentSnapshot(snapshot.getUri(), version, Rope.of(text));
+		snapshot = result;
+		return result;
+	}
+
+}
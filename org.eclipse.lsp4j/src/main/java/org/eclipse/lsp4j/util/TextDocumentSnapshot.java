@@ -0,0 +1,144 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * An immutable version of a text document as maintained by a {@link TextDocumentBuffer}. Snapshots share
+ * their text with the buffer and with each other, so they are cheap to create and can be read by any
+ * number of threads without copying or locking.
+ *
+ * <p>
+ * Positions are interpreted as in the Language Server Protocol: lines are separated by {@code \n},
+ * {@code \r\n} or {@code \r}, and characters are counted in UTF-16 code units.
+ */
+public final class TextDocumentSnapshot implements CharSequence {
+
+	private final String uri;
+	private final Integer version;
+	private final Rope rope;
+
+	TextDocumentSnapshot(String uri, Integer version, Rope rope) {
+		this.uri = uri;
+		this.version = version;
+		this.rope = rope;
+	}
+
+	Rope getRope() {
+		return rope;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * The version of the document as given by {@code VersionedTextDocumentIdentifier#getVersion()}.
+	 */
+	public Integer getVersion() {
+		return version;
+	}
+
+	@Override
+	public int length() {
+		return rope.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return rope.charAt(index);
+	}
+
+	@Override
+	public String subSequence(int start, int end) {
+		return getText(start, end);
+	}
+
+	public int getLineCount() {
+		return rope.lineCount();
+	}
+
+	/**
+	 * Returns the offset of the first character of the given line.
+	 */
+	public int getLineStart(int line) {
+		return rope.lineStart(line);
+	}
+
+	/**
+	 * Returns the offset directly after the last character of the given line, excluding the line break.
+	 */
+	public int getLineEnd(int line) {
+		if (line + 1 >= rope.lineCount()) {
+			if (line + 1 > rope.lineCount())
+				throw new IndexOutOfBoundsException("Line: " + line + ", Line count: " + rope.lineCount());
+			return rope.length();
+		}
+		int end = rope.lineStart(line + 1) - 1;
+		if (end > 0 && rope.charAt(end) == '\n' && rope.charAt(end - 1) == '\r')
+			end--;
+		return end;
+	}
+
+	/**
+	 * Returns the text of the given line, excluding the line break.
+	 */
+	public String getLine(int line) {
+		return getText(getLineStart(line), getLineEnd(line));
+	}
+
+	public String getText() {
+		return rope.toString();
+	}
+
+	public String getText(int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+		rope.append(builder, start, end);
+		return builder.toString();
+	}
+
+	public String getText(Range range) {
+		Preconditions.checkNotNull(range, "range");
+		return getText(offsetAt(range.getStart()), offsetAt(range.getEnd()));
+	}
+
+	/**
+	 * Convert a position into an offset. If the character of the position exceeds the length of the line,
+	 * the end of the line is used; positions after the last line are mapped to the end of the document.
+	 */
+	public int offsetAt(Position position) {
+		Preconditions.checkNotNull(position, "position");
+		int line = position.getLine();
+		if (line < 0 || position.getCharacter() < 0)
+			throw new IllegalArgumentException("Illegal position: " + position);
+		if (line >= rope.lineCount())
+			return rope.length();
+		int start = rope.lineStart(line);
+		return Math.min(start + position.getCharacter(), getLineEnd(line));
+	}
+
+	/**
+	 * Convert an offset into a position.
+	 */
+	public Position positionAt(int offset) {
+		int line = rope.lineOf(offset);
+		return new Position(line, offset - rope.lineStart(line));
+	}
+
+	@Override
+	public String toString() {
+		return getText();
+	}
+
+}
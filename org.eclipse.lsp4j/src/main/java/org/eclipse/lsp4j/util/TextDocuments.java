@@ -0,0 +1,82 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+
+/**
+ * Utilities for finding the text document that a message of the protocol refers to.
+ */
+public final class TextDocuments {
+
+	private static final ClassValue<Method> TEXT_DOCUMENT_GETTER = new ClassValue<Method>() {
+		@Override
+		protected Method computeValue(Class<?> type) {
+			try {
+				Method method = type.getMethod("getTextDocument");
+				if (Modifier.isStatic(method.getModifiers()))
+					return null;
+				return method;
+			} catch (NoSuchMethodException exception) {
+				return null;
+			}
+		}
+	};
+
+	/**
+	 * Returns the URI of the text document the given request or notification refers to, or {@code null} if its
+	 * parameters have no {@code textDocument} property.
+	 */
+	public static String getUri(Message message) {
+		if (message instanceof RequestMessage)
+			return getUri(((RequestMessage) message).getParams());
+		if (message instanceof NotificationMessage)
+			return getUri(((NotificationMessage) message).getParams());
+		return null;
+	}
+
+	/**
+	 * Returns the URI of the {@code textDocument} property of the given parameters, e.g. of
+	 * {@link org.eclipse.lsp4j.TextDocumentPositionParams TextDocumentPositionParams} or
+	 * {@link org.eclipse.lsp4j.DidOpenTextDocumentParams DidOpenTextDocumentParams}, or {@code null} if
+	 * the parameters have no such property.
+	 */
+	public static String getUri(Object params) {
+		if (params == null)
+			return null;
+		Method getter = TEXT_DOCUMENT_GETTER.get(params.getClass());
+		if (getter == null)
+			return null;
+		Object textDocument;
+		try {
+			textDocument = getter.invoke(params);
+		} catch (ReflectiveOperationException exception) {
+			return null;
+		}
+		if (textDocument instanceof TextDocumentIdentifier)
+			return ((TextDocumentIdentifier) textDocument).getUri();
+		if (textDocument instanceof TextDocumentItem)
+			return ((TextDocumentItem) textDocument).getUri();
+		return null;
+	}
+
+	private TextDocuments() {
+	}
+
+}
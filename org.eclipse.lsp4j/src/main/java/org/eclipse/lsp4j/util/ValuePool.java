@@ -0,0 +1,135 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+
+/**
+ * A pool of canonical values that is used to deduplicate URI strings, {@link Position positions}
+ * and {@link Range ranges} that occur many times in a single message or over the lifetime of a connection.
+ *
+ * <p>
+ * URI strings are kept in a bounded map with weak references, so they do not outlive their last use.
+ * Positions and ranges are kept in small direct-mapped caches: a value is reused if an equal value
+ * was the last one stored in its slot, otherwise it replaces the slot content.
+ *
+ * <p>
+ * Pooled values are shared between all messages that contain an equal value. Since the protocol
+ * classes are mutable, clients must not modify positions and ranges that have been obtained from
+ * a pool. This class is thread-safe: the slots of the caches are read and written atomically, so a
+ * value is only shared after it has been fully initialized. Threads that race for a slot may both keep
+ * their own value, which only costs a missed deduplication.
+ */
+public final class ValuePool {
+
+	public static final int DEFAULT_MAX_STRINGS = 16384;
+
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	private final int maxStrings;
+	private final Map<String, WeakReference<String>> strings;
+
+	private final AtomicReferenceArray<Position> positions;
+	private final AtomicReferenceArray<Range> ranges;
+	private final int cacheMask;
+
+	public ValuePool() {
+		this(DEFAULT_MAX_STRINGS, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param maxStrings - the maximal number of strings that are held in the pool
+	 * @param cacheSize - the number of slots of the position and range caches, rounded up to a power of two
+	 */
+	public ValuePool(int maxStrings, int cacheSize) {
+		if (maxStrings <= 0)
+			throw new IllegalArgumentException("maxStrings must be positive.");
+		if (cacheSize <= 0)
+			throw new IllegalArgumentException("cacheSize must be positive.");
+		this.maxStrings = maxStrings;
+		this.strings = new WeakHashMap<>();
+		int slots = Integer.highestOneBit(cacheSize);
+		if (slots < cacheSize)
+			slots <<= 1;
+		this.positions = new AtomicReferenceArray<>(slots);
+		this.ranges = new AtomicReferenceArray<>(slots);
+		this.cacheMask = slots - 1;
+	}
+
+	/**
+	 * Returns a string that is equal to the given one. If an equal string has been passed to this
+	 * method before and is still referenced, that instance is returned.
+	 */
+	public String canonicalize(String value) {
+		if (value == null)
+			return null;
+		synchronized (strings) {
+			WeakReference<String> reference = strings.get(value);
+			if (reference != null) {
+				String result = reference.get();
+				if (result != null)
+					return result;
+			}
+			if (strings.size() >= maxStrings) {
+				// The pool is full - start over instead of tracking the access order of all entries
+				strings.clear();
+			}
+			strings.put(value, new WeakReference<>(value));
+			return value;
+		}
+	}
+
+	/**
+	 * Returns a position that is equal to the given one, reusing a previously pooled instance if possible.
+	 */
+	public Position canonicalize(Position value) {
+		if (value == null)
+			return null;
+		int slot = hash(value.getLine(), value.getCharacter()) & cacheMask;
+		Position cached = positions.get(slot);
+		if (cached != null && cached.getLine() == value.getLine() && cached.getCharacter() == value.getCharacter())
+			return cached;
+		positions.set(slot, value);
+		return value;
+	}
+
+	/**
+	 * Returns a range that is equal to the given one, reusing a previously pooled instance if possible.
+	 * The start and end positions of a range that is not found in the pool are canonicalized as well.
+	 */
+	public Range canonicalize(Range value) {
+		if (value == null || value.getStart() == null || value.getEnd() == null)
+			return value;
+		Position start = value.getStart();
+		Position end = value.getEnd();
+		int slot = (31 * hash(start.getLine(), start.getCharacter()) + hash(end.getLine(), end.getCharacter())) & cacheMask;
+		Range cached = ranges.get(slot);
+		if (cached != null && cached.equals(value))
+			return cached;
+		value.setStart(canonicalize(start));
+		value.setEnd(canonicalize(end));
+		ranges.set(slot, value);
+		return value;
+	}
+
+	private static int hash(int line, int character) {
+		int h = line * 0x9E3779B1 + character;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,457 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+
+/**
+ * An in-memory index of the symbols of a workspace that answers {@code workspace/symbol} requests without
+ * looking at every symbol.
+ *
+ * <p>
+ * The symbols are registered per document and replaced as a whole when the document changes. For every symbol
+ * name, the index records keys that a fuzzy query can start with: trigrams of consecutive characters, trigrams
+ * made of the initials of camel humps (e.g. {@code gvf} for {@code getValueFor}), and for short queries the
+ * initials and pairs starting at an initial. A query is answered by intersecting the posting lists of its keys,
+ * scoring the remaining candidates and keeping the best {@code limit} results. Matching is case-insensitive
+ * and ignores characters that are neither letters nor digits.
+ *
+ * <p>
+ * Replaced symbols are only marked as deleted, and the index is compacted once they outnumber the live symbols.
+ * Queries may run concurrently with each other; updates are exclusive.
+ */
+public class WorkspaceSymbolIndex {
+
+	public static final int DEFAULT_LIMIT = 100;
+
+	private static final int MIN_COMPACTION_SIZE = 1024;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final List<SymbolInformation> symbols = new ArrayList<>();
+	private final BitSet deleted = new BitSet();
+	private final Map<String, int[]> documents = new HashMap<>();
+	private final Map<Long, IntList> postings = new HashMap<>();
+	private int deletedCount;
+
+	/**
+	 * Replace the symbols of the given document.
+	 */
+	public void update(String uri, List<? extends SymbolInformation> documentSymbols) {
+		Preconditions.checkNotNull(uri, "uri");
+		Preconditions.checkNotNull(documentSymbols, "documentSymbols");
+		lock.writeLock().lock();
+		try {
+			removeDocument(uri);
+			if (!documentSymbols.isEmpty()) {
+				int[] ids = new int[documentSymbols.size()];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = addSymbol(documentSymbols.get(i));
+				}
+				documents.put(uri, ids);
+			}
+			if (deletedCount > MIN_COMPACTION_SIZE && deletedCount > symbols.size() - deletedCount)
+				compact();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replace the symbols of the given document with the given {@link DocumentSymbol} hierarchy. The name of
+	 * the parent symbol is used as container name, and the selection range as location.
+	 */
+	public void updateDocumentSymbols(String uri, List<DocumentSymbol> documentSymbols) {
+		Preconditions.checkNotNull(documentSymbols, "documentSymbols");
+		List<SymbolInformation> flattened = new ArrayList<>();
+		flatten(uri, documentSymbols, null, flattened);
+		update(uri, flattened);
+	}
+
+	private static void flatten(String uri, List<DocumentSymbol> documentSymbols, String containerName, List<SymbolInformation> result) {
+		for (DocumentSymbol documentSymbol : documentSymbols) {
+			SymbolInformation symbol = new SymbolInformation(documentSymbol.getName(), documentSymbol.getKind(),
+					new Location(uri, documentSymbol.getSelectionRange()), containerName);
+			symbol.setTags(documentSymbol.getTags());
+			result.add(symbol);
+			if (documentSymbol.getChildren() != null)
+				flatten(uri, documentSymbol.getChildren(), documentSymbol.getName(), result);
+		}
+	}
+
+	/**
+	 * Remove the symbols of the given document.
+	 */
+	public void remove(String uri) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(uri);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			symbols.clear();
+			deleted.clear();
+			documents.clear();
+			postings.clear();
+			deletedCount = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of symbols in the index.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return symbols.size() - deletedCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Answer a {@code workspace/symbol} request with at most {@link #DEFAULT_LIMIT} results.
+	 */
+	public List<SymbolInformation> search(WorkspaceSymbolParams params) {
+		Preconditions.checkNotNull(params, "params");
+		return search(params.getQuery(), DEFAULT_LIMIT);
+	}
+
+	/**
+	 * Returns the symbols that match the given query, best matches first. An empty query matches all symbols.
+	 */
+	public List<SymbolInformation> search(String query, int limit) {
+		if (limit <= 0)
+			return Collections.emptyList();
+		char[] queryChars = normalize(query == null ? "" : query);
+		lock.readLock().lock();
+		try {
+			if (queryChars.length == 0)
+				return firstSymbols(limit);
+			IntList candidates = findCandidates(queryChars);
+			if (candidates == null)
+				return Collections.emptyList();
+			PriorityQueue<Match> best = new PriorityQueue<>(Math.min(limit, 64) + 1);
+			for (int i = 0; i < candidates.size(); i++) {
+				int id = candidates.getInt(i);
+				if (deleted.get(id))
+					continue;
+				String name = symbols.get(id).getName();
+				int score = score(queryChars, name);
+				if (score < 0)
+					continue;
+				if (best.size() < limit) {
+					best.add(new Match(id, score, name.length()));
+				} else if (best.peek().isWorseThan(score, name.length(), id)) {
+					best.poll();
+					best.add(new Match(id, score, name.length()));
+				}
+			}
+			Match[] sorted = best.toArray(new Match[best.size()]);
+			Arrays.sort(sorted, Collections.reverseOrder());
+			List<SymbolInformation> result = new ArrayList<>(sorted.length);
+			for (Match match : sorted) {
+				result.add(symbols.get(match.id));
+			}
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<SymbolInformation> firstSymbols(int limit) {
+		List<SymbolInformation> result = new ArrayList<>(Math.min(limit, symbols.size()));
+		for (int id = deleted.nextClearBit(0); id < symbols.size() && result.size() < limit; id = deleted.nextClearBit(id + 1)) {
+			result.add(symbols.get(id));
+		}
+		return result;
+	}
+
+	private IntList findCandidates(char[] query) {
+		if (query.length < 3)
+			return postings.get(query.length == 1 ? key(query[0]) : key(query[0], query[1]));
+		IntList[] lists = new IntList[query.length - 2];
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = postings.get(key(query[i], query[i + 1], query[i + 2]));
+			if (lists[i] == null)
+				return null;
+		}
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+		IntList result = lists[0];
+		for (int i = 1; i < lists.length && !result.isEmpty(); i++) {
+			result = intersect(result, lists[i]);
+		}
+		return result;
+	}
+
+	private static IntList intersect(IntList smaller, IntList larger) {
+		IntList result = new IntList(smaller.size());
+		int j = 0;
+		for (int i = 0; i < smaller.size() && j < larger.size(); i++) {
+			int id = smaller.getInt(i);
+			// Gallop through the larger list, since it is usually much longer
+			int step = 1;
+			while (j + step < larger.size() && larger.getInt(j + step) < id) {
+				j += step;
+				step <<= 1;
+			}
+			while (j < larger.size() && larger.getInt(j) < id) {
+				j++;
+			}
+			if (j < larger.size() && larger.getInt(j) == id)
+				result.addInt(id);
+		}
+		return result;
+	}
+
+	private int addSymbol(SymbolInformation symbol) {
+		Preconditions.checkNotNull(symbol, "symbol");
+		int id = symbols.size();
+		symbols.add(symbol);
+		for (long key : computeKeys(symbol.getName())) {
+			postings.computeIfAbsent(key, k -> new IntList()).addInt(id);
+		}
+		return id;
+	}
+
+	private void removeDocument(String uri) {
+		int[] ids = documents.remove(uri);
+		if (ids != null) {
+			for (int id : ids) {
+				deleted.set(id);
+				symbols.set(id, null);
+			}
+			deletedCount += ids.length;
+		}
+	}
+
+	/**
+	 * Rebuild the index without the deleted symbols.
+	 */
+	private void compact() {
+		Map<String, int[]> oldDocuments = new HashMap<>(documents);
+		List<SymbolInformation> oldSymbols = new ArrayList<>(symbols);
+		symbols.clear();
+		deleted.clear();
+		documents.clear();
+		postings.clear();
+		deletedCount = 0;
+		for (Map.Entry<String, int[]> entry : oldDocuments.entrySet()) {
+			int[] ids = entry.getValue();
+			int[] newIds = new int[ids.length];
+			for (int i = 0; i < ids.length; i++) {
+				newIds[i] = addSymbol(oldSymbols.get(ids[i]));
+			}
+			documents.put(entry.getKey(), newIds);
+		}
+	}
+
+	/**
+	 * Returns the lower-case letters and digits of the given text.
+	 */
+	private static char[] normalize(String text) {
+		char[] result = new char[text.length()];
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c))
+				result[length++] = Character.toLowerCase(c);
+		}
+		return length == result.length ? result : Arrays.copyOf(result, length);
+	}
+
+	/**
+	 * Returns whether the character at the given index starts a segment of the name, e.g. a camel hump or a
+	 * word after an underscore.
+	 */
+	static boolean isSegmentStart(String name, int index) {
+		char c = name.charAt(index);
+		if (!Character.isLetterOrDigit(c))
+			return false;
+		if (index == 0)
+			return true;
+		char previous = name.charAt(index - 1);
+		if (!Character.isLetterOrDigit(previous))
+			return true;
+		if (Character.isUpperCase(c))
+			return Character.isLowerCase(previous) || Character.isDigit(previous)
+					|| index + 1 < name.length() && Character.isLowerCase(name.charAt(index + 1));
+		return Character.isDigit(c) && !Character.isDigit(previous);
+	}
+
+	private static long[] computeKeys(String name) {
+		int length = 0;
+		char[] chars = new char[name.length()];
+		boolean[] segmentStarts = new boolean[name.length()];
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				segmentStarts[length] = isSegmentStart(name, i);
+				chars[length++] = Character.toLowerCase(c);
+			}
+		}
+		// nextStart[i] is the index of the first segment start after i, or -1
+		int[] nextStart = new int[length];
+		int next = -1;
+		for (int i = length - 1; i >= 0; i--) {
+			nextStart[i] = next;
+			if (segmentStarts[i])
+				next = i;
+		}
+		long[] keys = new long[16];
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int[] successors = { i + 1 < length ? i + 1 : -1, nextStart[i] };
+			if (segmentStarts[i]) {
+				keys = ensureCapacity(keys, count + 3);
+				keys[count++] = key(chars[i]);
+				for (int j : successors) {
+					if (j >= 0)
+						keys[count++] = key(chars[i], chars[j]);
+				}
+			}
+			for (int j : successors) {
+				if (j < 0)
+					continue;
+				int[] nextSuccessors = { j + 1 < length ? j + 1 : -1, nextStart[j] };
+				for (int k : nextSuccessors) {
+					if (k >= 0) {
+						keys = ensureCapacity(keys, count + 1);
+						keys[count++] = key(chars[i], chars[j], chars[k]);
+					}
+				}
+			}
+		}
+		Arrays.sort(keys, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || keys[unique - 1] != keys[i])
+				keys[unique++] = keys[i];
+		}
+		return Arrays.copyOf(keys, unique);
+	}
+
+	private static long[] ensureCapacity(long[] array, int capacity) {
+		return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+	}
+
+	private static long key(char c) {
+		return 1L << 48 | c;
+	}
+
+	private static long key(char c1, char c2) {
+		return 2L << 48 | (long) c1 << 16 | c2;
+	}
+
+	private static long key(char c1, char c2, char c3) {
+		return 3L << 48 | (long) c1 << 32 | (long) c2 << 16 | c3;
+	}
+
+	/**
+	 * Score how well the name matches the query, or return {@code -1} if the query characters do not occur
+	 * in the name in the same order. Matches at segment starts, consecutive matches and matches at the start
+	 * of the name score higher.
+	 */
+	static int score(char[] query, String name) {
+		int best = -1;
+		for (int start = 0; start < name.length(); start++) {
+			if (Character.toLowerCase(name.charAt(start)) != query[0])
+				continue;
+			int score = scoreFrom(query, name, start);
+			if (score > best)
+				best = score;
+			if (start == 0 && score >= 0 && query.length == 1)
+				break;
+		}
+		return best;
+	}
+
+	private static int scoreFrom(char[] query, String name, int start) {
+		int score = start == 0 ? 12 : isSegmentStart(name, start) ? 8 : 0;
+		int position = start;
+		for (int q = 1; q < query.length; q++) {
+			// Prefer a consecutive match, then the next segment start, then any later occurrence
+			int match = -1;
+			if (position + 1 < name.length() && Character.toLowerCase(name.charAt(position + 1)) == query[q]) {
+				match = position + 1;
+				score += 5;
+			} else {
+				for (int i = position + 1; i < name.length(); i++) {
+					if (Character.toLowerCase(name.charAt(i)) == query[q]) {
+						if (match < 0)
+							match = i;
+						if (isSegmentStart(name, i)) {
+							match = i;
+							break;
+						}
+					}
+				}
+				if (match < 0)
+					return -1;
+			}
+			score += isSegmentStart(name, match) ? 9 : 1;
+			position = match;
+		}
+		return score;
+	}
+
+	private static class Match implements Comparable<Match> {
+		final int id;
+		final int score;
+		final int length;
+
+		Match(int id, int score, int length) {
+			this.id = id;
+			this.score = score;
+			this.length = length;
+		}
+
+		boolean isWorseThan(int otherScore, int otherLength, int otherId) {
+			return compareTo(otherScore, otherLength, otherId) < 0;
+		}
+
+		private int compareTo(int otherScore, int otherLength, int otherId) {
+			if (score != otherScore)
+				return Integer.compare(score, otherScore);
+			// Shorter names and earlier symbols are better
+			if (length != otherLength)
+				return Integer.compare(otherLength, length);
+			return Integer.compare(otherId, id);
+		}
+
+		@Override
+		public int compareTo(Match other) {
+			return compareTo(other.score, other.length, other.id);
+		}
+	}
+
+}
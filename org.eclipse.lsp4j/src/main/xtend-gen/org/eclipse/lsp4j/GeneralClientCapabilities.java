@@ -11,6 +11,7 @@
  */
 package org.eclipse.lsp4j;
 
+import java.util.List;
 import org.eclipse.lsp4j.MarkdownCapabilities;
 import org.eclipse.lsp4j.RegularExpressionsCapabilities;
 import org.eclipse.xtext.xbase.lib.Pure;
@@ -36,6 +37,30 @@ public class GeneralClientCapabilities {
    */
   private MarkdownCapabilities markdown;
   
+  /**
+   * The position encodings supported by the client. Client and server
+   * have to agree on the same position encoding to ensure that offsets
+   * (e.g. character position in a line) are interpreted the same on both
+   * side.
+   * 
+   * To keep the protocol backwards compatible the following applies: if
+   * the value 'utf-16' is missing from the array of position encodings
+   * servers can assume that the client supports UTF-16. UTF-16 is
+   * therefore a mandatory encoding.
+   * 
+   * If omitted it defaults to ['utf-16'].
+   * 
+   * Implementation considerations: since the conversion from one encoding
+   * into another requires the content of the file / line the conversion
+   * is best done where the file is read which is usually on the server
+   * side.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  private List<String> positionEncodings;
+  
   /**
    * Client capabilities specific to regular expressions.
    * 
@@ -74,6 +99,59 @@ public class GeneralClientCapabilities {
     this.markdown = markdown;
   }
   
+  /**
+   * The position encodings supported by the client. Client and server
+   * have to agree on the same position encoding to ensure that offsets
+   * (e.g. character position in a line) are interpreted the same on both
+   * side.
+   * 
+   * To keep the protocol backwards compatible the following applies: if
+   * the value 'utf-16' is missing from the array of position encodings
+   * servers can assume that the client supports UTF-16. UTF-16 is
+   * therefore a mandatory encoding.
+   * 
+   * If omitted it defaults to ['utf-16'].
+   * 
+   * Implementation considerations: since the conversion from one encoding
+   * into another requires the content of the file / line the conversion
+   * is best done where the file is read which is usually on the server
+   * side.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  @Pure
+  public List<String> getPositionEncodings() {
+    return this.positionEncodings;
+  }
+  
+  /**
+   * The position encodings supported by the client. Client and server
+   * have to agree on the same position encoding to ensure that offsets
+   * (e.g. character position in a line) are interpreted the same on both
+   * side.
+   * 
+   * To keep the protocol backwards compatible the following applies: if
+   * the value 'utf-16' is missing from the array of position encodings
+   * servers can assume that the client supports UTF-16. UTF-16 is
+   * therefore a mandatory encoding.
+   * 
+   * If omitted it defaults to ['utf-16'].
+   * 
+   * Implementation considerations: since the conversion from one encoding
+   * into another requires the content of the file / line the conversion
+   * is best done where the file is read which is usually on the server
+   * side.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  public void setPositionEncodings(final List<String> positionEncodings) {
+    this.positionEncodings = positionEncodings;
+  }
+  
   @Override
   @Pure
   public boolean equals(final Object obj) {
@@ -94,6 +172,11 @@ public class GeneralClientCapabilities {
         return false;
     } else if (!this.markdown.equals(other.markdown))
       return false;
+    if (this.positionEncodings == null) {
+      if (other.positionEncodings != null)
+        return false;
+    } else if (!this.positionEncodings.equals(other.positionEncodings))
+      return false;
     return true;
   }
   
@@ -103,6 +186,7 @@ public class GeneralClientCapabilities {
     final int prime = 31;
     int result = 1;
     result = prime * result + ((this.regularExpressions== null) ? 0 : this.regularExpressions.hashCode());
-    return prime * result + ((this.markdown== null) ? 0 : this.markdown.hashCode());
+    result = prime * result + ((this.markdown== null) ? 0 : this.markdown.hashCode());
+    return prime * result + ((this.positionEncodings== null) ? 0 : this.positionEncodings.hashCode());
   }
 }
@@ -11,7 +11,9 @@
  */
 package org.eclipse.lsp4j;
 
+import com.google.gson.annotations.JsonAdapter;
 import java.util.List;
+import org.eclipse.lsp4j.adapters.IntListTypeAdapter;
 import org.eclipse.lsp4j.jsonrpc.validation.NonNull;
 import org.eclipse.lsp4j.util.Preconditions;
 import org.eclipse.xtext.xbase.lib.Pure;
@@ -33,6 +35,7 @@ public class SemanticTokens {
    * The actual tokens.
    */
   @NonNull
+  @JsonAdapter(IntListTypeAdapter.class)
   private List<Integer> data;
   
   public SemanticTokens(@NonNull final List<Integer> data) {
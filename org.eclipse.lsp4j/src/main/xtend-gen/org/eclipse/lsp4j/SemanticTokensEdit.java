@@ -11,7 +11,9 @@
  */
 package org.eclipse.lsp4j;
 
+import com.google.gson.annotations.JsonAdapter;
 import java.util.List;
+import org.eclipse.lsp4j.adapters.IntListTypeAdapter;
 import org.eclipse.xtext.xbase.lib.Pure;
 
 /**
@@ -32,6 +34,7 @@ public class SemanticTokensEdit {
   /**
    * The elements to insert.
    */
+  @JsonAdapter(IntListTypeAdapter.class)
   private List<Integer> data;
   
   public SemanticTokensEdit(final int start, final int deleteCount, final List<Integer> data) {
@@ -214,6 +214,21 @@ public class ServerCapabilities {
    */
   private Either<Boolean, MonikerRegistrationOptions> monikerProvider;
   
+  /**
+   * The position encoding the server picked from the encodings offered
+   * by the client via the client capability `general.positionEncodings`.
+   * 
+   * If the client didn't provide any position encodings the only valid
+   * value that a server can return is 'utf-16'.
+   * 
+   * If omitted it defaults to 'utf-16'.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  private String positionEncoding;
+  
   /**
    * Experimental server capabilities.
    */
@@ -923,6 +938,41 @@ public class ServerCapabilities {
     this.monikerProvider = Either.forRight(monikerProvider);
   }
   
+  /**
+   * The position encoding the server picked from the encodings offered
+   * by the client via the client capability `general.positionEncodings`.
+   * 
+   * If the client didn't provide any position encodings the only valid
+   * value that a server can return is 'utf-16'.
+   * 
+   * If omitted it defaults to 'utf-16'.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  @Pure
+  public String getPositionEncoding() {
+    return this.positionEncoding;
+  }
+  
+  /**
+   * The position encoding the server picked from the encodings offered
+   * by the client via the client capability `general.positionEncodings`.
+   * 
+   * If the client didn't provide any position encodings the only valid
+   * value that a server can return is 'utf-16'.
+   * 
+   * If omitted it defaults to 'utf-16'.
+   * 
+   * See {@link PositionEncodingKind} for allowed values.
+   * 
+   * Since 3.17.0
+   */
+  public void setPositionEncoding(final String positionEncoding) {
+    this.positionEncoding = positionEncoding;
+  }
+  
   /**
    * Experimental server capabilities.
    */
@@ -1093,6 +1143,11 @@ public class ServerCapabilities {
         return false;
     } else if (!this.monikerProvider.equals(other.monikerProvider))
       return false;
+    if (this.positionEncoding == null) {
+      if (other.positionEncoding != null)
+        return false;
+    } else if (!this.positionEncoding.equals(other.positionEncoding))
+      return false;
     if (this.experimental == null) {
       if (other.experimental != null)
         return false;
@@ -1135,6 +1190,7 @@ public class ServerCapabilities {
     result = prime * result + ((this.linkedEditingRangeProvider== null) ? 0 : this.linkedEditingRangeProvider.hashCode());
     result = prime * result + ((this.semanticTokensProvider== null) ? 0 : this.semanticTokensProvider.hashCode());
     result = prime * result + ((this.monikerProvider== null) ? 0 : this.monikerProvider.hashCode());
+    result = prime * result + ((this.positionEncoding== null) ? 0 : this.positionEncoding.hashCode());
     return prime * result + ((this.experimental== null) ? 0 : this.experimental.hashCode());
   }
 }
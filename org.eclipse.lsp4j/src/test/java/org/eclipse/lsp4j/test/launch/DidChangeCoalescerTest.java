@@ -0,0 +1,107 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.launch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.HoverParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.InboundMessageQueue;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.launch.DidChangeCoalescer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DidChangeCoalescerTest {
+
+	private static NotificationMessage didChange(String uri, int version, TextDocumentContentChangeEvent... changes) {
+		NotificationMessage message = new NotificationMessage();
+		message.setMethod("textDocument/didChange");
+		message.setParams(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				new ArrayList<>(Arrays.asList(changes))));
+		return message;
+	}
+
+	private static TextDocumentContentChangeEvent insert(int line, int character, String text) {
+		Position position = new Position(line, character);
+		return new TextDocumentContentChangeEvent(new Range(position, position), null, text);
+	}
+
+	private static DidChangeTextDocumentParams params(Message message) {
+		return (DidChangeTextDocumentParams) ((NotificationMessage) message).getParams();
+	}
+
+	@Test
+	public void testMergeChanges() {
+		DidChangeCoalescer coalescer = new DidChangeCoalescer();
+		Message merged = coalescer.coalesce(didChange("file:///a", 1, insert(0, 0, "a")),
+				didChange("file:///a", 2, insert(0, 1, "b"), insert(0, 2, "c")));
+		DidChangeTextDocumentParams params = params(merged);
+		Assert.assertEquals("file:///a", params.getTextDocument().getUri());
+		Assert.assertEquals(Integer.valueOf(2), params.getTextDocument().getVersion());
+		Assert.assertEquals(3, params.getContentChanges().size());
+		Assert.assertEquals("a", params.getContentChanges().get(0).getText());
+		Assert.assertEquals("c", params.getContentChanges().get(2).getText());
+	}
+
+	@Test
+	public void testFullChangeDropsPreviousChanges() {
+		DidChangeCoalescer coalescer = new DidChangeCoalescer();
+		Message merged = coalescer.coalesce(didChange("file:///a", 1, insert(0, 0, "a")),
+				didChange("file:///a", 2, new TextDocumentContentChangeEvent("full"), insert(0, 4, "!")));
+		List<TextDocumentContentChangeEvent> changes = params(merged).getContentChanges();
+		Assert.assertEquals(2, changes.size());
+		Assert.assertEquals("full", changes.get(0).getText());
+	}
+
+	@Test
+	public void testQueue() {
+		List<Message> handled = new ArrayList<>();
+		List<Runnable> tasks = new ArrayList<>();
+		InboundMessageQueue queue = new InboundMessageQueue(handled::add, tasks::add, new DidChangeCoalescer());
+
+		// The first notification is handled right away
+		queue.consume(didChange("file:///a", 0, insert(0, 0, "0")));
+		queue.consume(didChange("file:///a", 1, insert(0, 0, "a")));
+		queue.consume(didChange("file:///b", 1, insert(0, 0, "x")));
+		queue.consume(didChange("file:///a", 2, insert(0, 1, "b")));
+		RequestMessage hover = new RequestMessage();
+		hover.setId(1);
+		hover.setMethod("textDocument/hover");
+		hover.setParams(new HoverParams(new TextDocumentIdentifier("file:///a"), new Position(0, 0)));
+		queue.consume(hover);
+		queue.consume(didChange("file:///a", 3, insert(0, 2, "c")));
+		queue.consume(didChange("file:///b", 2, insert(0, 1, "y")));
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+
+		Assert.assertEquals(5, handled.size());
+		handled.remove(0);
+		Assert.assertEquals(Integer.valueOf(2), params(handled.get(0)).getTextDocument().getVersion());
+		Assert.assertEquals(2, params(handled.get(0)).getContentChanges().size());
+		Assert.assertEquals("file:///b", params(handled.get(1)).getTextDocument().getUri());
+		Assert.assertEquals(2, params(handled.get(1)).getContentChanges().size());
+		Assert.assertSame(hover, handled.get(2));
+		Assert.assertEquals(Integer.valueOf(3), params(handled.get(3)).getTextDocument().getVersion());
+	}
+
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.launch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.FoldingRangeRequestParams;
+import org.eclipse.lsp4j.HoverParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.launch.DocumentResponseCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DocumentResponseCacheTest {
+
+	static class TestEndpoint implements Endpoint {
+
+		List<CompletableFuture<Object>> requests = new ArrayList<>();
+		List<String> notifications = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			requests.add(future);
+			return future;
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+			notifications.add(method);
+		}
+
+	}
+
+	private static void didOpen(Endpoint endpoint, String uri, int version) {
+		endpoint.notify("textDocument/didOpen", new DidOpenTextDocumentParams(
+				new TextDocumentItem(uri, "plaintext", version, "text")));
+	}
+
+	private static void didChange(Endpoint endpoint, String uri, int version) {
+		endpoint.notify("textDocument/didChange", new DidChangeTextDocumentParams(
+				new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent("text"))));
+	}
+
+	private static CompletableFuture<?> foldingRange(Endpoint endpoint, String uri) {
+		return endpoint.request("textDocument/foldingRange", new FoldingRangeRequestParams(new TextDocumentIdentifier(uri)));
+	}
+
+	@Test
+	public void testCacheByVersion() throws Exception {
+		TestEndpoint delegate = new TestEndpoint();
+		DocumentResponseCache cache = new DocumentResponseCache(delegate);
+		didOpen(cache, "file:///a", 1);
+		Assert.assertEquals(Collections.singletonList("textDocument/didOpen"), delegate.notifications);
+
+		CompletableFuture<?> first = foldingRange(cache, "file:///a");
+		delegate.requests.get(0).complete(Arrays.asList("range"));
+		Assert.assertEquals(Arrays.asList("range"), foldingRange(cache, "file:///a").get());
+		Assert.assertEquals(1, delegate.requests.size());
+		Assert.assertEquals(Arrays.asList("range"), first.get());
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(0.5, cache.getHitRate(), 0);
+
+		didChange(cache, "file:///a", 2);
+		Assert.assertEquals(0, cache.size());
+		foldingRange(cache, "file:///a");
+		Assert.assertEquals(2, delegate.requests.size());
+
+		// Responses for documents that are not open and other methods are not cached
+		foldingRange(cache, "file:///b");
+		delegate.requests.get(2).complete(Arrays.asList("range"));
+		foldingRange(cache, "file:///b");
+		cache.request("textDocument/hover", new HoverParams(new TextDocumentIdentifier("file:///a"), new Position()));
+		delegate.requests.get(4).complete("hover");
+		cache.request("textDocument/hover", new HoverParams(new TextDocumentIdentifier("file:///a"), new Position()));
+		Assert.assertEquals(6, delegate.requests.size());
+	}
+
+	@Test
+	public void testChangeWhileComputing() {
+		TestEndpoint delegate = new TestEndpoint();
+		DocumentResponseCache cache = new DocumentResponseCache(delegate);
+		didOpen(cache, "file:///a", 1);
+
+		foldingRange(cache, "file:///a");
+		didChange(cache, "file:///a", 2);
+		delegate.requests.get(0).complete(Arrays.asList("outdated"));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testClose() {
+		TestEndpoint delegate = new TestEndpoint();
+		DocumentResponseCache cache = new DocumentResponseCache(delegate);
+		didOpen(cache, "file:///a", 1);
+		foldingRange(cache, "file:///a");
+		delegate.requests.get(0).complete(Arrays.asList("range"));
+		Assert.assertEquals(1, cache.size());
+
+		cache.notify("textDocument/didClose", new DidCloseTextDocumentParams(new TextDocumentIdentifier("file:///a")));
+		Assert.assertEquals(0, cache.size());
+		foldingRange(cache, "file:///a");
+		delegate.requests.get(1).complete(Arrays.asList("range"));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		TestEndpoint delegate = new TestEndpoint();
+		DocumentResponseCache cache = new DocumentResponseCache(delegate, DocumentResponseCache.DEFAULT_METHODS, 2, 10,
+				DocumentResponseCache::estimateWeight);
+		for (int i = 0; i < 3; i++) {
+			didOpen(cache, "file:///" + i, 1);
+			foldingRange(cache, "file:///" + i);
+			delegate.requests.get(i).complete(Arrays.asList("range"));
+		}
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+
+		// The least recently used response is evicted
+		foldingRange(cache, "file:///1");
+		didOpen(cache, "file:///3", 1);
+		foldingRange(cache, "file:///3");
+		delegate.requests.get(3).complete(Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(10, cache.getTotalWeight());
+		foldingRange(cache, "file:///3");
+		foldingRange(cache, "file:///1");
+		Assert.assertEquals(3, cache.getHitCount());
+		foldingRange(cache, "file:///2");
+		Assert.assertEquals(5, delegate.requests.size());
+	}
+
+	@Test
+	public void testProgressTokens() {
+		TestEndpoint delegate = new TestEndpoint();
+		DocumentResponseCache cache = new DocumentResponseCache(delegate);
+		didOpen(cache, "file:///a", 1);
+
+		// Requests that expect progress or partial results are forwarded and not cached
+		FoldingRangeRequestParams workDone = new FoldingRangeRequestParams(new TextDocumentIdentifier("file:///a"));
+		workDone.setWorkDoneToken("token");
+		cache.request("textDocument/foldingRange", workDone);
+		delegate.requests.get(0).complete(Arrays.asList("range"));
+		FoldingRangeRequestParams partialResult = new FoldingRangeRequestParams(new TextDocumentIdentifier("file:///a"));
+		partialResult.setPartialResultToken("token");
+		cache.request("textDocument/foldingRange", partialResult);
+		delegate.requests.get(1).complete(Arrays.asList("range"));
+		Assert.assertEquals(0, cache.size());
+
+		// A cached response is not returned for a request that expects progress
+		foldingRange(cache, "file:///a");
+		delegate.requests.get(2).complete(Arrays.asList("range"));
+		Assert.assertEquals(1, cache.size());
+		cache.request("textDocument/foldingRange", workDone);
+		Assert.assertEquals(4, delegate.requests.size());
+		Assert.assertEquals(0, cache.getHitCount());
+	}
+
+}
@@ -0,0 +1,163 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.launch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.DidCloseTextDocumentParams;
+import org.eclipse.lsp4j.HoverParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.InboundMessageQueue;
+import org.eclipse.lsp4j.jsonrpc.RemoteEndpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.eclipse.lsp4j.launch.StaleRequestCanceller;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StaleRequestCancellerTest {
+
+	static class TestEndpoint implements Endpoint {
+
+		Map<String, CompletableFuture<Object>> requests = new LinkedHashMap<>();
+		List<String> notifications = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			requests.put(method + " " + requests.size(), future);
+			return future;
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+			notifications.add(method);
+		}
+
+	}
+
+	private static RequestMessage hover(String id, String uri) {
+		RequestMessage message = new RequestMessage();
+		message.setId(id);
+		message.setMethod("textDocument/hover");
+		message.setParams(new HoverParams(new TextDocumentIdentifier(uri), new Position(0, 0)));
+		return message;
+	}
+
+	private static NotificationMessage didChange(String uri, int version) {
+		NotificationMessage message = new NotificationMessage();
+		message.setMethod("textDocument/didChange");
+		message.setParams(new DidChangeTextDocumentParams(new VersionedTextDocumentIdentifier(uri, version),
+				Collections.singletonList(new TextDocumentContentChangeEvent("text"))));
+		return message;
+	}
+
+	private static ResponseMessage response(List<Message> sent, String id) {
+		for (Message message : sent) {
+			if (message instanceof ResponseMessage && id.equals(((ResponseMessage) message).getId()))
+				return (ResponseMessage) message;
+		}
+		return null;
+	}
+
+	@Test
+	public void testCancelRequestsInProgress() {
+		TestEndpoint local = new TestEndpoint();
+		List<Message> sent = new ArrayList<>();
+		RemoteEndpoint remoteEndpoint = new RemoteEndpoint(sent::add, local);
+		StaleRequestCanceller canceller = new StaleRequestCanceller(remoteEndpoint, remoteEndpoint);
+
+		canceller.consume(hover("1", "file:///a"));
+		canceller.consume(hover("2", "file:///b"));
+		canceller.consume(didChange("file:///a", 2));
+		Assert.assertEquals(Integer.valueOf(2), canceller.getVersion("file:///a"));
+
+		Assert.assertEquals(1, sent.size());
+		ResponseMessage response = response(sent, "1");
+		Assert.assertEquals(ResponseErrorCode.ContentModified.getValue(), response.getError().getCode());
+		Assert.assertTrue(local.requests.get("textDocument/hover 0").isCancelled());
+		Assert.assertFalse(local.requests.get("textDocument/hover 1").isDone());
+
+		// Requests received after the change are not affected by it
+		canceller.consume(hover("3", "file:///a"));
+		Assert.assertFalse(local.requests.get("textDocument/hover 2").isDone());
+
+		NotificationMessage didClose = new NotificationMessage();
+		didClose.setMethod("textDocument/didClose");
+		didClose.setParams(new DidCloseTextDocumentParams(new TextDocumentIdentifier("file:///b")));
+		canceller.consume(didClose);
+		Assert.assertEquals(ResponseErrorCode.ContentModified.getValue(), response(sent, "2").getError().getCode());
+		Assert.assertNull(response(sent, "3"));
+	}
+
+	@Test
+	public void testCancelQueuedRequests() {
+		TestEndpoint local = new TestEndpoint();
+		List<Message> sent = new ArrayList<>();
+		RemoteEndpoint remoteEndpoint = new RemoteEndpoint(sent::add, local);
+		List<Runnable> tasks = new ArrayList<>();
+		InboundMessageQueue queue = new InboundMessageQueue(remoteEndpoint, tasks::add);
+		StaleRequestCanceller canceller = new StaleRequestCanceller(queue, remoteEndpoint);
+
+		canceller.consume(hover("1", "file:///a"));
+		canceller.consume(didChange("file:///a", 2));
+		canceller.consume(hover("2", "file:///a"));
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+
+		// The stale request is answered without invoking the local endpoint
+		Assert.assertEquals(1, local.requests.size());
+		Assert.assertEquals(Collections.singletonList("textDocument/didChange"), local.notifications);
+		Assert.assertEquals(ResponseErrorCode.ContentModified.getValue(), response(sent, "1").getError().getCode());
+		Assert.assertNull(response(sent, "2"));
+	}
+
+	@Test
+	public void testForgetAnsweredRequests() {
+		TestEndpoint local = new TestEndpoint();
+		List<Message> sent = new ArrayList<>();
+		RemoteEndpoint remoteEndpoint = new RemoteEndpoint(sent::add, local);
+		StaleRequestCanceller canceller = new StaleRequestCanceller(remoteEndpoint, remoteEndpoint);
+
+		canceller.consume(hover("1", "file:///a"));
+		canceller.consume(hover("2", "file:///a"));
+		Assert.assertEquals(2, canceller.getPendingRequestCount());
+		local.requests.get("textDocument/hover 0").complete(null);
+		Assert.assertEquals(1, canceller.getPendingRequestCount());
+
+		// Only the unanswered request is cancelled
+		canceller.consume(didChange("file:///a", 2));
+		Assert.assertEquals(0, canceller.getPendingRequestCount());
+		Assert.assertEquals(2, sent.size());
+		Assert.assertNull(response(sent, "1").getError());
+		Assert.assertEquals(ResponseErrorCode.ContentModified.getValue(), response(sent, "2").getError().getCode());
+
+		// A late cancellation of an answered request is ignored
+		Assert.assertFalse(remoteEndpoint.cancelReceivedRequest("1", null));
+		Assert.assertEquals(2, sent.size());
+	}
+
+}
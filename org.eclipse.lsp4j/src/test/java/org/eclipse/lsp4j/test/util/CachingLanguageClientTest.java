@@ -0,0 +1,192 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.ConfigurationItem;
+import org.eclipse.lsp4j.ConfigurationParams;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.RegistrationParams;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.jsonrpc.CancellationToken;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.util.CachingLanguageClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachingLanguageClientTest {
+
+	static class TestClient implements LanguageClient {
+
+		List<ConfigurationParams> requests = new ArrayList<>();
+		List<CompletableFuture<List<Object>>> responses = new ArrayList<>();
+		List<RegistrationParams> registrations = new ArrayList<>();
+
+		@Override
+		public CompletableFuture<List<Object>> configuration(ConfigurationParams configurationParams) {
+			requests.add(configurationParams);
+			CompletableFuture<List<Object>> response = new CompletableFuture<>();
+			responses.add(response);
+			// Like the remote proxy, cancel the request together with the current token
+			CancellationToken token = CancellationToken.current();
+			if (token != null)
+				token.addCancelListener(() -> response.cancel(true));
+			return response;
+		}
+
+		@Override
+		public CompletableFuture<Void> registerCapability(RegistrationParams params) {
+			registrations.add(params);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return null;
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+
+	}
+
+	private static ConfigurationParams params(String... sections) {
+		List<ConfigurationItem> items = new ArrayList<>();
+		for (String section : sections) {
+			ConfigurationItem item = new ConfigurationItem();
+			item.setScopeUri("file:///a");
+			item.setSection(section);
+			items.add(item);
+		}
+		return new ConfigurationParams(items);
+	}
+
+	private static List<String> sections(ConfigurationParams params) {
+		List<String> result = new ArrayList<>();
+		for (ConfigurationItem item : params.getItems()) {
+			result.add(item.getSection());
+		}
+		return result;
+	}
+
+	@Test
+	public void testCacheAndBatch() throws Exception {
+		TestClient delegate = new TestClient();
+		CachingLanguageClient client = new CachingLanguageClient(delegate);
+
+		CompletableFuture<List<Object>> first = client.configuration(params("a", "b"));
+		CompletableFuture<List<Object>> second = client.configuration(params("b", "c"));
+		CompletableFuture<List<Object>> third = client.configuration(params("d"));
+		Assert.assertEquals(1, delegate.requests.size());
+		Assert.assertEquals(Arrays.asList("a", "b"), sections(delegate.requests.get(0)));
+
+		// Items requested while a request is in progress are sent together
+		delegate.responses.get(0).complete(Arrays.asList("A", "B"));
+		Assert.assertEquals(Arrays.asList("A", "B"), first.get());
+		Assert.assertFalse(second.isDone());
+		Assert.assertEquals(2, delegate.requests.size());
+		Assert.assertEquals(Arrays.asList("c", "d"), sections(delegate.requests.get(1)));
+
+		delegate.responses.get(1).complete(Arrays.asList("C", "D"));
+		Assert.assertEquals(Arrays.asList("B", "C"), second.get());
+		Assert.assertEquals(Arrays.asList("D"), third.get());
+
+		Assert.assertEquals(Arrays.asList("D", "A"), client.configuration(params("d", "a")).get());
+		Assert.assertEquals(2, delegate.requests.size());
+		Assert.assertEquals(2, client.getRequestCount());
+		Assert.assertEquals(3, client.getHitCount());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		TestClient delegate = new TestClient();
+		CachingLanguageClient client = new CachingLanguageClient(delegate);
+
+		client.configuration(params("a"));
+		delegate.responses.get(0).complete(Arrays.asList("A"));
+		client.invalidate();
+		CompletableFuture<List<Object>> result = client.configuration(params("a"));
+		Assert.assertEquals(2, delegate.requests.size());
+		delegate.responses.get(1).complete(Arrays.asList("A2"));
+		Assert.assertEquals(Arrays.asList("A2"), result.get());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		TestClient delegate = new TestClient();
+		CachingLanguageClient client = new CachingLanguageClient(delegate);
+
+		CompletableFuture<List<Object>> failed = client.configuration(params("a"));
+		delegate.responses.get(0).completeExceptionally(new IllegalStateException());
+		Assert.assertTrue(failed.isCompletedExceptionally());
+
+		// Failed requests are not cached
+		CompletableFuture<List<Object>> result = client.configuration(params("a"));
+		Assert.assertEquals(2, delegate.requests.size());
+		delegate.responses.get(1).complete(Arrays.asList("A"));
+		Assert.assertEquals(Arrays.asList("A"), result.get());
+	}
+
+	@Test
+	public void testRegister() {
+		TestClient delegate = new TestClient();
+		CachingLanguageClient client = new CachingLanguageClient(delegate);
+		client.registerForConfigurationChanges();
+		Assert.assertEquals(CachingLanguageClient.DID_CHANGE_CONFIGURATION_METHOD,
+				delegate.registrations.get(0).getRegistrations().get(0).getMethod());
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	public void testCancelOneOfConcurrentLookups() throws Exception {
+		TestClient delegate = new TestClient();
+		CachingLanguageClient client = new CachingLanguageClient(delegate);
+
+		CancellationToken firstToken = new CancellationToken();
+		CompletableFuture<List<Object>> first;
+		try (CancellationToken.Scope scope = firstToken.enter()) {
+			first = client.configuration(params("a"));
+		}
+		CompletableFuture<List<Object>> second;
+		try (CancellationToken.Scope scope = new CancellationToken().enter()) {
+			second = client.configuration(params("a"));
+		}
+		Assert.assertEquals(1, delegate.requests.size());
+
+		// Cancelling the request of the first caller does not cancel the shared request
+		firstToken.cancel();
+		Assert.assertFalse(delegate.responses.get(0).isCancelled());
+		delegate.responses.get(0).complete(Arrays.asList("A"));
+		Assert.assertEquals(Arrays.asList("A"), first.get());
+		Assert.assertEquals(Arrays.asList("A"), second.get());
+	}
+
+}
@@ -0,0 +1,157 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.lsp4j.DocumentHighlight;
+import org.eclipse.lsp4j.DocumentHighlightKind;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.adapters.CompactRangeListAdapters;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.util.CompactDocumentHighlightList;
+import org.eclipse.lsp4j.util.CompactLocationList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public class CompactRangeListTest {
+
+	private static Location location(String uri, int startLine, int startChar, int endLine, int endChar) {
+		return new Location(uri, new Range(new Position(startLine, startChar), new Position(endLine, endChar)));
+	}
+
+	private static Gson createGson(boolean replaceLists) {
+		return new MessageJsonHandler(Collections.emptyMap(), gsonBuilder -> {
+			gsonBuilder.registerTypeAdapterFactory(new CompactRangeListAdapters.Factory(replaceLists));
+		}).getGson();
+	}
+
+	@Test
+	public void testLocationListOperations() {
+		CompactLocationList list = new CompactLocationList(1);
+		list.add(location("file:///a", 1, 2, 1, 5));
+		list.add("file:///b", 3, 0, 4, 1);
+		list.add(0, location("file:///a", 0, 0, 0, 1));
+		Assert.assertEquals(Arrays.asList(
+				location("file:///a", 0, 0, 0, 1),
+				location("file:///a", 1, 2, 1, 5),
+				location("file:///b", 3, 0, 4, 1)), list);
+		Assert.assertEquals(2, list.getUriTable().length);
+		Assert.assertEquals(4, list.getEndLine(2));
+
+		Assert.assertEquals(location("file:///a", 1, 2, 1, 5), list.remove(1));
+		list.set(0, location("file:///c", 7, 7, 7, 8));
+		Assert.assertEquals(Arrays.asList(
+				location("file:///c", 7, 7, 7, 8),
+				location("file:///b", 3, 0, 4, 1)), list);
+
+		list.sort(Comparator.comparing(Location::getUri));
+		Assert.assertEquals("file:///b", list.getUri(0));
+	}
+
+	@Test
+	public void testSetInvalidLocation() {
+		CompactLocationList list = new CompactLocationList();
+		list.add(location("file:///a", 1, 2, 1, 5));
+		Location invalid = new Location();
+		invalid.setRange(new Range(new Position(7, 7), new Position(7, 8)));
+		try {
+			list.set(0, invalid);
+			Assert.fail("Expected a NullPointerException");
+		} catch (NullPointerException exception) {
+			// The list is left unchanged
+			Assert.assertEquals(Arrays.asList(location("file:///a", 1, 2, 1, 5)), list);
+		}
+	}
+
+	@Test
+	public void testLocationListFromCollection() {
+		List<Location> locations = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			locations.add(location("file:///" + (i % 3), i, i, i, i + 1));
+		}
+		CompactLocationList list = new CompactLocationList(locations);
+		Assert.assertEquals(locations, list);
+		Assert.assertEquals(3, list.getUriTable().length);
+	}
+
+	@Test
+	public void testSerializeLocationList() {
+		CompactLocationList list = new CompactLocationList();
+		list.add("file:///a", 1, 2, 1, 5);
+		list.add("file:///b", 3, 0, 4, 1);
+		String expected = "[{\"uri\":\"file:///a\",\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}}},"
+				+ "{\"uri\":\"file:///b\",\"range\":{\"start\":{\"line\":3,\"character\":0},\"end\":{\"line\":4,\"character\":1}}}]";
+		Assert.assertEquals(expected, createGson(false).toJson(list));
+		// Without the factory the list is serialized element by element
+		Assert.assertEquals(expected, new MessageJsonHandler(Collections.emptyMap()).getGson().toJson(list));
+	}
+
+	@Test
+	public void testParseLocationList() {
+		String json = "[{\"uri\":\"file:///a\",\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}}},"
+				+ "{\"range\":{\"end\":{\"character\":1,\"line\":4},\"start\":{\"line\":3,\"character\":0}},\"uri\":\"file:///a\",\"other\":true}]";
+		List<? extends Location> parsed = createGson(true).fromJson(json, new TypeToken<List<? extends Location>>() {}.getType());
+		Assert.assertTrue(parsed instanceof CompactLocationList);
+		Assert.assertEquals(Arrays.asList(location("file:///a", 1, 2, 1, 5), location("file:///a", 3, 0, 4, 1)), parsed);
+		Assert.assertEquals(1, ((CompactLocationList) parsed).getUriTable().length);
+
+		parsed = createGson(false).fromJson(json, new TypeToken<List<? extends Location>>() {}.getType());
+		Assert.assertFalse(parsed instanceof CompactLocationList);
+	}
+
+	@Test
+	public void testDocumentHighlightList() {
+		CompactDocumentHighlightList list = new CompactDocumentHighlightList();
+		list.add(1, 2, 1, 5, DocumentHighlightKind.Write);
+		list.add(new DocumentHighlight(new Range(new Position(3, 0), new Position(3, 4))));
+		Assert.assertEquals(DocumentHighlightKind.Write, list.getKind(0));
+		Assert.assertNull(list.get(1).getKind());
+
+		Gson gson = createGson(true);
+		String json = gson.toJson(list);
+		Assert.assertEquals("[{\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}},\"kind\":3},"
+				+ "{\"range\":{\"start\":{\"line\":3,\"character\":0},\"end\":{\"line\":3,\"character\":4}}}]", json);
+		List<DocumentHighlight> parsed = gson.fromJson(json, new TypeToken<List<DocumentHighlight>>() {}.getType());
+		Assert.assertTrue(parsed instanceof CompactDocumentHighlightList);
+		Assert.assertEquals(list, parsed);
+	}
+
+	@Test
+	public void testSerializeIncompleteElements() {
+		// Plain lists may contain elements without a range, which are written like the default adapters do
+		Location location = new Location();
+		location.setUri("file:///a");
+		List<Location> locations = Arrays.asList(location, null);
+		DocumentHighlight highlight = new DocumentHighlight();
+		highlight.setKind(DocumentHighlightKind.Read);
+		List<DocumentHighlight> highlights = Collections.singletonList(highlight);
+		Gson gson = createGson(true);
+		Gson defaultGson = new MessageJsonHandler(Collections.emptyMap()).getGson();
+		Type locationsType = new TypeToken<List<Location>>() {}.getType();
+		Type highlightsType = new TypeToken<List<DocumentHighlight>>() {}.getType();
+		Assert.assertEquals(defaultGson.toJson(locations, locationsType), gson.toJson(locations, locationsType));
+		Assert.assertEquals(defaultGson.toJson(highlights, highlightsType), gson.toJson(highlights, highlightsType));
+		Assert.assertEquals("[{\"uri\":\"file:///a\"},null]", gson.toJson(locations, locationsType));
+	}
+
+}
@@ -0,0 +1,78 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.util.CompletionMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompletionMatcherTest {
+
+	private static List<CompletionItem> items(String... labels) {
+		return Arrays.stream(labels).map(CompletionItem::new).collect(Collectors.toList());
+	}
+
+	private static List<String> labels(List<CompletionItem> items) {
+		return items.stream().map(CompletionItem::getLabel).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testScore() {
+		CompletionMatcher matcher = new CompletionMatcher(items());
+		Assert.assertNotEquals(CompletionMatcher.NO_MATCH, matcher.score("gv", "getValue"));
+		Assert.assertNotEquals(CompletionMatcher.NO_MATCH, matcher.score("val", "get_value"));
+		// The first character must match at the start of a word
+		Assert.assertEquals(CompletionMatcher.NO_MATCH, matcher.score("et", "getValue"));
+		Assert.assertEquals(CompletionMatcher.NO_MATCH, matcher.score("gx", "getValue"));
+		Assert.assertTrue(matcher.score("get", "getValue") > matcher.score("get", "forgetAll_get"));
+		Assert.assertTrue(matcher.score("Get", "GetValue") > matcher.score("Get", "getValue"));
+		Assert.assertTrue(matcher.score("gv", "getValue") > matcher.score("gv", "getvalue"));
+	}
+
+	@Test
+	public void testMatchAndRank() {
+		List<CompletionItem> items = items("toString", "getValue", "setValue", "getVersion", "valueOf");
+		items.get(0).setFilterText("toString()");
+		CompletionMatcher matcher = new CompletionMatcher(items);
+
+		List<CompletionItem> result = matcher.match("v");
+		Assert.assertEquals(Arrays.asList("valueOf", "getValue", "getVersion", "setValue"), labels(result));
+		Assert.assertEquals(Arrays.asList("0", "1", "2", "3"),
+				result.stream().map(CompletionItem::getSortText).collect(Collectors.toList()));
+
+		result = matcher.match("ge");
+		Assert.assertEquals(Arrays.asList("getValue", "getVersion"), labels(result));
+
+		// The prefix is extended, so only the previous matches are considered
+		result = matcher.match("getVa");
+		Assert.assertEquals(Arrays.asList("getValue"), labels(result));
+
+		// Deleting characters starts from all items again
+		result = matcher.match("");
+		Assert.assertEquals(5, result.size());
+		Assert.assertEquals(Arrays.asList("getValue", "getVersion", "setValue", "toString", "valueOf"), labels(result));
+	}
+
+	@Test
+	public void testSortTextWidth() {
+		CompletionMatcher matcher = new CompletionMatcher(items("a1", "a2", "a3", "a4", "a5", "a6", "a7", "a8", "a9", "a10", "a11"));
+		List<CompletionItem> result = matcher.match("a");
+		Assert.assertEquals("00", result.get(0).getSortText());
+		Assert.assertEquals("10", result.get(10).getSortText());
+	}
+
+}
@@ -0,0 +1,198 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.MessageActionItem;
+import org.eclipse.lsp4j.MessageParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ShowMessageRequestParams;
+import org.eclipse.lsp4j.jsonrpc.TimerWheel;
+import org.eclipse.lsp4j.services.LanguageClient;
+import org.eclipse.lsp4j.util.DiagnosticsPublisher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiagnosticsPublisherTest {
+
+	private static final long TIMEOUT = 2000;
+
+	static class TestClient implements LanguageClient {
+
+		List<PublishDiagnosticsParams> published = Collections.synchronizedList(new ArrayList<>());
+		List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void telemetryEvent(Object object) {
+		}
+
+		@Override
+		public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+			threads.add(Thread.currentThread().getName());
+			published.add(diagnostics);
+		}
+
+		@Override
+		public void showMessage(MessageParams messageParams) {
+		}
+
+		@Override
+		public CompletableFuture<MessageActionItem> showMessageRequest(ShowMessageRequestParams requestParams) {
+			return null;
+		}
+
+		@Override
+		public void logMessage(MessageParams message) {
+		}
+
+	}
+
+	private static PublishDiagnosticsParams diagnostics(String uri, String... messages) {
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		for (String message : messages) {
+			diagnostics.add(new Diagnostic(new Range(new Position(0, 0), new Position(0, 1)), message));
+		}
+		return new PublishDiagnosticsParams(uri, diagnostics);
+	}
+
+	private static void waitFor(TestClient client, int count) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (client.published.size() < count && System.currentTimeMillis() - start < TIMEOUT) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testSupersede() throws Exception {
+		TestClient client = new TestClient();
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(client, 500, TimeUnit.MILLISECONDS,
+				new TimerWheel(10, TimeUnit.MILLISECONDS, 64));
+
+		publisher.publish(diagnostics("file:///a", "first"));
+		publisher.publish(diagnostics("file:///a", "second"));
+		publisher.publish(diagnostics("file:///a", "third"));
+		publisher.publish(diagnostics("file:///b", "other"));
+		Assert.assertEquals(2, client.published.size());
+		Assert.assertEquals("file:///b", client.published.get(1).getUri());
+
+		// Only the latest diagnostics are sent after the window
+		waitFor(client, 3);
+		Assert.assertEquals(3, client.published.size());
+		Assert.assertEquals("third", client.published.get(2).getDiagnostics().get(0).getMessage());
+		Assert.assertEquals(1, publisher.getSupersededCount());
+		Assert.assertEquals(3, publisher.getSentCount());
+	}
+
+	@Test
+	public void testSendOnExecutor() throws Exception {
+		TestClient client = new TestClient();
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "diagnostics"));
+		try {
+			DiagnosticsPublisher publisher = new DiagnosticsPublisher(client, 500, TimeUnit.MILLISECONDS,
+					new TimerWheel(10, TimeUnit.MILLISECONDS, 64), executor);
+
+			publisher.publish(diagnostics("file:///a", "first"));
+			publisher.publish(diagnostics("file:///a", "second"));
+			waitFor(client, 2);
+
+			// Held back diagnostics are sent by the executor, not by the timer thread
+			Assert.assertEquals(2, client.published.size());
+			Assert.assertEquals(Thread.currentThread().getName(), client.threads.get(0));
+			Assert.assertEquals("diagnostics", client.threads.get(1));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDropDuplicates() {
+		TestClient client = new TestClient();
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(client, 1, TimeUnit.HOURS);
+
+		publisher.publish(diagnostics("file:///a", "first"));
+		publisher.publish(diagnostics("file:///a", "first"));
+		Assert.assertEquals(1, client.published.size());
+		Assert.assertEquals(1, publisher.getDuplicateCount());
+
+		// Publishing the sent diagnostics again discards the held back ones
+		publisher.publish(diagnostics("file:///a", "second"));
+		publisher.publish(diagnostics("file:///a", "first"));
+		publisher.flush();
+		Assert.assertEquals(1, client.published.size());
+	}
+
+	@Test
+	public void testFlush() {
+		TestClient client = new TestClient();
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(client, 1, TimeUnit.HOURS);
+
+		publisher.publish(diagnostics("file:///a", "first"));
+		publisher.publish(diagnostics("file:///a", "second"));
+		publisher.publish(diagnostics("file:///b"));
+		publisher.publish(diagnostics("file:///b", "second"));
+		Assert.assertEquals(2, client.published.size());
+
+		publisher.flush("file:///a");
+		Assert.assertEquals(3, client.published.size());
+		Assert.assertEquals("second", client.published.get(2).getDiagnostics().get(0).getMessage());
+		publisher.flush();
+		Assert.assertEquals(4, client.published.size());
+		Assert.assertEquals("file:///b", client.published.get(3).getUri());
+
+		publisher.forget("file:///a");
+		publisher.publish(diagnostics("file:///a", "second"));
+		Assert.assertEquals(5, client.published.size());
+	}
+
+	@Test
+	public void testPublishWhileForgetting() throws Exception {
+		DiagnosticsPublisher[] publisher = new DiagnosticsPublisher[1];
+		Thread[] second = new Thread[1];
+		TestClient client = new TestClient() {
+			@Override
+			public void publishDiagnostics(PublishDiagnosticsParams diagnostics) {
+				super.publishDiagnostics(diagnostics);
+				if (second[0] != null)
+					return;
+				// Let another thread look up the state of the document, then forget the document before it is
+				// able to lock the state
+				second[0] = new Thread(() -> publisher[0].publish(diagnostics("file:///a", "second")));
+				second[0].start();
+				long start = System.currentTimeMillis();
+				while (second[0].getState() != Thread.State.BLOCKED && System.currentTimeMillis() - start < TIMEOUT) {
+					Thread.yield();
+				}
+				publisher[0].forget("file:///a");
+			}
+		};
+		publisher[0] = new DiagnosticsPublisher(client, 1, TimeUnit.HOURS);
+
+		publisher[0].publish(diagnostics("file:///a", "first"));
+		second[0].join(TIMEOUT);
+
+		// The second diagnostics are sent right away, since the document has been forgotten
+		Assert.assertEquals(2, client.published.size());
+		publisher[0].publish(diagnostics("file:///a", "second"));
+		Assert.assertEquals(1, publisher[0].getDuplicateCount());
+	}
+
+}
@@ -0,0 +1,68 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensEdit;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.util.IntList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class IntListTest {
+
+	@Test
+	public void testListOperations() {
+		IntList list = new IntList();
+		for (int i = 0; i < 20; i++) {
+			list.addInt(i);
+		}
+		list.add(0, -1);
+		Assert.assertEquals(21, list.size());
+		Assert.assertEquals(-1, list.getInt(0));
+		Assert.assertEquals(Integer.valueOf(19), list.remove(20));
+		list.setInt(1, 42);
+		Assert.assertEquals(Integer.valueOf(42), list.get(1));
+		list.addAll(new int[] { 7, 8, 9 }, 1, 3);
+		Assert.assertArrayEquals(new int[] { 8, 9 }, Arrays.copyOfRange(list.toIntArray(), 20, 22));
+	}
+
+	@Test
+	public void testEqualsAndHashCode() {
+		IntList list = IntList.of(1, 2, 3);
+		Assert.assertEquals(Arrays.asList(1, 2, 3), list);
+		Assert.assertEquals(list, Arrays.asList(1, 2, 3));
+		Assert.assertEquals(Arrays.asList(1, 2, 3).hashCode(), list.hashCode());
+		Assert.assertEquals(IntList.wrap(new int[] { 1, 2, 3, 4 }, 3), list);
+		Assert.assertNotEquals(IntList.of(1, 2), list);
+	}
+
+	@Test
+	public void testSemanticTokensData() {
+		Gson gson = new MessageJsonHandler(Collections.emptyMap()).getGson();
+		SemanticTokens tokens = gson.fromJson("{\"resultId\":\"1\",\"data\":[0,1,2,3,0,1,4,5,1,0]}", SemanticTokens.class);
+		Assert.assertTrue(tokens.getData() instanceof IntList);
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 0, 1, 4, 5, 1, 0), tokens.getData());
+		Assert.assertEquals("{\"resultId\":\"1\",\"data\":[0,1,2,3,0,1,4,5,1,0]}", gson.toJson(tokens));
+		Assert.assertEquals("{\"data\":[4,2]}", gson.toJson(new SemanticTokens(Arrays.asList(4, 2))));
+
+		SemanticTokensEdit edit = gson.fromJson("{\"start\":5,\"deleteCount\":0}", SemanticTokensEdit.class);
+		Assert.assertNull(edit.getData());
+		Assert.assertEquals("{\"start\":5,\"deleteCount\":0}", gson.toJson(edit));
+	}
+
+}
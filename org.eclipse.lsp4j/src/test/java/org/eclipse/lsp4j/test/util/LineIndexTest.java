@@ -0,0 +1,136 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.util.LineIndex;
+import org.eclipse.lsp4j.util.LineIndex.Encoding;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LineIndexTest {
+
+	@Test
+	public void testConversions() {
+		// 'ä' takes two UTF-8 bytes, the emoji is a surrogate pair taking four bytes
+		LineIndex index = new LineIndex("ascii\r\nä😀x\nlast");
+		Assert.assertEquals(3, index.getLineCount());
+		Assert.assertTrue(index.isAscii(0));
+		Assert.assertFalse(index.isAscii(1));
+
+		Assert.assertEquals(2, index.convertColumn(1, 3, Encoding.UTF16, Encoding.UTF32));
+		Assert.assertEquals(7, index.convertColumn(1, 4, Encoding.UTF16, Encoding.UTF8));
+		Assert.assertEquals(3, index.convertColumn(1, 2, Encoding.UTF32, Encoding.UTF16));
+		Assert.assertEquals(1, index.convertColumn(1, 2, Encoding.UTF8, Encoding.UTF16));
+		// A column in the middle of a UTF-8 sequence is moved to its start
+		Assert.assertEquals(1, index.convertColumn(1, 4, Encoding.UTF8, Encoding.UTF16));
+		// Columns beyond the end of the line are clamped
+		Assert.assertEquals(5, index.convertColumn(0, 10, Encoding.UTF16, Encoding.UTF8));
+
+		Assert.assertEquals(new Range(new Position(1, 2), new Position(1, 7)),
+				index.convert(new Range(new Position(1, 1), new Position(1, 4)), Encoding.UTF16, Encoding.UTF8));
+		Assert.assertEquals(new Position(2, 1), index.positionAt(16, Encoding.UTF8));
+		Assert.assertEquals(16, index.offsetAt(new Position(2, 1), Encoding.UTF8));
+		Assert.assertEquals(13, index.convertOffset(16, Encoding.UTF8, Encoding.UTF16));
+		Assert.assertEquals(19, index.getLength(Encoding.UTF8));
+	}
+
+	@Test
+	public void testLongLines() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			builder.append(i % 7 == 0 ? "é" : i % 11 == 0 ? "😀" : "a");
+		}
+		String line = builder.toString();
+		LineIndex index = new LineIndex(line);
+		for (int column = 0; column <= line.length(); column++) {
+			if (column > 0 && Character.isHighSurrogate(line.charAt(column - 1)))
+				continue;
+			int utf8 = line.substring(0, column).getBytes(StandardCharsets.UTF_8).length;
+			int utf32 = line.codePointCount(0, column);
+			Assert.assertEquals(utf8, index.convertColumn(0, column, Encoding.UTF16, Encoding.UTF8));
+			Assert.assertEquals(utf32, index.convertColumn(0, column, Encoding.UTF16, Encoding.UTF32));
+			Assert.assertEquals(column, index.convertColumn(0, utf8, Encoding.UTF8, Encoding.UTF16));
+			Assert.assertEquals(column, index.convertColumn(0, utf32, Encoding.UTF32, Encoding.UTF16));
+		}
+	}
+
+	@Test
+	public void testSurrogatePairAtCheckpoint() {
+		// The surrogate pair straddles the checkpoint after the first 64 UTF-16 code units
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < LineIndex.CHECKPOINT_INTERVAL - 1; i++) {
+			builder.append('a');
+		}
+		LineIndex index = new LineIndex(builder.append("\uD83D\uDE00b").toString());
+		Assert.assertEquals(65, index.convertColumn(0, 64, Encoding.UTF32, Encoding.UTF16));
+		Assert.assertEquals(63, index.convertColumn(0, 63, Encoding.UTF32, Encoding.UTF16));
+		Assert.assertEquals(65, index.convertColumn(0, 67, Encoding.UTF8, Encoding.UTF16));
+		// A column in the middle of the pair's UTF-8 sequence is moved to its start
+		Assert.assertEquals(63, index.convertColumn(0, 65, Encoding.UTF8, Encoding.UTF16));
+		Assert.assertEquals(64, index.convertColumn(0, 65, Encoding.UTF16, Encoding.UTF32));
+		Assert.assertEquals(67, index.convertColumn(0, 65, Encoding.UTF16, Encoding.UTF8));
+	}
+
+	@Test
+	public void testIncrementalUpdates() {
+		Random random = new Random(7);
+		String[] fragments = { "a", "é", "😀", "\n", "\r", "\r\n", "xyz" };
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			builder.append(fragments[random.nextInt(fragments.length)]);
+		}
+		String text = builder.toString();
+		LineIndex index = new LineIndex(text);
+		for (int i = 0; i < 300; i++) {
+			int start = adjust(text, random.nextInt(text.length() + 1));
+			int end = adjust(text, Math.min(text.length(), start + random.nextInt(10)));
+			String inserted = fragments[random.nextInt(fragments.length)];
+			Range range = new Range(index.positionAt(start, Encoding.UTF16), index.positionAt(end, Encoding.UTF16));
+			text = text.substring(0, start) + inserted + text.substring(end);
+			index.update(text, new TextDocumentContentChangeEvent(range, null, inserted));
+			assertIndex(text, index);
+		}
+	}
+
+	/**
+	 * Offsets between \r\n or inside surrogate pairs cannot be expressed as positions, so move them backwards.
+	 */
+	private static int adjust(String text, int offset) {
+		if (offset > 0 && offset < text.length()
+				&& (text.charAt(offset - 1) == '\r' && text.charAt(offset) == '\n' || Character.isLowSurrogate(text.charAt(offset))))
+			return offset - 1;
+		return offset;
+	}
+
+	private static void assertIndex(String text, LineIndex actual) {
+		LineIndex rebuilt = new LineIndex(text);
+		Assert.assertEquals(rebuilt.getLineCount(), actual.getLineCount());
+		for (Encoding encoding : Encoding.values()) {
+			Assert.assertEquals(rebuilt.getLength(encoding), actual.getLength(encoding));
+			for (int line = 0; line < rebuilt.getLineCount(); line++) {
+				Assert.assertEquals(rebuilt.getLineStart(line, encoding), actual.getLineStart(line, encoding));
+				Assert.assertEquals(rebuilt.isAscii(line), actual.isAscii(line));
+				Assert.assertEquals(rebuilt.convertColumn(line, 1000, Encoding.UTF16, encoding),
+						actual.convertColumn(line, 1000, Encoding.UTF16, encoding));
+			}
+		}
+		Assert.assertEquals(text.getBytes(StandardCharsets.UTF_8).length, actual.getLength(Encoding.UTF8));
+		Assert.assertEquals(text.codePointCount(0, text.length()), actual.getLength(Encoding.UTF32));
+	}
+
+}
@@ -0,0 +1,77 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.ClientCapabilities;
+import org.eclipse.lsp4j.GeneralClientCapabilities;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PositionEncodingKind;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.ServerCapabilities;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.util.LineIndex;
+import org.eclipse.lsp4j.util.PositionEncodings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class PositionEncodingsTest {
+
+	@Test
+	public void testNegotiate() {
+		Gson gson = new MessageJsonHandler(Collections.emptyMap()).getGson();
+		ClientCapabilities capabilities = gson.fromJson("{\"general\":{\"positionEncodings\":[\"utf-32\",\"utf-8\"]}}",
+				ClientCapabilities.class);
+		Assert.assertEquals(PositionEncodingKind.UTF8,
+				PositionEncodings.negotiate(capabilities, PositionEncodingKind.UTF8, PositionEncodingKind.UTF32));
+		// UTF-16 is supported even if the client does not list it
+		Assert.assertEquals(PositionEncodingKind.UTF16,
+				PositionEncodings.negotiate(capabilities, PositionEncodingKind.UTF16, PositionEncodingKind.UTF8));
+		Assert.assertEquals(PositionEncodingKind.UTF16,
+				PositionEncodings.negotiate(new ClientCapabilities(), PositionEncodingKind.UTF16, PositionEncodingKind.UTF8));
+		Assert.assertEquals(PositionEncodingKind.UTF16,
+				PositionEncodings.negotiate(new ClientCapabilities(), PositionEncodingKind.UTF8));
+		GeneralClientCapabilities general = new GeneralClientCapabilities();
+		general.setPositionEncodings(Arrays.asList(PositionEncodingKind.UTF16));
+		capabilities.setGeneral(general);
+		Assert.assertEquals(PositionEncodingKind.UTF16,
+				PositionEncodings.negotiate(capabilities, PositionEncodingKind.UTF8));
+
+		ServerCapabilities serverCapabilities = new ServerCapabilities();
+		serverCapabilities.setPositionEncoding(PositionEncodingKind.UTF8);
+		Assert.assertEquals("{\"positionEncoding\":\"utf-8\"}", gson.toJson(serverCapabilities));
+	}
+
+	@Test
+	public void testConvert() {
+		LineIndex index = new LineIndex("plain\nä😀x");
+		Range range = new Range(new Position(1, 0), new Position(1, 4));
+		Assert.assertSame(range, PositionEncodings.convert(index, range, PositionEncodingKind.UTF16, null));
+		Assert.assertEquals(new Range(new Position(1, 0), new Position(1, 7)),
+				PositionEncodings.convert(index, range, PositionEncodingKind.UTF16, PositionEncodingKind.UTF8));
+
+		List<Position> positions = Arrays.asList(new Position(0, 3), new Position(1, 3));
+		PositionEncodings.convertInPlace(index, positions, PositionEncodingKind.UTF16, PositionEncodingKind.UTF32);
+		Assert.assertEquals(Arrays.asList(new Position(0, 3), new Position(1, 2)), positions);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownEncoding() {
+		PositionEncodings.getEncoding("utf-7");
+	}
+
+}
@@ -0,0 +1,118 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.util.DocumentSymbols;
+import org.eclipse.lsp4j.util.RangeTree;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangeTreeTest {
+
+	private static Range range(int startLine, int startChar, int endLine, int endChar) {
+		return new Range(new Position(startLine, startChar), new Position(endLine, endChar));
+	}
+
+	private static DocumentSymbol symbol(String name, Range range, DocumentSymbol... children) {
+		return new DocumentSymbol(name, SymbolKind.Class, range, range, null, Arrays.asList(children));
+	}
+
+	private static boolean contains(Range range, Position position) {
+		return compare(range.getStart(), position) <= 0 && compare(position, range.getEnd()) <= 0;
+	}
+
+	private static int compare(Position left, Position right) {
+		int result = Integer.compare(left.getLine(), right.getLine());
+		return result != 0 ? result : Integer.compare(left.getCharacter(), right.getCharacter());
+	}
+
+	@Test
+	public void testQueriesMatchLinearScan() {
+		Random random = new Random(13);
+		List<Range> ranges = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			int startLine = random.nextInt(100);
+			int endLine = startLine + random.nextInt(5);
+			int startChar = random.nextInt(40);
+			int endChar = endLine == startLine ? startChar + random.nextInt(40) : random.nextInt(40);
+			ranges.add(range(startLine, startChar, endLine, endChar));
+		}
+		RangeTree<Range> tree = RangeTree.of(ranges);
+		for (int i = 0; i < 200; i++) {
+			Position position = new Position(random.nextInt(105), random.nextInt(45));
+			List<Range> expected = ranges.stream().filter(r -> contains(r, position)).collect(Collectors.toList());
+			List<Range> actual = tree.findContaining(position);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertTrue(actual.containsAll(expected));
+
+			Range query = range(position.getLine(), position.getCharacter(), position.getLine() + 2, 10);
+			expected = ranges.stream().filter(r -> compare(r.getStart(), query.getEnd()) <= 0 && compare(query.getStart(), r.getEnd()) <= 0)
+					.collect(Collectors.toList());
+			actual = tree.findOverlapping(query);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertTrue(actual.containsAll(expected));
+
+			expected = ranges.stream().filter(r -> contains(query, r.getStart()) && contains(query, r.getEnd())).collect(Collectors.toList());
+			actual = tree.findContainedIn(query);
+			Assert.assertEquals(expected.size(), actual.size());
+			Assert.assertTrue(actual.containsAll(expected));
+		}
+	}
+
+	@Test
+	public void testDocumentSymbols() {
+		DocumentSymbol method = symbol("method", range(2, 4, 4, 5));
+		DocumentSymbol field = symbol("field", range(5, 4, 5, 20));
+		DocumentSymbol type = symbol("Type", range(1, 0, 6, 1), method, field);
+		DocumentSymbol other = symbol("Other", range(8, 0, 9, 1));
+		RangeTree<DocumentSymbol> tree = DocumentSymbols.asRangeTree(Arrays.asList(type, other));
+		Assert.assertEquals(4, tree.size());
+		Assert.assertEquals(Arrays.asList(type, method), tree.findContaining(new Position(3, 0)));
+		Assert.assertSame(method, tree.findInnermost(new Position(3, 0)));
+		Assert.assertSame(type, tree.findInnermost(new Position(6, 0)));
+		Assert.assertNull(tree.findInnermost(new Position(7, 0)));
+		Assert.assertEquals(Arrays.asList(type, method), tree.findContaining(range(2, 4, 2, 5)));
+		Assert.assertEquals(Arrays.asList(method, field), tree.findContainedIn(range(2, 0, 5, 30)));
+	}
+
+	@Test
+	public void testShift() {
+		DocumentSymbol method = symbol("method", range(2, 4, 4, 5));
+		DocumentSymbol field = symbol("field", range(5, 4, 5, 20));
+		DocumentSymbol type = symbol("Type", range(1, 0, 6, 1), method, field);
+		RangeTree<DocumentSymbol> tree = DocumentSymbols.asRangeTree(Arrays.asList(type));
+
+		// Insert two lines within the method
+		tree.shift(new TextDocumentContentChangeEvent(range(3, 0, 3, 0), null, "a\nb\n"));
+		Assert.assertEquals(range(1, 0, 8, 1), tree.getRange(0));
+		Assert.assertEquals(range(2, 4, 6, 5), tree.getRange(1));
+		Assert.assertEquals(range(7, 4, 7, 20), tree.getRange(2));
+		Assert.assertEquals(Arrays.asList(type, field), tree.findContaining(new Position(7, 10)));
+
+		// Join line 7 with the previous line, which ends at character 5
+		tree.shift(range(6, 5, 7, 0), new Position(6, 5));
+		Assert.assertEquals(range(6, 9, 6, 25), tree.getRange(2));
+		Assert.assertEquals(range(1, 0, 7, 1), tree.getRange(0));
+	}
+
+}
@@ -0,0 +1,73 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.jsonrpc.ResponseErrorException;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseErrorCode;
+import org.eclipse.lsp4j.util.ResolveCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+public class ResolveCacheTest {
+
+	@Test
+	public void testRoundTrip() {
+		ResolveCache<String> cache = new ResolveCache<>();
+		CompletionItem item = cache.attach(new CompletionItem("foo"), "context of foo");
+		Assert.assertTrue(item.getData() instanceof String);
+		Assert.assertTrue(((String) item.getData()).length() <= 8);
+
+		// The data is received as a JSON element in the resolve request
+		Gson gson = new Gson();
+		CompletionItem received = gson.fromJson(gson.toJson(item), CompletionItem.class);
+		Assert.assertEquals("context of foo", cache.get(received.getData()));
+		Assert.assertEquals("context of foo", cache.require(received.getData()));
+
+		Assert.assertEquals("context of foo", cache.remove(received.getData()));
+		Assert.assertNull(cache.get(received.getData()));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testUnknownTokens() {
+		ResolveCache<String> cache = new ResolveCache<>();
+		String token = "unknown";
+		Assert.assertNull(cache.get(token));
+		Assert.assertNull(cache.get(null));
+		Assert.assertNull(cache.get(42));
+		try {
+			cache.require(token);
+			Assert.fail();
+		} catch (ResponseErrorException exception) {
+			Assert.assertEquals(ResponseErrorCode.ContentModified.getValue(), exception.getResponseError().getCode());
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		ResolveCache<String> cache = new ResolveCache<>(2);
+		String first = cache.put("first");
+		String second = cache.put("second");
+		Assert.assertEquals("first", cache.get(first));
+		String third = cache.put("third");
+
+		// The least recently used context is evicted
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals("first", cache.get(first));
+		Assert.assertNull(cache.get(second));
+		Assert.assertEquals("third", cache.get(third));
+	}
+
+}
@@ -0,0 +1,124 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.Arrays;
+
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensLegend;
+import org.eclipse.lsp4j.SemanticTokensRangeParams;
+import org.eclipse.lsp4j.TextDocumentIdentifier;
+import org.eclipse.lsp4j.util.IntList;
+import org.eclipse.lsp4j.util.SemanticTokensBuilder;
+import org.eclipse.lsp4j.util.SemanticTokensStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SemanticTokensBuilderTest {
+
+	private static final SemanticTokensLegend LEGEND = new SemanticTokensLegend(
+			Arrays.asList("keyword", "variable", "function"),
+			Arrays.asList("declaration", "static", "readonly"));
+
+	@Test
+	public void testEncoding() {
+		SemanticTokensBuilder builder = new SemanticTokensBuilder(LEGEND);
+		builder.push(2, 5, 3, "function", "declaration");
+		builder.push(2, 10, 4, "variable", "static", "readonly");
+		builder.push(5, 2, 7, "keyword");
+		SemanticTokens tokens = builder.build("1");
+		Assert.assertEquals("1", tokens.getResultId());
+		Assert.assertEquals(Arrays.asList(
+				2, 5, 3, 2, 1,
+				0, 5, 4, 1, 6,
+				3, 2, 7, 0, 0), tokens.getData());
+	}
+
+	@Test
+	public void testUnsortedTokens() {
+		SemanticTokensBuilder builder = new SemanticTokensBuilder();
+		builder.push(5, 2, 7, 0, 0);
+		builder.push(2, 10, 4, 1, 0);
+		builder.push(2, 5, 3, 2, 0);
+		Assert.assertArrayEquals(new int[] {
+				2, 5, 3, 2, 0,
+				0, 5, 4, 1, 0,
+				3, 2, 7, 0, 0 }, builder.buildArray());
+
+		// Tokens at the same position keep the order in which they were pushed
+		builder.clear();
+		builder.push(4, 1, 2, 3, 0);
+		builder.push(1, 0, 1, 0, 0);
+		builder.push(4, 1, 2, 1, 0);
+		builder.push(4, 0, 1, 2, 0);
+		Assert.assertArrayEquals(new int[] {
+				1, 0, 1, 0, 0,
+				3, 0, 1, 2, 0,
+				0, 1, 2, 3, 0,
+				0, 0, 2, 1, 0 }, builder.buildArray());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownModifier() {
+		new SemanticTokensBuilder(LEGEND).push(0, 0, 1, "keyword", "async");
+	}
+
+	@Test
+	public void testRange() {
+		SemanticTokensBuilder builder = new SemanticTokensBuilder();
+		builder.push(1, 0, 4, 0, 0);
+		builder.push(1, 6, 3, 1, 0);
+		builder.push(1, 12, 2, 2, 0);
+		builder.push(3, 4, 5, 1, 1);
+		builder.push(7, 0, 3, 0, 0);
+		SemanticTokensStore store = new SemanticTokensStore();
+		store.put("file:///a", builder.build());
+
+		// The token at 1:6 overlaps the start of the range and is included
+		SemanticTokens range = store.range(new SemanticTokensRangeParams(new TextDocumentIdentifier("file:///a"),
+				new Range(new Position(1, 8), new Position(7, 0))));
+		Assert.assertEquals(Arrays.asList(
+				1, 6, 3, 1, 0,
+				0, 6, 2, 2, 0,
+				2, 4, 5, 1, 1), range.getData());
+
+		range = store.range("file:///a", new Range(new Position(4, 0), new Position(6, 0)));
+		Assert.assertTrue(range.getData().isEmpty());
+
+		range = store.range("file:///a", new Range(new Position(0, 0), new Position(100, 0)));
+		Assert.assertArrayEquals(store.get("file:///a"), ((IntList) range.getData()).toIntArray());
+
+		Assert.assertNull(store.range("file:///b", new Range(new Position(0, 0), new Position(1, 0))));
+	}
+
+	@Test
+	public void testRangeWithLongToken() {
+		SemanticTokensBuilder builder = new SemanticTokensBuilder(LEGEND);
+		builder.push(1, 0, 20, 0, 0);
+		builder.push(1, 2, 2, 1, 0);
+		builder.push(1, 6, 2, 1, 0);
+		builder.push(1, 12, 3, 2, 0);
+		SemanticTokensStore store = new SemanticTokensStore();
+		store.put("file:///a", builder.build());
+
+		// The first token starts two tokens before the range, but reaches into it
+		SemanticTokens range = store.range("file:///a", new Range(new Position(1, 10), new Position(2, 0)));
+		Assert.assertEquals(Arrays.asList(
+				1, 0, 20, 0, 0,
+				0, 2, 2, 1, 0,
+				0, 4, 2, 1, 0,
+				0, 6, 3, 2, 0), range.getData());
+	}
+
+}
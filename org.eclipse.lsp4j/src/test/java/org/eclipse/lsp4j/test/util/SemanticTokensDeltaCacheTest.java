@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.lsp4j.SemanticTokens;
+import org.eclipse.lsp4j.SemanticTokensDelta;
+import org.eclipse.lsp4j.SemanticTokensEdit;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+import org.eclipse.lsp4j.util.SemanticTokensDeltaCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SemanticTokensDeltaCacheTest {
+
+	private static List<Integer> apply(List<Integer> data, List<SemanticTokensEdit> edits) {
+		List<Integer> result = new ArrayList<>(data);
+		for (int i = edits.size() - 1; i >= 0; i--) {
+			SemanticTokensEdit edit = edits.get(i);
+			for (int j = 0; j < edit.getDeleteCount(); j++) {
+				result.remove(edit.getStart());
+			}
+			if (edit.getData() != null)
+				result.addAll(edit.getStart(), edit.getData());
+		}
+		return result;
+	}
+
+	@Test
+	public void testComputeEdits_insertion() {
+		List<SemanticTokensEdit> edits = SemanticTokensDeltaCache.computeEdits(
+				new int[] { 0, 1, 2, 3, 0, 1, 4, 5, 1, 0 },
+				new int[] { 0, 1, 2, 3, 0, 0, 3, 1, 2, 0, 1, 4, 5, 1, 0 });
+		Assert.assertEquals(1, edits.size());
+		Assert.assertEquals(new SemanticTokensEdit(5, 0, Arrays.asList(0, 3, 1, 2, 0)), edits.get(0));
+	}
+
+	@Test
+	public void testComputeEdits_deletion() {
+		List<SemanticTokensEdit> edits = SemanticTokensDeltaCache.computeEdits(
+				new int[] { 0, 1, 2, 3, 0, 1, 4, 5, 1, 0 },
+				new int[] { 0, 1, 2, 3, 0 });
+		Assert.assertEquals(Arrays.asList(new SemanticTokensEdit(5, 5, null)), edits);
+	}
+
+	@Test
+	public void testComputeEdits_repeatedValues() {
+		int[] previous = { 1, 1, 1, 1 };
+		int[] current = { 1, 1 };
+		List<SemanticTokensEdit> edits = SemanticTokensDeltaCache.computeEdits(previous, current);
+		Assert.assertEquals(Arrays.asList(1, 1), apply(Arrays.asList(1, 1, 1, 1), edits));
+	}
+
+	@Test
+	public void testComputeEdits_unchanged() {
+		Assert.assertTrue(SemanticTokensDeltaCache.computeEdits(new int[] { 1, 2 }, new int[] { 1, 2 }).isEmpty());
+	}
+
+	@Test
+	public void testComputeEdits_nothingInCommon() {
+		Assert.assertNull(SemanticTokensDeltaCache.computeEdits(new int[] { 1, 2 }, new int[] { 3, 4 }));
+	}
+
+	@Test
+	public void testDelta() {
+		SemanticTokensDeltaCache cache = new SemanticTokensDeltaCache();
+		SemanticTokens full = cache.full(new int[] { 0, 1, 2, 3, 0, 1, 4, 5, 1, 0 });
+		Assert.assertNotNull(full.getResultId());
+
+		Either<SemanticTokens, SemanticTokensDelta> response = cache.delta(full.getResultId(), new int[] { 0, 1, 2, 3, 0, 2, 4, 5, 1, 0 });
+		Assert.assertTrue(response.isRight());
+		SemanticTokensDelta delta = response.getRight();
+		Assert.assertNotEquals(full.getResultId(), delta.getResultId());
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 0, 2, 4, 5, 1, 0), apply(full.getData(), delta.getEdits()));
+		// The superseded result is evicted
+		Assert.assertEquals(1, cache.size());
+		Assert.assertTrue(cache.delta(full.getResultId(), new int[] { 0, 1, 2, 3, 0 }).isLeft());
+
+		response = cache.delta("unknown", new int[] { 0, 1, 2, 3, 0 });
+		Assert.assertTrue(response.isLeft());
+		Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 0), response.getLeft().getData());
+	}
+
+	@Test
+	public void testEviction() {
+		SemanticTokensDeltaCache cache = new SemanticTokensDeltaCache(2, 100);
+		String first = cache.full(new int[] { 1, 2, 3, 4, 5 }).getResultId();
+		String second = cache.full(new int[] { 1, 2, 3, 4, 5 }).getResultId();
+		cache.full(new int[] { 1, 2, 3, 4, 5 });
+		Assert.assertEquals(2, cache.size());
+		Assert.assertTrue(cache.delta(first, new int[] { 1, 2, 3, 4, 6 }).isLeft());
+		Assert.assertEquals(2, cache.size());
+
+		cache = new SemanticTokensDeltaCache(10, 8);
+		first = cache.full(new int[] { 1, 2, 3, 4, 5 }).getResultId();
+		second = cache.full(new int[] { 1, 2, 3, 4, 5 }).getResultId();
+		Assert.assertEquals(1, cache.size());
+		Assert.assertTrue(cache.delta(first, new int[] { 1, 2, 3, 4, 6 }).isLeft());
+		second = cache.full(new int[] { 1, 2, 3, 4, 5 }).getResultId();
+		Assert.assertTrue(cache.delta(second, new int[] { 1, 2, 3, 4, 6 }).isRight());
+		Assert.assertEquals(1, cache.size());
+	}
+
+}
@@ -0,0 +1,125 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.lsp4j.DidChangeTextDocumentParams;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.eclipse.lsp4j.VersionedTextDocumentIdentifier;
+import org.eclipse.lsp4j.util.TextDocumentBuffer;
+import org.eclipse.lsp4j.util.TextDocumentSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextDocumentBufferTest {
+
+	private static TextDocumentContentChangeEvent change(int startLine, int startChar, int endLine, int endChar, String text) {
+		return new TextDocumentContentChangeEvent(new Range(new Position(startLine, startChar), new Position(endLine, endChar)), null, text);
+	}
+
+	@Test
+	public void testIncrementalChanges() {
+		TextDocumentBuffer buffer = new TextDocumentBuffer("file:///a", 1, "first line\nsecond line\r\nthird");
+		TextDocumentSnapshot initial = buffer.getSnapshot();
+		Assert.assertEquals(3, initial.getLineCount());
+		Assert.assertEquals("second line", initial.getLine(1));
+
+		TextDocumentSnapshot changed = buffer.apply(new DidChangeTextDocumentParams(
+				new VersionedTextDocumentIdentifier("file:///a", 2),
+				Arrays.asList(change(0, 6, 0, 10, "row"), change(1, 0, 2, 0, ""))));
+		Assert.assertEquals(Integer.valueOf(2), changed.getVersion());
+		Assert.assertEquals("first row\nthird", changed.getText());
+		Assert.assertEquals(2, changed.getLineCount());
+		// The previous snapshot is not affected
+		Assert.assertEquals("first line\nsecond line\r\nthird", initial.getText());
+
+		changed = buffer.apply(3, Arrays.asList(new TextDocumentContentChangeEvent("replaced")));
+		Assert.assertEquals("replaced", changed.getText());
+		Assert.assertSame(changed, buffer.getSnapshot());
+	}
+
+	@Test
+	public void testPositions() {
+		TextDocumentSnapshot snapshot = new TextDocumentBuffer("file:///a", 1, "ab\r\ncd\ref\n").getSnapshot();
+		Assert.assertEquals(4, snapshot.getLineCount());
+		Assert.assertEquals(new Position(1, 1), snapshot.positionAt(5));
+		Assert.assertEquals(new Position(3, 0), snapshot.positionAt(10));
+		Assert.assertEquals(5, snapshot.offsetAt(new Position(1, 1)));
+		// Characters beyond the end of a line are clamped
+		Assert.assertEquals(2, snapshot.offsetAt(new Position(0, 10)));
+		Assert.assertEquals(10, snapshot.offsetAt(new Position(20, 0)));
+		Assert.assertEquals("cd", snapshot.getText(new Range(new Position(1, 0), new Position(1, 5))));
+	}
+
+	@Test
+	public void testRandomEdits() {
+		Random random = new Random(42);
+		String[] fragments = { "a", "bc", "\n", "\r", "\r\n", "xyz\n", "" };
+		StringBuilder initial = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			initial.append(fragments[random.nextInt(fragments.length)]);
+		}
+		String expected = initial.toString();
+		TextDocumentBuffer buffer = new TextDocumentBuffer("file:///a", 0, expected);
+		for (int version = 1; version <= 500; version++) {
+			TextDocumentSnapshot snapshot = buffer.getSnapshot();
+			int start = adjust(expected, random.nextInt(expected.length() + 1));
+			int end = adjust(expected, Math.min(expected.length(), start + random.nextInt(20)));
+			StringBuilder text = new StringBuilder();
+			for (int i = random.nextInt(4); i > 0; i--) {
+				text.append(fragments[random.nextInt(fragments.length)]);
+			}
+			Position startPosition = snapshot.positionAt(start);
+			Position endPosition = snapshot.positionAt(end);
+			Assert.assertEquals(toPosition(expected, start), startPosition);
+			List<TextDocumentContentChangeEvent> changes = new ArrayList<>();
+			changes.add(new TextDocumentContentChangeEvent(new Range(startPosition, endPosition), null, text.toString()));
+			snapshot = buffer.apply(version, changes);
+			expected = expected.substring(0, start) + text + expected.substring(end);
+			Assert.assertEquals(expected, snapshot.getText());
+			Assert.assertEquals(countLines(expected), snapshot.getLineCount());
+		}
+	}
+
+	/**
+	 * Offsets between \r and \n cannot be expressed as positions, so move them before the line break.
+	 */
+	private static int adjust(String text, int offset) {
+		if (offset > 0 && offset < text.length() && text.charAt(offset - 1) == '\r' && text.charAt(offset) == '\n')
+			return offset - 1;
+		return offset;
+	}
+
+	private static Position toPosition(String text, int offset) {
+		int line = 0;
+		int lineStart = 0;
+		for (int i = 0; i < offset; i++) {
+			char c = text.charAt(i);
+			if (c == '\n' || c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n')) {
+				line++;
+				lineStart = i + 1;
+			}
+		}
+		return new Position(line, offset - lineStart);
+	}
+
+	private static int countLines(String text) {
+		return toPosition(text, text.length()).getLine() + 1;
+	}
+
+}
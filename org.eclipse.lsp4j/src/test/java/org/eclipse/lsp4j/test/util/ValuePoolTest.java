@@ -0,0 +1,102 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.adapters.DeduplicatingTypeAdapterFactory;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.util.ValuePool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+public class ValuePoolTest {
+
+	@Test
+	public void canonicalize_string() {
+		ValuePool pool = new ValuePool();
+		String first = new String("file:///foo.txt");
+		String second = new String("file:///foo.txt");
+		Assert.assertSame(first, pool.canonicalize(first));
+		Assert.assertSame(first, pool.canonicalize(second));
+	}
+
+	@Test
+	public void canonicalize_boundedStrings() {
+		ValuePool pool = new ValuePool(2, 16);
+		String first = new String("a");
+		pool.canonicalize(first);
+		pool.canonicalize("b");
+		pool.canonicalize("c");
+		String other = new String("a");
+		Assert.assertSame(other, pool.canonicalize(other));
+	}
+
+	@Test
+	public void canonicalize_position() {
+		ValuePool pool = new ValuePool();
+		Position first = new Position(3, 4);
+		Assert.assertSame(first, pool.canonicalize(first));
+		Assert.assertSame(first, pool.canonicalize(new Position(3, 4)));
+		Assert.assertNotSame(first, pool.canonicalize(new Position(4, 3)));
+	}
+
+	@Test
+	public void canonicalize_range() {
+		ValuePool pool = new ValuePool();
+		Range first = new Range(new Position(1, 2), new Position(1, 5));
+		Assert.assertSame(first, pool.canonicalize(first));
+		Assert.assertSame(first, pool.canonicalize(new Range(new Position(1, 2), new Position(1, 5))));
+	}
+
+	@Test
+	public void deserializeLocations() {
+		Gson gson = new MessageJsonHandler(Collections.emptyMap(), gsonBuilder -> {
+			gsonBuilder.registerTypeAdapterFactory(new DeduplicatingTypeAdapterFactory());
+		}).getGson();
+		String json = "[{\"uri\":\"file:///foo.txt\",\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}}},"
+				+ "{\"uri\":\"file:///foo.txt\",\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}}},"
+				+ "{\"uri\":\"file:///foo.txt\",\"range\":{\"start\":{\"line\":3,\"character\":0},\"end\":{\"line\":3,\"character\":4}}}]";
+		List<Location> locations = gson.fromJson(json, new TypeToken<List<Location>>() {}.getType());
+		Assert.assertEquals(3, locations.size());
+		Assert.assertEquals(new Location("file:///foo.txt", new Range(new Position(3, 0), new Position(3, 4))), locations.get(2));
+		Assert.assertSame(locations.get(0).getUri(), locations.get(1).getUri());
+		Assert.assertSame(locations.get(0).getUri(), locations.get(2).getUri());
+		Assert.assertSame(locations.get(0).getRange(), locations.get(1).getRange());
+		Assert.assertNotSame(locations.get(0).getRange(), locations.get(2).getRange());
+		Assert.assertEquals(json, gson.toJson(locations));
+	}
+
+	@Test
+	public void deserializeRangesOutsideLocations() {
+		Gson gson = new MessageJsonHandler(Collections.emptyMap(), gsonBuilder -> {
+			gsonBuilder.registerTypeAdapterFactory(new DeduplicatingTypeAdapterFactory());
+		}).getGson();
+		String json = "[{\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}},\"newText\":\"a\"},"
+				+ "{\"range\":{\"start\":{\"line\":1,\"character\":2},\"end\":{\"line\":1,\"character\":5}},\"newText\":\"b\"}]";
+		List<TextEdit> edits = gson.fromJson(json, new TypeToken<List<TextEdit>>() {}.getType());
+
+		// Ranges of other types may be modified by their handlers, so they are not shared
+		Assert.assertEquals(edits.get(0).getRange(), edits.get(1).getRange());
+		Assert.assertNotSame(edits.get(0).getRange(), edits.get(1).getRange());
+		Assert.assertNotSame(edits.get(0).getRange().getStart(), edits.get(1).getRange().getStart());
+	}
+
+}
@@ -0,0 +1,102 @@
+/******************************************************************************
+ * Copyright (c) 2021 TypeFox and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0,
+ * or the Eclipse Distribution License v. 1.0 which is available at
+ * http://www.eclipse.org/org/documents/edl-v10.php.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR BSD-3-Clause
+ ******************************************************************************/
+package org.eclipse.lsp4j.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.WorkspaceSymbolParams;
+import org.eclipse.lsp4j.util.WorkspaceSymbolIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WorkspaceSymbolIndexTest {
+
+	private static final Range RANGE = new Range(new Position(0, 0), new Position(0, 1));
+
+	private static List<SymbolInformation> symbols(String uri, String... names) {
+		return Arrays.stream(names).map(name -> new SymbolInformation(name, SymbolKind.Method, new Location(uri, RANGE)))
+				.collect(Collectors.toList());
+	}
+
+	private static List<String> names(List<SymbolInformation> symbols) {
+		return symbols.stream().map(SymbolInformation::getName).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testFuzzyQueries() {
+		WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+		index.update("file:///a", symbols("file:///a", "getValue", "getValueFor", "setValue", "get_value_for", "HTMLParser", "forget"));
+
+		Assert.assertEquals(Arrays.asList("getValue", "getValueFor", "get_value_for"),
+				names(index.search(new WorkspaceSymbolParams("getval"))));
+		Assert.assertEquals(Arrays.asList("getValueFor", "get_value_for"), names(index.search("gvf", 10)));
+		Assert.assertEquals(Arrays.asList("HTMLParser"), names(index.search("parser", 10)));
+		Assert.assertEquals("forget", names(index.search("f", 10)).get(0));
+		Assert.assertEquals(Arrays.asList("getValue"), names(index.search("getval", 1)));
+		Assert.assertEquals(6, index.search("", 10).size());
+		Assert.assertTrue(index.search("xyz", 10).isEmpty());
+	}
+
+	@Test
+	public void testReplaceDocuments() {
+		WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+		index.update("file:///a", symbols("file:///a", "alpha", "beta"));
+		index.update("file:///b", symbols("file:///b", "alphabet"));
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals(Arrays.asList("alpha", "alphabet"), names(index.search("alp", 10)));
+
+		index.update("file:///a", symbols("file:///a", "gamma"));
+		Assert.assertEquals(2, index.size());
+		Assert.assertEquals(Arrays.asList("alphabet"), names(index.search("alp", 10)));
+
+		index.remove("file:///b");
+		Assert.assertEquals(1, index.size());
+		Assert.assertTrue(index.search("alp", 10).isEmpty());
+	}
+
+	@Test
+	public void testCompaction() {
+		WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+		for (int round = 0; round < 10; round++) {
+			List<String> names = new ArrayList<>();
+			for (int i = 0; i < 500; i++) {
+				names.add("symbol" + round + "_" + i);
+			}
+			index.update("file:///a", symbols("file:///a", names.toArray(new String[0])));
+		}
+		Assert.assertEquals(500, index.size());
+		Assert.assertEquals(Arrays.asList("symbol9_42"), names(index.search("symbol9_42", 1)));
+		Assert.assertTrue(index.search("symbol8", 10).isEmpty());
+	}
+
+	@Test
+	public void testDocumentSymbols() {
+		WorkspaceSymbolIndex index = new WorkspaceSymbolIndex();
+		DocumentSymbol method = new DocumentSymbol("run", SymbolKind.Method, RANGE, RANGE);
+		DocumentSymbol type = new DocumentSymbol("Runner", SymbolKind.Class, RANGE, RANGE, null, Arrays.asList(method));
+		index.updateDocumentSymbols("file:///a", Arrays.asList(type));
+		List<SymbolInformation> result = index.search("run", 10);
+		Assert.assertEquals(Arrays.asList("run", "Runner"), names(result));
+		Assert.assertEquals("Runner", result.get(0).getContainerName());
+		Assert.assertEquals("file:///a", result.get(0).getLocation().getUri());
+	}
+
+}